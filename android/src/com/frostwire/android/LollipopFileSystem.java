@@ -234,6 +234,18 @@ public final class LollipopFileSystem implements FileSystem {
         return copy(app, srcF, destF);
     }
 
+    @Override
+    public boolean rename(File src, File dest) {
+        try {
+            // SAF documents can't be moved to another directory, those are copied
+            return src.renameTo(dest);
+        } catch (Throwable e) {
+            // ignore
+        }
+
+        return false;
+    }
+
     @Override
     public boolean write(File file, byte[] data) {
         try {
@@ -40,6 +40,8 @@ public final class DiskCrawlCache implements CrawlCache {
     private static final int MIN_DISK_CACHE_SIZE = 5 * 1024 * 1024; // 5MB
     private static final int MAX_DISK_CACHE_SIZE = 50 * 1024 * 1024; // 50MB
 
+    private static final String FAILURE_KEY_PREFIX = "failed:";
+
     private final WeakReference<Context> contextRef;
     private DiskCache cache;
 
@@ -101,6 +103,36 @@ public final class DiskCrawlCache implements CrawlCache {
         }
     }
 
+    @Override
+    public void putFailure(String key, long ttl) {
+        long expires = System.currentTimeMillis() + ttl;
+        byte[] data = new byte[8];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (expires >>> (8 * i));
+        }
+        put(FAILURE_KEY_PREFIX + key, data);
+    }
+
+    @Override
+    public boolean hasFailure(String key) {
+        byte[] data = get(FAILURE_KEY_PREFIX + key);
+        if (data == null || data.length != 8) {
+            return false;
+        }
+
+        long expires = 0;
+        for (int i = 0; i < data.length; i++) {
+            expires |= (0xffL & data[i]) << (8 * i);
+        }
+
+        if (expires > System.currentTimeMillis()) {
+            return true;
+        }
+
+        remove(FAILURE_KEY_PREFIX + key);
+        return false;
+    }
+
     @Override
     public void clear() {
         if (cache != null) {
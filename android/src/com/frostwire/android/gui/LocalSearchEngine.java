@@ -22,6 +22,7 @@ import com.frostwire.android.gui.views.AbstractListAdapter;
 import com.frostwire.search.*;
 import com.frostwire.search.torrent.TorrentSearchResult;
 import com.frostwire.search.youtube.YouTubeCrawledSearchResult;
+import com.frostwire.util.Logger;
 import com.frostwire.util.StringUtils;
 
 import java.text.Normalizer;
@@ -33,6 +34,8 @@ import java.util.*;
  */
 public final class LocalSearchEngine {
 
+    private static final Logger LOG = Logger.getLogger(LocalSearchEngine.class);
+
     private final SearchManager manager;
     private SearchListener listener;
 
@@ -75,6 +78,12 @@ public final class LocalSearchEngine {
                 LocalSearchEngine.this.onFinished(token);
             }
         });
+        this.manager.setTimeoutListener(new SearchTimeoutListener() {
+            @Override
+            public void onTimeout(long token, List<String> engines) {
+                LOG.info("Search deadline expired, engines timed out: " + engines);
+            }
+        });
 
         // TODO: review the logic behind putting this in a preference
         this.MIN_SEEDS_TORRENT_RESULT = 10;//ConfigurationManager.instance().getInt(Constants.PREF_KEY_SEARCH_MIN_SEEDS_FOR_TORRENT_RESULT);
@@ -99,6 +108,8 @@ public final class LocalSearchEngine {
         currentSearchTokens = tokenize(query);
         searchFinished = false;
 
+        manager.setDeadline(currentSearchToken, SearchManager.SEARCH_DEADLINE);
+
         for (SearchEngine se : SearchEngine.getEngines()) {
             if (se.isEnabled()) {
                 SearchPerformer p = se.getPerformer(currentSearchToken, query);
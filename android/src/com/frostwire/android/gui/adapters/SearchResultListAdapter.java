@@ -22,6 +22,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.graphics.Paint;
 import android.net.Uri;
+import android.text.TextUtils;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.widget.ImageView;
@@ -44,6 +45,7 @@ import com.frostwire.search.KeywordFilter;
 import com.frostwire.search.SearchResult;
 import com.frostwire.search.StreamableSearchResult;
 import com.frostwire.search.soundcloud.SoundcloudSearchResult;
+import com.frostwire.search.torrent.AbstractTorrentSearchResult;
 import com.frostwire.search.torrent.TorrentSearchResult;
 import com.frostwire.search.youtube.YouTubeCrawledSearchResult;
 import com.frostwire.search.youtube.YouTubeCrawledStreamableSearchResult;
@@ -188,9 +190,21 @@ public abstract class SearchResultListAdapter extends AbstractListAdapter<Search
     }
 
     private void populateTorrentPart(View view, TorrentSearchResult sr) {
+        int count = sr.getSeeds();
+        if (sr instanceof AbstractTorrentSearchResult) {
+            AbstractTorrentSearchResult atsr = (AbstractTorrentSearchResult) sr;
+            // the same torrent found by other engines
+            count = atsr.getMaxSeeds();
+            List<String> sources = atsr.getSources();
+            if (sources.size() > 1) {
+                TextView sourceLink = findView(view, R.id.view_bittorrent_search_result_list_item_text_source);
+                sourceLink.setText(TextUtils.join(", ", sources));
+            }
+        }
+
         TextView seeds = findView(view, R.id.view_bittorrent_search_result_list_item_text_seeds);
-        if (sr.getSeeds() > 0) {
-            seeds.setText(getContext().getResources().getQuantityString(R.plurals.count_seeds_source, sr.getSeeds(), sr.getSeeds()));
+        if (count > 0) {
+            seeds.setText(getContext().getResources().getQuantityString(R.plurals.count_seeds_source, count, count));
         } else {
             seeds.setText("");
         }
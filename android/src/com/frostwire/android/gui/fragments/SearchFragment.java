@@ -838,7 +838,7 @@ public final class SearchFragment extends AbstractFragment implements
                 @Override
                 public void run() {
                     updateVisibility();
-                    keywordFilterDrawerView.updateData(getKeywordFiltersPipeline(), feature, histogram);
+                    keywordFilterDrawerView.updateData(getKeywordFiltersPipeline(), feature, histogram, detector.totalTokenCount(feature));
                 }
             };
             getActivity().runOnUiThread(uiRunnable);
@@ -849,7 +849,7 @@ public final class SearchFragment extends AbstractFragment implements
             if (histograms != null && !histograms.isEmpty()) {
                 Set<KeywordDetector.Feature> features = histograms.keySet();
                 for (KeywordDetector.Feature feature : features) {
-                    onHistogramUpdate(detector, feature, histograms.get(feature).histogram(), false);
+                    onHistogramUpdate(detector, feature, histograms.get(feature).top(), false);
                 }
             }
         }
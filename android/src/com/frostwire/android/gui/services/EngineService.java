@@ -41,6 +41,9 @@ import com.frostwire.android.offers.PlayStore;
 import com.frostwire.android.util.ImageLoader;
 import com.frostwire.android.util.SystemUtils;
 import com.frostwire.bittorrent.BTEngine;
+import com.frostwire.search.CrawlCache;
+import com.frostwire.search.CrawlPagedWebSearchPerformer;
+import com.frostwire.search.TieredCrawlCache;
 import com.frostwire.util.Logger;
 import com.frostwire.util.ThreadPool;
 import com.frostwire.util.http.OKHTTPClient;
@@ -124,6 +127,7 @@ public class EngineService extends Service implements IEngineService {
         BTEngine.getInstance().stop();
         LOG.debug("onDestroy, BTEngine stopped");
         ImageLoader.getInstance(this).shutdown();
+        shutdownCrawlCache();
         PlayStore.getInstance().dispose();
         stopOkHttp();
 
@@ -131,6 +135,14 @@ public class EngineService extends Service implements IEngineService {
         stopSelf();
     }
 
+    // writes the crawl data still queued for the disk cache
+    private static void shutdownCrawlCache() {
+        CrawlCache cache = CrawlPagedWebSearchPerformer.getCache();
+        if (cache instanceof TieredCrawlCache) {
+            ((TieredCrawlCache) cache).shutdown();
+        }
+    }
+
     // what a bad design to properly shutdown the framework threads!
     // TODO: deal with potentially active connections
     private void stopOkHttp() {
@@ -182,14 +182,14 @@ public final class KeywordFilterDrawerView extends LinearLayout implements Keywo
         scrollView.scrollTo(0, 0);
     }
 
-    public void updateData(List<KeywordFilter> keywordFiltersPipeline, KeywordDetector.Feature feature, Entry<String, Integer>[] histogram) {
+    public void updateData(List<KeywordFilter> keywordFiltersPipeline, KeywordDetector.Feature feature, Entry<String, Integer>[] histogram, int totalCount) {
         if (keywordFiltersPipeline != null) {
             updateAppliedKeywordFilters(keywordFiltersPipeline);
         }
         TagsController tagsController = featureContainer.get(feature);
         if (feature != null && histogram != null && histogram.length > 0) {
             tagsController.showHeader();
-            List<Entry<String, Integer>> filteredHistogram = highPassFilter(histogram, feature.filterThreshold);
+            List<Entry<String, Integer>> filteredHistogram = highPassFilter(histogram, totalCount, feature.filterThreshold);
             updateSuggestedKeywordFilters(feature, filteredHistogram);
         } else if (histogram.length == 0 && tagsController != null) {
             tagsController.hideHeader();
@@ -197,16 +197,12 @@ public final class KeywordFilterDrawerView extends LinearLayout implements Keywo
         invalidate();
     }
 
-    private List<Entry<String, Integer>> highPassFilter(Entry<String, Integer>[] histogram, float threshold) {
-        int high = 0;
-        int totalCount = 0;
-        for (Entry<String, Integer> entry : histogram) {
-            int count = entry.getValue();
-            totalCount += count;
-            if (count > high) {
-                high = count;
-            }
-        }
+    /**
+     * @param histogram  the ranked tokens, sorted by ascending count
+     * @param totalCount the sum of the counts of all the tokens, ranked or not
+     */
+    private List<Entry<String, Integer>> highPassFilter(Entry<String, Integer>[] histogram, int totalCount, float threshold) {
+        int high = histogram[histogram.length - 1].getValue();
         List<Entry<String, Integer>> filteredValues = new LinkedList<>();
         for (Entry<String, Integer> entry : histogram) {
             float rate = (float) entry.getValue() / (high + totalCount);
@@ -28,7 +28,6 @@ import com.frostwire.transfers.BittorrentDownload;
 import com.frostwire.transfers.TransferItem;
 import com.frostwire.transfers.TransferState;
 import com.frostwire.util.Logger;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
@@ -55,11 +54,16 @@ public final class BTDownload implements BittorrentDownload {
     private static final String EXTRA_DATA_KEY = "extra_data";
     private static final String WAS_PAUSED_EXTRA_KEY = "was_paused";
 
+    // a refresh of the transfers table reads the status a dozen times per row
+    private static final long STATUS_RESOLUTION_MILLIS = 500;
+
     private final BTEngine engine;
     private final TorrentHandle th;
+    private final String infoHash;
     private final File savePath;
     private final Date created;
     private final PiecesTracker piecesTracker;
+    private final BTFileProgress fileProgress;
     private final File parts;
 
     private final Map<String, String> extra;
@@ -71,15 +75,19 @@ public final class BTDownload implements BittorrentDownload {
     private long lastSaveResumeTime;
     private final PaymentOptions paymentOptions;
 
+    private volatile BTDownloadStatus status;
+
     private final InnerListener innerListener;
 
     public BTDownload(BTEngine engine, TorrentHandle th) {
         this.engine = engine;
         this.th = th;
+        this.infoHash = th.infoHash().toString();
         this.savePath = new File(th.savePath());
         this.created = new Date(th.status().addedTime());
         TorrentInfo ti = th.torrentFile();
         this.piecesTracker = ti != null ? new PiecesTracker(ti) : null;
+        this.fileProgress = new BTFileProgress(th);
         this.parts = ti != null ? new File(savePath, "." + ti.infoHash() + ".parts") : null;
         this.extra = createExtra();
         this.paymentOptions = loadPaymentOptions(ti);
@@ -125,11 +133,13 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public boolean isPaused() {
-        return th.isValid() && (th.status().isPaused() || engine.isPaused() || !engine.isRunning());
+        BTDownloadStatus status = status();
+        return status != null && (status.paused || engine.isPaused() || !engine.isRunning());
     }
 
     public boolean isSeeding() {
-        return th.isValid() && th.status().isSeeding();
+        BTDownloadStatus status = status();
+        return status != null && status.seeding;
     }
 
     public boolean isFinished() {
@@ -137,7 +147,11 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public boolean isFinished(boolean force) {
-        return th.isValid() && th.status(force).isFinished();
+        if (force && th.isValid()) {
+            this.status = new BTDownloadStatus(th.status(true), System.currentTimeMillis());
+        }
+        BTDownloadStatus status = status();
+        return status != null && status.finished;
     }
 
     public TransferState getState() {
@@ -149,25 +163,25 @@ public final class BTDownload implements BittorrentDownload {
             return TransferState.PAUSED;
         }
 
-        if (!th.isValid()) {
+        final BTDownloadStatus status = status();
+
+        if (status == null) {
             return TransferState.ERROR;
         }
 
-        final TorrentStatus status = th.status();
-
-        if (status.isPaused() && status.isFinished()) {
+        if (status.paused && status.finished) {
             return TransferState.FINISHED;
         }
 
-        if (status.isPaused() && !status.isFinished()) {
+        if (status.paused && !status.finished) {
             return TransferState.PAUSED;
         }
 
-        if (!status.isPaused() && status.isFinished()) { // see the docs of isFinished
+        if (!status.paused && status.finished) { // see the docs of isFinished
             return TransferState.SEEDING;
         }
 
-        final TorrentStatus.State state = status.state();
+        final TorrentStatus.State state = status.state;
 
         switch (state) {
             case CHECKING_FILES:
@@ -214,16 +228,17 @@ public final class BTDownload implements BittorrentDownload {
             return 0;
         }
 
-        if (th.torrentFile() == null) {
+        BTDownloadStatus status = status();
+        if (status == null) {
             return 0;
         }
 
-        if (th.status() == null) {
+        if (!th.isValid() || th.torrentFile() == null) {
             return 0;
         }
 
-        float fp = th.status().progress();
-        TorrentStatus.State state = th.status().state();
+        float fp = status.progress;
+        TorrentStatus.State state = status.state;
 
         if (Float.compare(fp, 1f) == 0 && state != TorrentStatus.State.CHECKING_FILES) {
             return 100;
@@ -243,27 +258,33 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public long getBytesReceived() {
-        return th.isValid() ? th.status().totalDone() : 0;
+        BTDownloadStatus status = status();
+        return status != null ? status.totalDone : 0;
     }
 
     public long getTotalBytesReceived() {
-        return th.isValid() ? th.status().allTimeDownload() : 0;
+        BTDownloadStatus status = status();
+        return status != null ? status.allTimeDownload : 0;
     }
 
     public long getBytesSent() {
-        return th.isValid() ? th.status().totalUpload() : 0;
+        BTDownloadStatus status = status();
+        return status != null ? status.totalUpload : 0;
     }
 
     public long getTotalBytesSent() {
-        return th.isValid() ? th.status().allTimeUpload() : 0;
+        BTDownloadStatus status = status();
+        return status != null ? status.allTimeUpload : 0;
     }
 
     public long getDownloadSpeed() {
-        return (!th.isValid() || isFinished() || isPaused() || isSeeding()) ? 0 : th.status().downloadPayloadRate();
+        BTDownloadStatus status = status();
+        return (status == null || isFinished() || isPaused() || isSeeding()) ? 0 : status.downloadPayloadRate;
     }
 
     public long getUploadSpeed() {
-        return (!th.isValid() || (isFinished() && !isSeeding()) || isPaused()) ? 0 : th.status().uploadPayloadRate();
+        BTDownloadStatus status = status();
+        return (status == null || (isFinished() && !isSeeding()) || isPaused()) ? 0 : status.uploadPayloadRate;
     }
 
     @Override
@@ -272,19 +293,23 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public int getConnectedPeers() {
-        return th.isValid() ? th.status().numPeers() : 0;
+        BTDownloadStatus status = status();
+        return status != null ? status.numPeers : 0;
     }
 
     public int getTotalPeers() {
-        return th.isValid() ? th.status().listPeers() : 0;
+        BTDownloadStatus status = status();
+        return status != null ? status.listPeers : 0;
     }
 
     public int getConnectedSeeds() {
-        return th.isValid() ? th.status().numSeeds() : 0;
+        BTDownloadStatus status = status();
+        return status != null ? status.numSeeds : 0;
     }
 
     public int getTotalSeeds() {
-        return th.isValid() ? th.status().listSeeds() : 0;
+        BTDownloadStatus status = status();
+        return status != null ? status.listSeeds : 0;
     }
 
     @Override
@@ -306,7 +331,7 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public String getInfoHash() {
-        return th.infoHash().toString();
+        return infoHash;
     }
 
     @Override
@@ -315,16 +340,16 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public long getETA() {
-        if (!th.isValid()) {
+        BTDownloadStatus status = status();
+        if (status == null || !th.isValid()) {
             return 0;
         }
         TorrentInfo ti = th.torrentFile();
         if (ti == null) {
             return 0;
         }
-        TorrentStatus status = th.status();
-        long left = ti.totalSize() - status.totalDone();
-        long rate = status.downloadPayloadRate();
+        long left = ti.totalSize() - status.totalDone;
+        long rate = status.downloadPayloadRate;
         if (left <= 0) {
             return 0;
         }
@@ -343,6 +368,7 @@ public final class BTDownload implements BittorrentDownload {
 
         th.setAutoManaged(false);
         th.pause();
+        status = null;
 
         doResumeData(true);
     }
@@ -356,6 +382,7 @@ public final class BTDownload implements BittorrentDownload {
 
         th.setAutoManaged(true);
         th.resume();
+        status = null;
 
         doResumeData(true);
     }
@@ -381,6 +408,7 @@ public final class BTDownload implements BittorrentDownload {
                 engine.remove(th);
             }
         }
+        status = null;
 
         if (deleteTorrent) {
             File torrent = engine.readTorrentPath(infoHash);
@@ -389,7 +417,7 @@ public final class BTDownload implements BittorrentDownload {
             }
         }
 
-        engine.resumeDataFile(infoHash).delete();
+        engine.deleteResumeData(infoHash);
         engine.resumeTorrentFile(infoHash).delete();
     }
 
@@ -414,6 +442,7 @@ public final class BTDownload implements BittorrentDownload {
 
     private void torrentRemoved() {
         engine.removeListener(innerListener);
+        status = null;
 
         if (parts != null) {
             parts.delete();
@@ -430,6 +459,7 @@ public final class BTDownload implements BittorrentDownload {
 
     private void torrentChecked() {
         try {
+            fileProgress.invalidate();
             if (th.isValid()) {
                 // trigger items calculation
                 getItems();
@@ -441,6 +471,7 @@ public final class BTDownload implements BittorrentDownload {
 
     private void pieceFinished(PieceFinishedAlert alert) {
         try {
+            fileProgress.invalidate();
             if (piecesTracker != null) {
                 piecesTracker.setComplete(alert.pieceIndex(), true);
             }
@@ -520,7 +551,7 @@ public final class BTDownload implements BittorrentDownload {
                 FileStorage fs = ti.files();
                 int numFiles = ti.numFiles();
                 for (int i = 0; i < numFiles; i++) {
-                    BTDownloadItem item = new BTDownloadItem(th, i, fs.filePath(i), fs.fileSize(i), piecesTracker);
+                    BTDownloadItem item = new BTDownloadItem(th, i, fs.filePath(i), fs.fileSize(i), piecesTracker, fileProgress);
                     items.add(item);
                 }
                 if (piecesTracker != null) {
@@ -578,12 +609,14 @@ public final class BTDownload implements BittorrentDownload {
     }
 
     public boolean isSequentialDownload() {
-        return th.isValid() && th.status().isSequentialDownload();
+        BTDownloadStatus status = status();
+        return status != null && status.sequentialDownload;
     }
 
     public void setSequentialDownload(boolean sequential) {
         if (th.isValid()) {
             th.setSequentialDownload(sequential);
+            status = null;
         }
     }
 
@@ -591,6 +624,25 @@ public final class BTDownload implements BittorrentDownload {
         return parts;
     }
 
+    /**
+     * The status of the torrent, read from the handle at most once every
+     * {@link #STATUS_RESOLUTION_MILLIS}, or null if the handle is no longer valid.
+     */
+    private BTDownloadStatus status() {
+        if (!th.isValid()) {
+            status = null;
+            return null;
+        }
+
+        BTDownloadStatus s = status;
+        long now = System.currentTimeMillis();
+        if (s == null || (now - s.time) >= STATUS_RESOLUTION_MILLIS) {
+            s = new BTDownloadStatus(th.status(), now);
+            status = s;
+        }
+        return s;
+    }
+
     private PaymentOptions loadPaymentOptions(TorrentInfo ti) {
         try {
             BTInfoAdditionalMetadataHolder holder = new BTInfoAdditionalMetadataHolder(ti, getDisplayName());
@@ -603,11 +655,9 @@ public final class BTDownload implements BittorrentDownload {
     private void serializeResumeData(SaveResumeDataAlert alert) {
         try {
             if (th.isValid()) {
-                String infoHash = th.infoHash().toString();
-                File file = engine.resumeDataFile(infoHash);
                 entry e = add_torrent_params.write_resume_data(alert.swig().getParams());
                 e.dict().set(EXTRA_DATA_KEY, Entry.fromMap(extra).swig());
-                FileUtils.writeByteArrayToFile(file, Vectors.byte_vector2bytes(e.bencode()));
+                engine.writeResumeData(infoHash, Vectors.byte_vector2bytes(e.bencode()));
             }
         } catch (Throwable e) {
             LOG.warn("Error saving resume data", e);
@@ -634,10 +684,8 @@ public final class BTDownload implements BittorrentDownload {
     private Map<String, String> createExtra() {
         Map<String, String> map = new HashMap<>();
         try {
-            String infoHash = getInfoHash();
-            File file = engine.resumeDataFile(infoHash);
-            if (file.exists()) {
-                byte[] arr = FileUtils.readFileToByteArray(file);
+            byte[] arr = engine.readResumeData(infoHash);
+            if (arr != null) {
                 entry e = entry.bdecode(Vectors.bytes2byte_vector(arr));
                 string_entry_map d = e.dict();
                 if (d.has_key(EXTRA_DATA_KEY)) {
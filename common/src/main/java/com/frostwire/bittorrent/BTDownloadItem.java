@@ -39,8 +39,9 @@ public class BTDownloadItem implements TransferItem {
     private final long size;
 
     private PiecesTracker piecesTracker;
+    private final BTFileProgress fileProgress;
 
-    public BTDownloadItem(TorrentHandle th, int index, String filePath, long fileSize, PiecesTracker piecesTracker) {
+    BTDownloadItem(TorrentHandle th, int index, String filePath, long fileSize, PiecesTracker piecesTracker, BTFileProgress fileProgress) {
         this.th = th;
         this.index = index;
 
@@ -49,6 +50,7 @@ public class BTDownloadItem implements TransferItem {
         this.size = fileSize;
 
         this.piecesTracker = piecesTracker;
+        this.fileProgress = fileProgress;
     }
 
     @Override
@@ -82,8 +84,7 @@ public class BTDownloadItem implements TransferItem {
             return 0;
         }
 
-        long[] progress = th.fileProgress(TorrentHandle.FileProgressFlags.PIECE_GRANULARITY);
-        return progress[index];
+        return fileProgress.get(index);
     }
 
     @Override
@@ -98,7 +99,7 @@ public class BTDownloadItem implements TransferItem {
         if (downloaded == size) {
             progress = 100;
         } else {
-            progress = (int) ((float) (getDownloaded() * 100) / (float) size);
+            progress = (int) ((float) (downloaded * 100) / (float) size);
         }
 
         return progress;
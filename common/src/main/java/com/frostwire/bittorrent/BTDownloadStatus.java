@@ -0,0 +1,70 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.jlibtorrent.TorrentStatus;
+
+/**
+ * Immutable copy of the status of a torrent, the values are read from
+ * the native status once, when the snapshot is taken.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class BTDownloadStatus {
+
+    // when the snapshot was taken
+    final long time;
+
+    final boolean paused;
+    final boolean seeding;
+    final boolean finished;
+    final boolean sequentialDownload;
+    final TorrentStatus.State state;
+    final float progress;
+    final long totalDone;
+    final long allTimeDownload;
+    final long totalUpload;
+    final long allTimeUpload;
+    final int downloadPayloadRate;
+    final int uploadPayloadRate;
+    final int numPeers;
+    final int listPeers;
+    final int numSeeds;
+    final int listSeeds;
+
+    BTDownloadStatus(TorrentStatus status, long time) {
+        this.time = time;
+        this.paused = status.isPaused();
+        this.seeding = status.isSeeding();
+        this.finished = status.isFinished();
+        this.sequentialDownload = status.isSequentialDownload();
+        this.state = status.state();
+        this.progress = status.progress();
+        this.totalDone = status.totalDone();
+        this.allTimeDownload = status.allTimeDownload();
+        this.totalUpload = status.totalUpload();
+        this.allTimeUpload = status.allTimeUpload();
+        this.downloadPayloadRate = status.downloadPayloadRate();
+        this.uploadPayloadRate = status.uploadPayloadRate();
+        this.numPeers = status.numPeers();
+        this.listPeers = status.listPeers();
+        this.numSeeds = status.numSeeds();
+        this.listSeeds = status.listSeeds();
+    }
+}
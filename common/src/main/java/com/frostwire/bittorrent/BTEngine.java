@@ -51,11 +51,15 @@ import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 
 import static com.frostwire.jlibtorrent.alerts.AlertType.ADD_TORRENT;
 import static com.frostwire.jlibtorrent.alerts.AlertType.EXTERNAL_IP;
@@ -84,6 +88,8 @@ public final class BTEngine extends SessionManager {
             AlertType.LOG.swig()
     };
 
+    private static final int RESTORE_DOWNLOADS_BATCH_SIZE = 10;
+
     private static final String TORRENT_ORIG_PATH_KEY = "torrent_orig_path";
     private static final String STATE_VERSION_KEY = "state_version";
     // this constant only changes when the libtorrent settings_pack ABI is
@@ -95,6 +101,8 @@ public final class BTEngine extends SessionManager {
     private final InnerListener innerListener;
     private final Queue<RestoreDownloadTask> restoreDownloadsQueue;
 
+    private BTResumeJournal resumeJournal;
+
     private BTEngineListener listener;
 
     private BTEngine() {
@@ -151,10 +159,12 @@ public final class BTEngine extends SessionManager {
     protected void onBeforeStop() {
         removeListener(innerListener);
         saveSettings();
+        checkpointResumeData();
     }
 
     @Override
     protected void onAfterStop() {
+        closeResumeJournal();
         fireStopped();
     }
 
@@ -224,6 +234,14 @@ public final class BTEngine extends SessionManager {
         return Vectors.byte_vector2bytes(e.bencode());
     }
 
+    private void checkpointResumeData() {
+        try {
+            resumeJournal().checkpoint();
+        } catch (Throwable e) {
+            LOG.error("Error writing resume data checkpoint", e);
+        }
+    }
+
     private void saveSettings() {
         if (swig() == null) {
             return;
@@ -406,6 +424,9 @@ public final class BTEngine extends SessionManager {
             return;
         }
 
+        // recovers the journal before reading the .resume files
+        resumeJournal();
+
         File[] torrents = ctx.homeDir.listFiles(new FilenameFilter() {
             @Override
             public boolean accept(File dir, String name) {
@@ -414,29 +435,52 @@ public final class BTEngine extends SessionManager {
         });
 
         if (torrents != null) {
+            List<String> infoHashes = new ArrayList<>(torrents.length);
             for (File t : torrents) {
+                infoHashes.add(FilenameUtils.getBaseName(t.getName()));
+            }
+            List<BTRestoreIndex.Entry> entries = new BTRestoreIndex(ctx.homeDir).load(infoHashes);
+
+            // most of the torrents share a few save dirs
+            Set<File> saveDirs = new HashSet<>();
+            // the paused downloads are restored after the active ones
+            List<RestoreDownloadTask> pausedTasks = new LinkedList<>();
+            for (int i = 0; i < torrents.length; i++) {
+                File t = torrents[i];
                 try {
-                    String infoHash = FilenameUtils.getBaseName(t.getName());
-                    if (infoHash != null) {
-                        File resumeFile = resumeDataFile(infoHash);
+                    BTRestoreIndex.Entry e = entries.get(i);
+                    File resumeFile = resumeDataFile(e.infoHash);
 
-                        File savePath = readSavePath(infoHash);
+                    File savePath = e.savePath != null ? new File(e.savePath) : null;
+                    if (!saveDirs.contains(savePath)) {
                         if (setupSaveDir(savePath) == null) {
                             LOG.warn("Can't create data dir or mount point is not accessible");
                             return;
                         }
+                        saveDirs.add(savePath);
+                    }
 
-                        restoreDownloadsQueue.add(new RestoreDownloadTask(t, null, null, resumeFile));
+                    RestoreDownloadTask task = new RestoreDownloadTask(t, null, null, resumeFile);
+                    if (e.paused) {
+                        pausedTasks.add(task);
+                    } else {
+                        addRestoreDownloadTask(task);
                     }
                 } catch (Throwable e) {
                     LOG.error("Error restoring torrent download: " + t, e);
                 }
             }
+            for (RestoreDownloadTask task : pausedTasks) {
+                addRestoreDownloadTask(task);
+            }
         }
 
         migrateVuzeDownloads();
 
-        runNextRestoreDownloadTask();
+        // every ADD_TORRENT alert runs the next task, this keeps a batch of adds in flight
+        for (int i = 0; i < RESTORE_DOWNLOADS_BATCH_SIZE; i++) {
+            runNextRestoreDownloadTask();
+        }
     }
 
     File settingsFile() {
@@ -452,35 +496,65 @@ public final class BTEngine extends SessionManager {
     }
 
     File resumeDataFile(String infoHash) {
-        return new File(ctx.homeDir, infoHash + ".resume");
+        return BTResumeJournal.resumeFile(ctx.homeDir, infoHash);
     }
 
-    File readTorrentPath(String infoHash) {
-        File torrent = null;
+    void writeResumeData(String infoHash, byte[] data) throws IOException {
+        resumeJournal().put(infoHash, data);
+    }
 
+    byte[] readResumeData(String infoHash) throws IOException {
+        return resumeJournal().get(infoHash);
+    }
+
+    void deleteResumeData(String infoHash) {
         try {
-            byte[] arr = FileUtils.readFileToByteArray(resumeTorrentFile(infoHash));
-            entry e = entry.bdecode(Vectors.bytes2byte_vector(arr));
-            torrent = new File(e.dict().get(TORRENT_ORIG_PATH_KEY).string());
+            resumeJournal().remove(infoHash);
         } catch (Throwable e) {
-            // can't recover original torrent path
+            LOG.warn("Error deleting resume data", e);
         }
+    }
 
-        return torrent;
+    /**
+     * The journal is opened the first time it's used, that recovers the
+     * resume data not written to the .resume files before a crash.
+     */
+    private synchronized BTResumeJournal resumeJournal() {
+        if (resumeJournal == null) {
+            resumeJournal = new BTResumeJournal(ctx.homeDir);
+            try {
+                resumeJournal.open();
+            } catch (Throwable e) {
+                LOG.error("Error opening resume journal, writing .resume files directly", e);
+                resumeJournal.close();
+            }
+        }
+        return resumeJournal;
+    }
+
+    /**
+     * Closes the journal of a stopped session, the records after the last
+     * checkpoint are recovered when it's opened again.
+     */
+    private synchronized void closeResumeJournal() {
+        if (resumeJournal != null) {
+            resumeJournal.close();
+            resumeJournal = null;
+        }
     }
 
-    File readSavePath(String infoHash) {
-        File savePath = null;
+    File readTorrentPath(String infoHash) {
+        File torrent = null;
 
         try {
-            byte[] arr = FileUtils.readFileToByteArray(resumeDataFile(infoHash));
+            byte[] arr = FileUtils.readFileToByteArray(resumeTorrentFile(infoHash));
             entry e = entry.bdecode(Vectors.bytes2byte_vector(arr));
-            savePath = new File(e.dict().get("save_path").string());
+            torrent = new File(e.dict().get(TORRENT_ORIG_PATH_KEY).string());
         } catch (Throwable e) {
             // can't recover original torrent path
         }
 
-        return savePath;
+        return torrent;
     }
 
     private void saveTorrent(TorrentInfo ti) {
@@ -606,7 +680,7 @@ public final class BTEngine extends SessionManager {
 
                         if (torrent.exists() && saveDir.exists()) {
                             LOG.info("Restored old vuze download: " + torrent);
-                            restoreDownloadsQueue.add(new RestoreDownloadTask(torrent, saveDir, priorities, null));
+                            addRestoreDownloadTask(new RestoreDownloadTask(torrent, saveDir, priorities, null));
                             saveResumeTorrent(new TorrentInfo(torrent));
                         }
                     } catch (Throwable e) {
@@ -649,17 +723,30 @@ public final class BTEngine extends SessionManager {
         return result;
     }
 
+    private void addRestoreDownloadTask(RestoreDownloadTask task) {
+        synchronized (restoreDownloadsQueue) {
+            restoreDownloadsQueue.add(task);
+        }
+    }
+
     private void runNextRestoreDownloadTask() {
-        RestoreDownloadTask task = null;
-        try {
-            if (!restoreDownloadsQueue.isEmpty()) {
-                task = restoreDownloadsQueue.poll();
+        // a task that fails doesn't produce an alert, the next one is run instead
+        boolean added = false;
+        while (!added) {
+            RestoreDownloadTask task = null;
+            try {
+                synchronized (restoreDownloadsQueue) {
+                    if (!restoreDownloadsQueue.isEmpty()) {
+                        task = restoreDownloadsQueue.poll();
+                    }
+                }
+            } catch (Throwable t) {
+                // on Android, LinkedList's .poll() implementation throws a NoSuchElementException
             }
-        } catch (Throwable t) {
-            // on Android, LinkedList's .poll() implementation throws a NoSuchElementException
-        }
-        if (task != null) {
-            task.run();
+            if (task == null) {
+                return;
+            }
+            added = task.run();
         }
     }
 
@@ -756,7 +843,7 @@ public final class BTEngine extends SessionManager {
         System.out.println("Log: " + alert);
     }
 
-    private final class RestoreDownloadTask implements Runnable {
+    private final class RestoreDownloadTask {
 
         private final File torrent;
         private final File saveDir;
@@ -770,12 +857,13 @@ public final class BTEngine extends SessionManager {
             this.resume = resume;
         }
 
-        @Override
-        public void run() {
+        public boolean run() {
             try {
                 download(new TorrentInfo(torrent), saveDir, resume, priorities, null);
+                return true;
             } catch (Throwable e) {
                 LOG.error("Unable to restore download from previous session. (" + torrent.getAbsolutePath() + ")", e);
+                return false;
             }
         }
     }
@@ -0,0 +1,64 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.jlibtorrent.TorrentHandle;
+
+/**
+ * Downloaded bytes of every file of a torrent, shared by all the items
+ * of a download.
+ * <p>
+ * The progress is at piece granularity, it only changes when a piece
+ * finishes or the torrent is checked. The vector is read again from the
+ * handle only after {@link #invalidate()}, and at most once every
+ * {@link #REFRESH_RESOLUTION_MILLIS}.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class BTFileProgress {
+
+    private static final long REFRESH_RESOLUTION_MILLIS = 1000;
+
+    private final TorrentHandle th;
+
+    private long[] progress;
+    private volatile boolean changed;
+    private long lastRefreshTime;
+
+    BTFileProgress(TorrentHandle th) {
+        this.th = th;
+    }
+
+    synchronized long get(int index) {
+        long now = System.currentTimeMillis();
+        if (progress == null || (changed && (now - lastRefreshTime) >= REFRESH_RESOLUTION_MILLIS)) {
+            changed = false;
+            lastRefreshTime = now;
+            progress = th.fileProgress(TorrentHandle.FileProgressFlags.PIECE_GRANULARITY);
+        }
+        return index < progress.length ? progress[index] : 0;
+    }
+
+    /**
+     * Marks the progress as changed, called after a piece is finished.
+     */
+    void invalidate() {
+        changed = true;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.util.Logger;
+import com.frostwire.util.ThreadPool;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Compact index of the downloads to restore, with the info of the resume
+ * files needed before adding the torrents to the session.
+ * <p>
+ * An entry is used while the resume file keeps the same modification time
+ * and length, otherwise the resume file is read again. The resume files
+ * not in the index are read in parallel, and only the top level keys
+ * of the index are decoded.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class BTRestoreIndex {
+
+    private static final Logger LOG = Logger.getLogger(BTRestoreIndex.class);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String INDEX_FILE_NAME = "restore.index";
+    private static final String VERSION = "1";
+
+    private final File homeDir;
+    private final File file;
+
+    BTRestoreIndex(File homeDir) {
+        this.homeDir = homeDir;
+        this.file = new File(homeDir, INDEX_FILE_NAME);
+    }
+
+    /**
+     * Returns the entries of the given info hashes, in the same order, and
+     * saves the index with them.
+     */
+    List<Entry> load(List<String> infoHashes) {
+        Map<String, Entry> index = read();
+
+        Entry[] entries = new Entry[infoHashes.size()];
+        List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < entries.length; i++) {
+            String infoHash = infoHashes.get(i);
+            Entry e = index.get(infoHash);
+            if (e != null && e.isCurrent(resumeFile(infoHash))) {
+                entries[i] = e;
+            } else {
+                misses.add(i);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            readResumeFiles(infoHashes, misses, entries);
+        }
+
+        List<Entry> list = Arrays.asList(entries);
+        write(list);
+        return list;
+    }
+
+    File resumeFile(String infoHash) {
+        return BTResumeJournal.resumeFile(homeDir, infoHash);
+    }
+
+    private void readResumeFiles(final List<String> infoHashes, List<Integer> misses, Entry[] entries) {
+        int threads = Math.min(misses.size(), Math.max(2, Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = ThreadPool.newThreadPool("BTRestoreIndex", threads, true);
+        try {
+            List<Future<Entry>> futures = new ArrayList<>(misses.size());
+            for (final int i : misses) {
+                futures.add(pool.submit(new Callable<Entry>() {
+                    @Override
+                    public Entry call() {
+                        String infoHash = infoHashes.get(i);
+                        return readResume(infoHash, resumeFile(infoHash));
+                    }
+                }));
+            }
+            for (int k = 0; k < misses.size(); k++) {
+                int i = misses.get(k);
+                try {
+                    entries[i] = futures.get(k).get();
+                } catch (Throwable e) {
+                    LOG.warn("Error reading resume file of " + infoHashes.get(i), e);
+                    entries[i] = new Entry(infoHashes.get(i), null, false, 0, 0);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static Entry readResume(String infoHash, File resume) {
+        // taken before reading, if the file changes meanwhile it's read again next time
+        long modified = resume.lastModified();
+        long length = resume.length();
+
+        String savePath = null;
+        boolean paused = false;
+        if (resume.exists()) {
+            try {
+                ResumeReader r = new ResumeReader(FileUtils.readFileToByteArray(resume));
+                savePath = r.savePath;
+                paused = r.paused;
+            } catch (Throwable e) {
+                LOG.warn("Can't decode resume file " + resume, e);
+            }
+        }
+
+        return new Entry(infoHash, savePath, paused, modified, length);
+    }
+
+    private Map<String, Entry> read() {
+        Map<String, Entry> index = new HashMap<>();
+        if (!file.exists()) {
+            return index;
+        }
+
+        try {
+            List<String> lines = FileUtils.readLines(file, UTF_8.name());
+            if (lines.isEmpty() || !VERSION.equals(lines.get(0))) {
+                return index;
+            }
+            for (int i = 1; i < lines.size(); i++) {
+                String[] fields = lines.get(i).split("\t", 5);
+                if (fields.length == 5) {
+                    String savePath = fields[4].isEmpty() ? null : fields[4];
+                    Entry e = new Entry(fields[0], savePath, "1".equals(fields[3]), Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+                    index.put(e.infoHash, e);
+                }
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error reading restore index, resume files will be read", e);
+            index.clear();
+        }
+
+        return index;
+    }
+
+    private void write(List<Entry> entries) {
+        StringBuilder sb = new StringBuilder(entries.size() * 128);
+        sb.append(VERSION).append('\n');
+        for (Entry e : entries) {
+            // not indexed, read from the resume file every time
+            if (e.savePath != null && (e.savePath.indexOf('\t') != -1 || e.savePath.indexOf('\n') != -1)) {
+                continue;
+            }
+            sb.append(e.infoHash).append('\t');
+            sb.append(e.resumeModified).append('\t');
+            sb.append(e.resumeLength).append('\t');
+            sb.append(e.paused ? '1' : '0').append('\t');
+            sb.append(e.savePath != null ? e.savePath : "").append('\n');
+        }
+
+        try {
+            FileUtils.writeStringToFile(file, sb.toString(), UTF_8.name());
+        } catch (Throwable e) {
+            LOG.warn("Error writing restore index", e);
+        }
+    }
+
+    static final class Entry {
+
+        final String infoHash;
+        final String savePath;
+        final boolean paused;
+
+        private final long resumeModified;
+        private final long resumeLength;
+
+        Entry(String infoHash, String savePath, boolean paused, long resumeModified, long resumeLength) {
+            this.infoHash = infoHash;
+            this.savePath = savePath;
+            this.paused = paused;
+            this.resumeModified = resumeModified;
+            this.resumeLength = resumeLength;
+        }
+
+        private boolean isCurrent(File resume) {
+            return resume.lastModified() == resumeModified && resume.length() == resumeLength;
+        }
+    }
+
+    /**
+     * Reads the keys of the index from the top level dictionary of
+     * a bencoded resume file, the rest of the values are skipped.
+     */
+    private static final class ResumeReader {
+
+        private final byte[] data;
+        private int pos;
+
+        String savePath;
+        boolean paused;
+
+        ResumeReader(byte[] data) {
+            this.data = data;
+
+            expect('d');
+            while (data[pos] != 'e') {
+                String key = readString();
+                if (key.equals("save_path")) {
+                    savePath = readString();
+                } else if (key.equals("paused")) {
+                    paused = readInteger() != 0;
+                } else {
+                    skip();
+                }
+            }
+        }
+
+        private String readString() {
+            int length = readLength();
+            String s = new String(data, pos, length, UTF_8);
+            pos += length;
+            return s;
+        }
+
+        private long readInteger() {
+            expect('i');
+            int end = indexOf('e');
+            long n = Long.parseLong(new String(data, pos, end - pos, UTF_8));
+            pos = end + 1;
+            return n;
+        }
+
+        private void skip() {
+            byte b = data[pos];
+            if (b == 'i') {
+                readInteger();
+            } else if (b == 'l' || b == 'd') {
+                pos++;
+                while (data[pos] != 'e') {
+                    skip();
+                }
+                pos++;
+            } else {
+                int length = readLength();
+                pos += length;
+            }
+        }
+
+        private int readLength() {
+            int colon = indexOf(':');
+            int length = Integer.parseInt(new String(data, pos, colon - pos, UTF_8));
+            pos = colon + 1;
+            if (length < 0 || pos + length > data.length) {
+                throw new IllegalArgumentException("Invalid string length: " + length);
+            }
+            return length;
+        }
+
+        private int indexOf(char c) {
+            int i = pos;
+            while (data[i] != c) {
+                i++;
+            }
+            return i;
+        }
+
+        private void expect(char c) {
+            if (data[pos] != c) {
+                throw new IllegalArgumentException("Expected '" + c + "' at " + pos);
+            }
+            pos++;
+        }
+    }
+}
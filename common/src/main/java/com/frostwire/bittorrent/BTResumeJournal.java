@@ -0,0 +1,365 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.util.Logger;
+import com.frostwire.util.ThreadPool;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the resume data of the downloads.
+ * <p>
+ * Saving the resume data of a torrent appends a checksummed record to a
+ * single file, instead of rewriting its .resume file every time. In a
+ * checkpoint the last data of every torrent is written to its .resume file,
+ * the one libtorrent reads, and the journal is rewritten with only the data
+ * not written yet. That happens in a background thread at most once every
+ * {@link #CHECKPOINT_INTERVAL_MILLIS}, or when the journal gets bigger than
+ * {@link #MAX_JOURNAL_SIZE}.
+ * <p>
+ * When opened, the records left by a crash are read in one sequential pass,
+ * up to the first incomplete or corrupt record, and a checkpoint is done.
+ * A journal lost while a checkpoint replaced it is recovered from the new
+ * one, left in a temp file.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class BTResumeJournal {
+
+    private static final Logger LOG = Logger.getLogger(BTResumeJournal.class);
+
+    private static final String FILE_NAME = "resume.journal";
+
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 5 * 60 * 1000;
+    private static final long MAX_JOURNAL_SIZE = 16 * 1024 * 1024;
+    private static final long SYNC_INTERVAL_MILLIS = 1000;
+
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+
+    private final File homeDir;
+    private final File file;
+    private final File tmpFile;
+
+    // the data not written to the .resume files yet
+    private final Map<String, byte[]> pending;
+
+    // one checkpoint at a time, the files are written without the journal lock
+    private final Object checkpointLock;
+    private final ExecutorService checkpointExecutor;
+    private final AtomicBoolean checkpointQueued;
+
+    private RandomAccessFile raf;
+    private long lastCheckpointTime;
+    private long lastSyncTime;
+
+    BTResumeJournal(File homeDir) {
+        this.homeDir = homeDir;
+        this.file = new File(homeDir, FILE_NAME);
+        this.tmpFile = new File(homeDir, FILE_NAME + ".tmp");
+        this.pending = new HashMap<>();
+        this.checkpointLock = new Object();
+        this.checkpointExecutor = ThreadPool.newThreadPool("BTResumeJournal", 1, true);
+        this.checkpointQueued = new AtomicBoolean(false);
+    }
+
+    static File resumeFile(File homeDir, String infoHash) {
+        return new File(homeDir, infoHash + ".resume");
+    }
+
+    /**
+     * Recovers the records of the journal and writes them to the .resume files.
+     */
+    void open() throws IOException {
+        synchronized (this) {
+            if (!file.exists() && tmpFile.exists()) {
+                // a crash in a rewrite between the delete of the journal and
+                // the rename (windows), the new journal was complete
+                LOG.warn("Recovering the resume journal from " + tmpFile);
+                if (!tmpFile.renameTo(file)) {
+                    throw new IOException("Unable to rename " + tmpFile + " to " + file);
+                }
+            }
+            raf = new RandomAccessFile(file, "rw");
+            recover();
+        }
+        checkpoint();
+    }
+
+    void put(String infoHash, byte[] data) throws IOException {
+        boolean checkpoint = false;
+
+        synchronized (this) {
+            if (raf == null) {
+                // the journal could not be opened
+                writeResumeFile(infoHash, data);
+                return;
+            }
+
+            append(RECORD_PUT, infoHash, data);
+            pending.put(infoHash, data);
+
+            long now = System.currentTimeMillis();
+            if (raf.getFilePointer() >= MAX_JOURNAL_SIZE || (now - lastCheckpointTime) >= CHECKPOINT_INTERVAL_MILLIS) {
+                checkpoint = true;
+            }
+            if ((now - lastSyncTime) >= SYNC_INTERVAL_MILLIS) {
+                lastSyncTime = now;
+                raf.getFD().sync();
+            }
+        }
+
+        if (checkpoint && checkpointQueued.compareAndSet(false, true)) {
+            // not in the alert thread, it syncs every .resume file
+            checkpointExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    checkpointQueued.set(false);
+                    try {
+                        checkpoint();
+                    } catch (Throwable e) {
+                        LOG.error("Error writing resume data checkpoint", e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the last resume data of the torrent, or null if there is none.
+     */
+    synchronized byte[] get(String infoHash) throws IOException {
+        byte[] data = pending.get(infoHash);
+        if (data != null) {
+            return data;
+        }
+
+        File f = resumeFile(homeDir, infoHash);
+        return f.exists() ? FileUtils.readFileToByteArray(f) : null;
+    }
+
+    synchronized void remove(String infoHash) throws IOException {
+        // recorded, or the data of a previous record would be recovered
+        if (raf != null && pending.remove(infoHash) != null) {
+            append(RECORD_REMOVE, infoHash, new byte[0]);
+        }
+        resumeFile(homeDir, infoHash).delete();
+    }
+
+    /**
+     * Writes the pending data to the .resume files. The data that can't be
+     * written, or that is saved again meanwhile, stays in the journal.
+     */
+    void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            Map<String, byte[]> snapshot;
+            synchronized (this) {
+                snapshot = new HashMap<>(pending);
+            }
+
+            Map<String, byte[]> written = new HashMap<>(snapshot.size());
+            for (Map.Entry<String, byte[]> e : snapshot.entrySet()) {
+                try {
+                    writeResumeFile(e.getKey(), e.getValue());
+                    written.put(e.getKey(), e.getValue());
+                } catch (Throwable t) {
+                    LOG.warn("Error writing resume data of " + e.getKey() + ", kept in the journal", t);
+                }
+            }
+
+            synchronized (this) {
+                for (Map.Entry<String, byte[]> e : written.entrySet()) {
+                    String infoHash = e.getKey();
+                    byte[] data = pending.get(infoHash);
+                    if (data == e.getValue()) {
+                        pending.remove(infoHash);
+                    } else if (data == null) {
+                        // removed while it was written
+                        resumeFile(homeDir, infoHash).delete();
+                    }
+                }
+
+                if (raf != null) {
+                    rewrite();
+                }
+
+                lastCheckpointTime = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Closes the journal without a checkpoint, the records are recovered
+     * the next time it's opened.
+     */
+    void close() {
+        checkpointExecutor.shutdownNow();
+        // waits for a checkpoint in progress
+        synchronized (checkpointLock) {
+            synchronized (this) {
+                IOUtils.closeQuietly(raf);
+                raf = null;
+            }
+        }
+    }
+
+    /**
+     * Replaces the journal with the records of the pending data, only
+     * emptied after the files are written, a crash before this recovers
+     * them again.
+     */
+    private void rewrite() throws IOException {
+        if (pending.isEmpty()) {
+            raf.setLength(0);
+            raf.getFD().sync();
+            return;
+        }
+
+        RandomAccessFile out = new RandomAccessFile(tmpFile, "rw");
+        try {
+            out.setLength(0);
+            for (Map.Entry<String, byte[]> e : pending.entrySet()) {
+                out.write(record(RECORD_PUT, e.getKey(), e.getValue()));
+            }
+            out.getFD().sync();
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+
+        IOUtils.closeQuietly(raf);
+        try {
+            rename(tmpFile, file);
+        } finally {
+            // if the rename failed, the old journal has all the records
+            raf = new RandomAccessFile(file, "rw");
+            raf.seek(raf.length());
+        }
+    }
+
+    private void append(byte type, String infoHash, byte[] data) throws IOException {
+        // the whole record in a single write
+        raf.write(record(type, infoHash, data));
+    }
+
+    private static byte[] record(byte type, String infoHash, byte[] data) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(data.length + 64);
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(type);
+        out.writeUTF(infoHash);
+        out.write(data);
+        byte[] arr = payload.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(arr);
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(arr.length + 8);
+        out = new DataOutputStream(record);
+        out.writeInt(arr.length);
+        out.writeInt((int) crc.getValue());
+        out.write(arr);
+        return record.toByteArray();
+    }
+
+    private void recover() throws IOException {
+        long length = raf.length();
+        long pos = 0;
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (length - pos >= 8) {
+                int size = in.readInt();
+                int checksum = in.readInt();
+                if (size < 0 || size > length - pos - 8) {
+                    break;
+                }
+
+                byte[] arr = new byte[size];
+                in.readFully(arr);
+                CRC32 crc = new CRC32();
+                crc.update(arr);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                DataInputStream payload = new DataInputStream(new ByteArrayInputStream(arr));
+                byte type = payload.readByte();
+                String infoHash = payload.readUTF();
+                if (type == RECORD_PUT) {
+                    byte[] data = new byte[payload.available()];
+                    payload.readFully(data);
+                    pending.put(infoHash, data);
+                } else if (type == RECORD_REMOVE) {
+                    pending.remove(infoHash);
+                }
+
+                pos += 8 + size;
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+
+        if (pos < length) {
+            LOG.warn("Discarding incomplete or corrupt records of the resume journal, bytes: " + (length - pos));
+            raf.setLength(pos);
+        }
+        raf.seek(pos);
+    }
+
+    private void writeResumeFile(String infoHash, byte[] data) throws IOException {
+        File f = resumeFile(homeDir, infoHash);
+        File tmp = new File(homeDir, f.getName() + ".tmp");
+
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(data);
+            out.getFD().sync();
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+
+        rename(tmp, f);
+    }
+
+    private static void rename(File tmp, File f) throws IOException {
+        if (!tmp.renameTo(f)) {
+            // on windows the file can't be replaced by a rename
+            f.delete();
+            if (!tmp.renameTo(f)) {
+                throw new IOException("Unable to rename " + tmp + " to " + f);
+            }
+        }
+    }
+}
@@ -96,6 +96,17 @@ public class DefaultFileSystem implements FileSystem {
         return false;
     }
 
+    @Override
+    public boolean rename(File src, File dest) {
+        try {
+            return src.renameTo(dest);
+        } catch (Throwable e) {
+            LOG.error("Error in rename file: " + src + " -> " + dest, e);
+        }
+
+        return false;
+    }
+
     @Override
     public boolean write(File file, byte[] data) {
         try {
@@ -48,6 +48,17 @@ public interface FileSystem {
 
     boolean copy(File src, File dest);
 
+    /**
+     * Renames the file without copying the data, this is not possible
+     * across file systems, in that case it returns false and the
+     * caller should copy the file instead.
+     *
+     * @param src  the file to rename.
+     * @param dest the new path of the file.
+     * @return true if the file was renamed.
+     */
+    boolean rename(File src, File dest);
+
     boolean write(File file, byte[] data);
 
     /**
@@ -18,7 +18,9 @@
 package com.frostwire.search;
 
 /**
- * 
+ * The crawls of all the running searches use the cache at the same time,
+ * implementations must be thread safe.
+ *
  * @author gubatron
  * @author aldenml
  *
@@ -31,6 +33,17 @@ public interface CrawlCache {
 
     public void remove(String key);
 
+    /**
+     * Remembers that the data for key could not be fetched, the failure
+     * expires after ttl milliseconds.
+     */
+    public void putFailure(String key, long ttl);
+
+    /**
+     * @return true if fetching the data for key failed and the failure has not expired
+     */
+    public boolean hasFailure(String key);
+
     public void clear();
 
     public long size();
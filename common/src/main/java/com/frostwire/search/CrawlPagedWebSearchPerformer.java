@@ -38,6 +38,9 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
     private static final int FAILED_CRAWL_URL_CACHE_LIFETIME = 600000; // 10 minutes.
     private static final int DEFAULT_MAGNET_DOWNLOAD_TIMEOUT_SECS = 20; // 20 seconds.
 
+    // a waiting crawl never waits longer than the slowest fetch, plus some slack
+    private static final InFlightCrawls IN_FLIGHT_CRAWLS = new InFlightCrawls(DEFAULT_MAGNET_DOWNLOAD_TIMEOUT_SECS * 1000 + DEFAULT_CRAWL_TIMEOUT);
+
     private static CrawlCache cache = null;
     private static MagnetDownloader magnetDownloader = null;
 
@@ -59,6 +62,10 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
         this.numCrawls = numCrawls;
     }
 
+    public static CrawlCache getCache() {
+        return cache;
+    }
+
     public static void setCache(CrawlCache cache) {
         CrawlPagedWebSearchPerformer.cache = cache;
     }
@@ -84,60 +91,32 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
                 if (url != null) {
 
                     // this block is an early check for failed in cache, quick return
-                    byte[] failed = cacheGet("failed:" + url);
-                    if (failed != null) {
-                        long failedWhen = array2long(failed);
-                        if ((System.currentTimeMillis() - failedWhen) < FAILED_CRAWL_URL_CACHE_LIFETIME) {
-                            //if the failed request is still fresh we stop
-                            //LOG.info("CrawlPagedWebSearchPerformer::crawl() - hit failed cache url");
-                            onResults(Collections.EMPTY_LIST);
-                            return;
-                        } else {
-                            cacheRemove("failed:" + url);
-                        }
+                    if (cacheHasFailure(url)) {
+                        //if the failed request is still fresh we stop
+                        //LOG.info("CrawlPagedWebSearchPerformer::crawl() - hit failed cache url");
+                        onResults(Collections.EMPTY_LIST);
+                        return;
                     }
 
-
                     byte[] data = cacheGet(url);
 
+                    String infohash = null;
                     if (sr instanceof TorrentSearchResult) {
-                        String infohash = ((TorrentSearchResult) sr).getHash();
-                        if (data == null) {
-                            // maybe we've already cached it by infohash (happens quite a bit)
-                            data = cacheGet(infohash);
-                        } else {
-                            cachePut(infohash, data);
-                        }
-                    }
-
-                    if (data == null) { // not a big deal about synchronization here
-                        //LOG.debug("Downloading data for: " + url);
-
-                        if (url.startsWith("magnet")) {
-                            data = fetchMagnet(url);
-                        } else {
-                            data = fetchBytes(url, sr.getDetailsUrl(), DEFAULT_CRAWL_TIMEOUT);
-                        }
-
-                        //we put this here optimistically hoping this is actually
-                        //valid data. if no data can be crawled from this we remove it
-                        //from the cache. we do this because this same data may come
-                        //from another search engine and this way we avoid the
-                        //expense of performing another download.
-                        if (data != null) {
-                            cachePut(url, data);
-
-                            if (sr instanceof TorrentSearchResult) {
-                                // if the search result has an infohash we can use...
-                                String infohash = ((TorrentSearchResult) sr).getHash();
+                        infohash = ((TorrentSearchResult) sr).getHash();
+                        if (infohash != null) {
+                            if (data == null) {
+                                // maybe we've already cached it by infohash (happens quite a bit)
+                                data = cacheGet(infohash);
+                            } else {
                                 cachePut(infohash, data);
                             }
-                        } else {
-                            //LOG.warn("Failed to download data: " + url);
-                            cachePut("failed:" + url, long2array(System.currentTimeMillis()));
                         }
                     }
 
+                    if (data == null) {
+                        data = fetch(sr, url, infohash);
+                    }
+
                     try {
                         if (data != null) {
                             List<? extends SearchResult> results = crawlResult(obj, data);
@@ -165,6 +144,58 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
 
     protected abstract String getCrawlUrl(T sr);
 
+    /**
+     * Downloads the data, or waits for a concurrent download of the same
+     * url or info hash from any engine.
+     */
+    private byte[] fetch(final CrawlableSearchResult sr, final String url, final String infohash) {
+        return IN_FLIGHT_CRAWLS.fetch(getToken(), new String[]{url, infohash}, new InFlightCrawls.Fetch() {
+            @Override
+            public byte[] fetch() {
+                // a download of the same url that just failed, no need to try again
+                if (cacheHasFailure(url)) {
+                    return null;
+                }
+
+                // a download that just finished could have cached it already
+                byte[] data = cacheGet(url);
+                if (data == null && infohash != null) {
+                    data = cacheGet(infohash);
+                }
+                if (data != null) {
+                    return data;
+                }
+
+                //LOG.debug("Downloading data for: " + url);
+
+                if (url.startsWith("magnet")) {
+                    data = fetchMagnet(url);
+                } else {
+                    data = fetchBytes(url, sr.getDetailsUrl(), DEFAULT_CRAWL_TIMEOUT);
+                }
+
+                //we put this here optimistically hoping this is actually
+                //valid data. if no data can be crawled from this we remove it
+                //from the cache. we do this because this same data may come
+                //from another search engine and this way we avoid the
+                //expense of performing another download.
+                if (data != null) {
+                    cachePut(url, data);
+
+                    if (infohash != null) {
+                        // if the search result has an infohash we can use...
+                        cachePut(infohash, data);
+                    }
+                } else {
+                    //LOG.warn("Failed to download data: " + url);
+                    cachePutFailure(url);
+                }
+
+                return data;
+            }
+        });
+    }
+
     protected abstract List<? extends SearchResult> crawlResult(T sr, byte[] data) throws Exception;
 
     private byte[] fetchMagnet(String magnet) {
@@ -177,28 +208,28 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
     }
 
     private byte[] cacheGet(String key) {
-        if (cache != null) {
-            synchronized (cache) {
-                return cache.get(key);
-            }
-        } else {
-            return null;
-        }
+        return cache != null ? cache.get(key) : null;
     }
 
     private void cachePut(String key, byte[] data) {
         if (cache != null) {
-            synchronized (cache) {
-                cache.put(key, data);
-            }
+            cache.put(key, data);
         }
     }
 
     private void cacheRemove(String key) {
         if (cache != null) {
-            synchronized (cache) {
-                cache.remove(key);
-            }
+            cache.remove(key);
+        }
+    }
+
+    private boolean cacheHasFailure(String url) {
+        return cache != null && cache.hasFailure(url);
+    }
+
+    private void cachePutFailure(String url) {
+        if (cache != null) {
+            cache.putFailure(url, FAILED_CRAWL_URL_CACHE_LIFETIME);
         }
     }
 
@@ -213,67 +244,25 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
         return null;
     }
 
-    private static byte[] long2array(long l) {
-        byte[] arr = new byte[Long.SIZE / Byte.SIZE];
-        longToByteArray(l, 0, arr, 0, arr.length);
-        return arr;
-    }
-
-    private static long array2long(byte[] arr) {
-        return byteArrayToLong(arr, 0, 0, 0, Long.SIZE / Byte.SIZE);
-    }
-
-
     public static void clearCache() {
         if (cache != null) {
-            synchronized (cache) {
-                cache.clear();
-            }
+            cache.clear();
         }
     }
 
     public static long getCacheSize() {
         long result = 0;
         if (cache != null) {
-            synchronized (cache) {
-                result = cache.size();
-            }
+            result = cache.size();
         }
         return result;
     }
 
-    private static long byteArrayToLong(final byte[] src, final int srcPos, final long dstInit, final int dstPos,
-                                        final int nBytes) {
-        if ((src.length == 0 && srcPos == 0) || 0 == nBytes) {
-            return dstInit;
-        }
-        if ((nBytes - 1) * 8 + dstPos >= 64) {
-            throw new IllegalArgumentException("(nBytes-1)*8+dstPos is greater or equal to than 64");
-        }
-        long out = dstInit;
-        int shift;
-        for (int i = 0; i < nBytes; i++) {
-            shift = i * 8 + dstPos;
-            final long bits = (0xffL & src[i + srcPos]) << shift;
-            final long mask = 0xffL << shift;
-            out = (out & ~mask) | bits;
-        }
-        return out;
-    }
-
-    private static byte[] longToByteArray(final long src, final int srcPos, final byte[] dst, final int dstPos,
-                                          final int nBytes) {
-        if (0 == nBytes) {
-            return dst;
-        }
-        if ((nBytes - 1) * 8 + srcPos >= 64) {
-            throw new IllegalArgumentException("(nBytes-1)*8+srcPos is greater or equal to than 64");
-        }
-        int shift;
-        for (int i = 0; i < nBytes; i++) {
-            shift = i * 8 + srcPos;
-            dst[dstPos + i] = (byte) (0xff & (src >> shift));
-        }
-        return dst;
+    /**
+     * Returns the number of crawl downloads done for the search and the number
+     * saved because the same data was already being downloaded, and forgets them.
+     */
+    static int[] takeFetchStats(long token) {
+        return IN_FLIGHT_CRAWLS.takeStats(token);
     }
 }
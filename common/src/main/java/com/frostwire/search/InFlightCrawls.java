@@ -0,0 +1,159 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces concurrent crawl downloads of the same data, the first request
+ * of a key does the fetch and the others wait for its result.
+ * <p>
+ * A fetch is registered under all its keys (the url and the info hash) in
+ * order, stopping at the first key already in flight. Since the url always
+ * comes first, a fetch only waits for one that registered all its keys, and
+ * no cycles are possible.
+ * <p>
+ * When the fetch waited for fails or times out, the waiting requests do
+ * their own fetch, the fetch is expected to return quickly a failure it
+ * just recorded for the same key.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class InFlightCrawls {
+
+    // the tokens of the last searches with stats
+    private static final int MAX_STATS = 64;
+
+    private final ConcurrentMap<String, Flight> flights;
+    private final long maxWait;
+
+    private final Map<Long, Stats> stats;
+
+    InFlightCrawls(long maxWait) {
+        this.flights = new ConcurrentHashMap<>();
+        this.maxWait = maxWait;
+        this.stats = new LinkedHashMap<Long, Stats>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Stats> eldest) {
+                return size() > MAX_STATS;
+            }
+        };
+    }
+
+    /**
+     * @param token the search token, for the stats
+     * @param keys  the keys of the data, null keys are ignored
+     * @param fetch the actual download
+     * @return the data fetched by this call or by a concurrent one with a common key
+     */
+    byte[] fetch(long token, String[] keys, Fetch fetch) {
+        Flight flight = new Flight();
+        Flight leader = null;
+        List<String> registered = new ArrayList<>(keys.length);
+
+        for (String key : keys) {
+            if (key == null) {
+                continue;
+            }
+            Flight other = flights.putIfAbsent(key, flight);
+            if (other != null) {
+                leader = other;
+                break;
+            }
+            registered.add(key);
+        }
+
+        try {
+            byte[] data = leader != null ? leader.await(maxWait) : null;
+            if (data != null) {
+                count(token, true);
+            } else {
+                count(token, false);
+                data = fetch.fetch();
+            }
+            flight.data = data;
+        } finally {
+            for (String key : registered) {
+                flights.remove(key, flight);
+            }
+            flight.done.countDown();
+        }
+
+        return flight.data;
+    }
+
+    /**
+     * Returns the number of downloads done and saved for the search, and forgets them.
+     */
+    int[] takeStats(long token) {
+        synchronized (stats) {
+            Stats s = stats.remove(token);
+            return s != null ? new int[]{s.fetched, s.coalesced} : new int[]{0, 0};
+        }
+    }
+
+    private void count(long token, boolean coalesced) {
+        synchronized (stats) {
+            Stats s = stats.get(token);
+            if (s == null) {
+                s = new Stats();
+                stats.put(token, s);
+            }
+            if (coalesced) {
+                s.coalesced++;
+            } else {
+                s.fetched++;
+            }
+        }
+    }
+
+    interface Fetch {
+        byte[] fetch();
+    }
+
+    private static final class Flight {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile byte[] data;
+
+        byte[] await(long timeout) {
+            try {
+                if (done.await(timeout, TimeUnit.MILLISECONDS)) {
+                    return data;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+    }
+
+    // updated under the stats map lock
+    private static final class Stats {
+        private int fetched;
+        private int coalesced;
+    }
+}
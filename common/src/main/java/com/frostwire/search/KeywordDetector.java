@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
@@ -56,6 +57,9 @@ public final class KeywordDetector {
     }
 
     private static Logger LOG = Logger.getLogger(KeywordDetector.class);
+    // enough to hold all the tokens above the lowest feature threshold,
+    // FILE_EXTENSION keeps every token (threshold 0) and it has only a few
+    private static final int MAX_RANKED_TOKENS = 100;
     private static final Set<String> stopWords = new HashSet<>();
     private final Map<Feature, HistoHashMap<String>> histograms;
     private KeywordDetectorListener keywordDetectorListener;
@@ -64,9 +68,9 @@ public final class KeywordDetector {
     public KeywordDetector(ExecutorService threadPool) {
         histograms = new HashMap<>();
         histogramUpdateRequestsDispatcher = new HistogramUpdateRequestDispatcher(threadPool);
-        histograms.put(Feature.SEARCH_SOURCE, new HistoHashMap<String>());
+        histograms.put(Feature.SEARCH_SOURCE, new HistoHashMap<String>(MAX_RANKED_TOKENS));
         histograms.put(Feature.FILE_EXTENSION, new HistoHashMap<String>());
-        histograms.put(Feature.FILE_NAME, new HistoHashMap<String>());
+        histograms.put(Feature.FILE_NAME, new HistoHashMap<String>(MAX_RANKED_TOKENS));
     }
 
     public int totalHistogramKeys() {
@@ -75,6 +79,14 @@ public final class KeywordDetector {
                 histograms.get(Feature.FILE_NAME).getKeyCount();
     }
 
+    /**
+     * Sum of the counts of all the tokens of the feature, not only the ranked ones.
+     */
+    public int totalTokenCount(Feature feature) {
+        HistoHashMap<String> histogram = histograms.get(feature);
+        return histogram != null ? histogram.getTotalCount() : 0;
+    }
+
     public void notifyListener() {
         if (this.keywordDetectorListener != null) {
             this.keywordDetectorListener.notify(this, histograms);
@@ -86,35 +98,65 @@ public final class KeywordDetector {
     }
 
     public void addSearchTerms(Feature feature, String terms) {
-        // tokenize
-        String[] pre_tokens = terms.replaceAll("[^a-zA-Z0-9\\p{L}\\. ]", "").toLowerCase().split("\\s");
-        if (pre_tokens.length == 0) {
-            return;
-        }
-        // count consequential terms only
-        for (String token : pre_tokens) {
-            token = token.trim();
-            if (feature.minimumTokenLength <= token.length() && token.length() <= feature.maximumTokenLength && !stopWords.contains(token)) {
-                updateHistogramTokenCount(feature, token);
-            } else if (feature == Feature.FILE_EXTENSION) {
-                LOG.info("!addSearchTerm(" + token + ")");
-            }
+        HistoHashMap<String> histogram = histograms.get(feature);
+        if (histogram != null) {
+            tokenize(feature, terms, histogram);
         }
         notifyListener();
     }
 
     /**
-     * Cheap
+     * Single pass over the code points of the terms, only letters, digits and dots
+     * are kept in the tokens, a space ends a token. Only the consequential tokens
+     * are turned into strings, lowercased as whole strings (final sigma, dotted I)
+     * and counted.
      */
-    private void updateHistogramTokenCount(Feature feature, String token) {
-        HistoHashMap<String> histogram = histograms.get(feature);
-        if (histogram != null) {
-            histogram.update(token);
+    private static void tokenize(Feature feature, String terms, HistoHashMap<String> histogram) {
+        StringBuilder token = new StringBuilder(feature.maximumTokenLength);
+        int tokenLength = 0; // in chars, like String#length
+        int length = terms.length();
+        int i = 0;
+        while (i <= length) {
+            int cp = ' ';
+            if (i < length) {
+                cp = terms.codePointAt(i);
+                i += Character.charCount(cp);
+            } else {
+                i++;
+            }
+
+            if (cp == ' ') {
+                // lowercasing never makes a token shorter, a token already too long is skipped
+                String s = tokenLength <= feature.maximumTokenLength ? token.toString().toLowerCase(Locale.US) : null;
+                if (s != null && feature.minimumTokenLength <= s.length() && s.length() <= feature.maximumTokenLength) {
+                    if (!stopWords.contains(s)) {
+                        histogram.update(s);
+                    } else if (feature == Feature.FILE_EXTENSION) {
+                        LOG.info("!addSearchTerm(" + s + ")");
+                    }
+                } else if (feature == Feature.FILE_EXTENSION) {
+                    LOG.info("!addSearchTerm(" + token + ")");
+                }
+                token.setLength(0);
+                tokenLength = 0;
+            } else if (isTokenCodePoint(cp)) {
+                tokenLength += Character.charCount(cp);
+                if (tokenLength <= feature.maximumTokenLength) {
+                    token.appendCodePoint(cp);
+                }
+            }
+            // anything else is dropped, joining its neighbours
         }
     }
 
+    private static boolean isTokenCodePoint(int cp) {
+        return (cp >= 'a' && cp <= 'z') || (cp >= 'A' && cp <= 'Z') || (cp >= '0' && cp <= '9') ||
+                cp == '.' || Character.isLetter(cp);
+    }
+
     /**
-     * Expensive
+     * Cheap, the histogram is already ranked as tokens are counted,
+     * the few file extensions are sorted in full
      */
     public void requestHistogramUpdate(Feature feature, boolean forceUIUpdate) {
         HistoHashMap<String> histoHashMap = histograms.get(feature);
@@ -140,7 +182,7 @@ public final class KeywordDetector {
         @Override
         public void run() {
             if (keywordDetectorListener != null) {
-                Map.Entry<String, Integer>[] histogram = histoHashMap.histogram();
+                Map.Entry<String, Integer>[] histogram = histoHashMap.top();
                 histogramUpdateRequestsDispatcher.onLastHistogramRequestFinished();
                 keywordDetectorListener.onHistogramUpdate(KeywordDetector.this, feature, histogram, true);
             }
@@ -271,9 +313,6 @@ public final class KeywordDetector {
         }
     }
 
-    /**
-     * Expensive
-     */
     private void requestHistogramUpdateAsync(final Feature feature, final HistoHashMap<String> histoHashMap, final boolean forceUIUpdate) {
         if (!histogramUpdateRequestsDispatcher.running.get()) {
             histogramUpdateRequestsDispatcher.start();
@@ -19,10 +19,19 @@
 package com.frostwire.search;
 
 import com.frostwire.util.Logger;
+import com.frostwire.util.ThreadPool;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author gubatron
@@ -32,6 +41,12 @@ public abstract class PagedWebSearchPerformer extends WebSearchPerformer {
 
     private static final Logger LOG = Logger.getLogger(PagedWebSearchPerformer.class);
 
+    private static final int MAX_PAGE_FETCHER_THREADS = 8;
+    private static final long STOP_CHECK_INTERVAL = 250; // milliseconds
+
+    // shared by all the performers fetching pages in parallel
+    private static final ExecutorService PAGE_FETCHER = ThreadPool.newThreadPool("PageFetcher", MAX_PAGE_FETCHER_THREADS, true);
+
     private final int pages;
 
     public PagedWebSearchPerformer(String domainName, long token, String keywords, int timeout, int pages) {
@@ -41,27 +56,107 @@ public abstract class PagedWebSearchPerformer extends WebSearchPerformer {
 
     @Override
     public void perform() {
-        for (int i = 1; !isStopped() && i <= pages; i++) {
-            onResults(searchPage(i));
+        int parallelPages = Math.min(getParallelPages(), pages);
+
+        if (parallelPages > 1) {
+            performParallel(parallelPages);
+        } else {
+            for (int i = 1; !isStopped() && i <= pages; i++) {
+                onResults(searchPage(i));
+            }
+        }
+    }
+
+    /**
+     * Maximum number of pages of this engine fetched at the same time. The
+     * default of 1 fetches the pages in sequence, override it only if the url
+     * of a page does not depend on the content of the previous one. The pages
+     * fetched in parallel are parsed with {@link #searchPage(String)}.
+     */
+    protected int getParallelPages() {
+        return 1;
+    }
+
+    /**
+     * Keeps up to {@code parallelPages} pages in flight, the results are sent
+     * from this thread as each page arrives, in arrival order. No more pages are
+     * requested after an empty one, since the engine ran out of results, a page
+     * that failed is skipped.
+     */
+    private void performParallel(int parallelPages) {
+        CompletionService<List<? extends SearchResult>> completion = new ExecutorCompletionService<>(PAGE_FETCHER);
+        List<Future<List<? extends SearchResult>>> futures = new ArrayList<>(pages);
+
+        int next = 1;
+        int inFlight = 0;
+        boolean exhausted = false;
+
+        try {
+            while (!isStopped()) {
+                while (!exhausted && next <= pages && inFlight < parallelPages) {
+                    futures.add(completion.submit(new PageTask(next++)));
+                    inFlight++;
+                }
+
+                if (inFlight == 0) {
+                    break;
+                }
+
+                Future<List<? extends SearchResult>> f = completion.poll(STOP_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                if (f == null) {
+                    continue;
+                }
+                inFlight--;
+
+                List<? extends SearchResult> results;
+                try {
+                    results = f.get();
+                } catch (ExecutionException e) {
+                    LOG.error("Error searching page of " + getDomainName() + ": " + e.getCause().getMessage());
+                    continue;
+                }
+                if (results.isEmpty()) {
+                    exhausted = true;
+                }
+                onResults(results);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<List<? extends SearchResult>> f : futures) {
+                f.cancel(true);
+            }
         }
     }
 
     protected List<? extends SearchResult> searchPage(int page) {
-        List<? extends SearchResult> result = Collections.emptyList();
+        try {
+            return fetchPage(page);
+        } catch (Throwable e) {
+            LOG.error(e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Unlike {@link #searchPage(int)}, an error is thrown, an empty list
+     * always means the engine has no more results.
+     */
+    private List<? extends SearchResult> fetchPage(int page) throws IOException {
         String url = null;
         try {
             url = getUrl(page, getEncodedKeywords());
             String text = fetchSearchPage(url);
-            if (text != null) {
-                result = searchPage(text);
+            if (text == null) {
+                throw new IOException("No data");
             }
+            return searchPage(text);
         } catch (Throwable e) {
             if (url == null) {
                 url = "n.a";
             }
-            LOG.error("Error searching page [" + url + "]: " + e.getMessage());
+            throw new IOException("Error searching page [" + url + "]: " + e.getMessage(), e);
         }
-        return result;
     }
 
     protected String fetchSearchPage(String url) throws IOException {
@@ -71,4 +166,18 @@ public abstract class PagedWebSearchPerformer extends WebSearchPerformer {
     protected abstract String getUrl(int page, String encodedKeywords);
 
     protected abstract List<? extends SearchResult> searchPage(String page);
+
+    private final class PageTask implements Callable<List<? extends SearchResult>> {
+
+        private final int page;
+
+        PageTask(int page) {
+            this.page = page;
+        }
+
+        @Override
+        public List<? extends SearchResult> call() throws IOException {
+            return !isStopped() ? fetchPage(page) : Collections.<SearchResult>emptyList();
+        }
+    }
 }
@@ -0,0 +1,94 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+/**
+ * Snapshot of the scheduling metrics of a single engine in the {@link SearchManager}.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SearchEngineStats {
+
+    private final String engine;
+    private final int limit;
+    private final int queued;
+    private final int running;
+    private final long completed;
+    private final long waitTime;
+    private final long runTime;
+
+    SearchEngineStats(String engine, int limit, int queued, int running, long completed, long waitTime, long runTime) {
+        this.engine = engine;
+        this.limit = limit;
+        this.queued = queued;
+        this.running = running;
+        this.completed = completed;
+        this.waitTime = waitTime;
+        this.runTime = runTime;
+    }
+
+    /**
+     * The engine key, the domain name for web search performers.
+     */
+    public String engine() {
+        return engine;
+    }
+
+    /**
+     * Maximum number of tasks of this engine running at the same time.
+     */
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * Queue depth, tasks waiting for a thread.
+     */
+    public int queued() {
+        return queued;
+    }
+
+    public int running() {
+        return running;
+    }
+
+    public long completed() {
+        return completed;
+    }
+
+    /**
+     * Average time in milliseconds a task waited in the queue.
+     */
+    public long averageWaitTime() {
+        return completed > 0 ? waitTime / completed : 0;
+    }
+
+    /**
+     * Average time in milliseconds a task took to run.
+     */
+    public long averageRunTime() {
+        return completed > 0 ? runTime / completed : 0;
+    }
+
+    @Override
+    public String toString() {
+        return engine + "(limit=" + limit + ", queued=" + queued + ", running=" + running + ", completed=" + completed +
+                ", avgWait=" + averageWaitTime() + "ms, avgRun=" + averageRunTime() + "ms)";
+    }
+}
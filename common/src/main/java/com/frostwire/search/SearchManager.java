@@ -28,18 +28,19 @@ import com.frostwire.search.monova.MonovaSearchPerformer;
 import com.frostwire.search.soundcloud.SoundcloudSearchPerformer;
 import com.frostwire.search.torlock.TorLockSearchPerformer;
 import com.frostwire.search.torrentdownloads.TorrentDownloadsSearchPerformer;
+import com.frostwire.search.torrent.AbstractTorrentSearchResult;
 import com.frostwire.search.tpb.TPBSearchPerformer;
 import com.frostwire.search.yify.YifySearchPerformer;
 import com.frostwire.search.youtube.YouTubeSearchPerformer;
 import com.frostwire.search.zooqle.ZooqleSearchPerformer;
 import com.frostwire.util.Logger;
 import com.frostwire.util.Ref;
-import com.frostwire.util.ThreadPool;
 
 import java.lang.ref.WeakReference;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author gubatron
@@ -49,15 +50,26 @@ public final class SearchManager {
 
     private static final Logger LOG = Logger.getLogger(SearchManager.class);
 
-    private final ExecutorService executor;
-    private final List<SearchTask> tasks;
+    /**
+     * The deadline of the searches of the apps, see {@link #setDeadline(long, long)}.
+     */
+    public static final long SEARCH_DEADLINE = 60000; // 1 minute
+
+    // the time the tasks get to return once stopped by the deadline, then their threads are abandoned
+    private static final long HUNG_TASK_DELAY = 5000;
+
+    private final SearchScheduler scheduler;
+    private final Timer deadlines;
+    private final ConcurrentMap<Long, TokenTasks> tasks;
     private final List<WeakReference<SearchTable>> tables;
 
     private SearchListener listener;
+    private SearchTimeoutListener timeoutListener;
 
-    private SearchManager(int nThreads) {
-        this.executor = new ThreadPool("SearchManager", nThreads, nThreads, 1L, new PriorityBlockingQueue<Runnable>(), true);
-        this.tasks = Collections.synchronizedList(new LinkedList<SearchTask>());
+    SearchManager(int nThreads) {
+        this.scheduler = new SearchScheduler("SearchManager", nThreads, Math.max(1, nThreads / 2));
+        this.tasks = new ConcurrentHashMap<>();
+        this.deadlines = new Timer("SearchManager-deadlines", true);
         this.tables = Collections.synchronizedList(new LinkedList<WeakReference<SearchTable>>());
     }
 
@@ -99,8 +111,7 @@ public final class SearchManager {
                 }
             });
 
-            SearchTask task = new PerformTask(this, performer, nextOrdinal(performer.getToken()));
-            submit(task);
+            submit(new PerformTask(this, performer));
         } else {
             LOG.warn("Search performer is null, review your logic");
         }
@@ -114,6 +125,39 @@ public final class SearchManager {
         stopTasks(token);
     }
 
+    /**
+     * Sets an overall deadline for the search identified by token. When it expires
+     * the performers and crawls still pending are stopped, the timeout listener
+     * receives {@link SearchTimeoutListener#onTimeout(long, List)} with the engines
+     * that did not finish in time, followed right away by {@link SearchListener#onStopped(long)}.
+     * The threads of the tasks still running a few seconds later are given back to
+     * the other searches.
+     * <p>
+     * Results are streamed to the listener as they arrive, so everything found
+     * before the deadline is already delivered when it expires.
+     * <p>
+     * It can be called before or after the performers of the token are submitted.
+     * It has no effect if the search already finished, or if no performer of the
+     * token was submitted by the time it expires.
+     *
+     * @param token   the search token
+     * @param timeout the deadline in milliseconds from now
+     */
+    public void setDeadline(final long token, long timeout) {
+        final TokenTasks tokenTasks = tokenTasks(token);
+
+        TimerTask task = new TimerTask() {
+            @Override
+            public void run() {
+                expire(token, tokenTasks);
+            }
+        };
+
+        if (tokenTasks.deadline(task)) {
+            deadlines.schedule(task, timeout);
+        }
+    }
+
     public SearchListener getListener() {
         return listener;
     }
@@ -122,15 +166,77 @@ public final class SearchManager {
         this.listener = listener;
     }
 
+    public SearchTimeoutListener getTimeoutListener() {
+        return timeoutListener;
+    }
+
+    public void setTimeoutListener(SearchTimeoutListener timeoutListener) {
+        this.timeoutListener = timeoutListener;
+    }
+
+    /**
+     * Sets the maximum number of tasks (searches and crawls) of a single engine
+     * running at the same time, for engines without a specific limit.
+     */
+    public void setDefaultEngineLimit(int limit) {
+        scheduler.defaultLimit(limit);
+    }
+
+    /**
+     * Sets the maximum number of tasks of the given engine running at the same time.
+     *
+     * @param engine the engine key, the domain name for web search performers
+     * @param limit  the number of tasks
+     */
+    public void setEngineLimit(String engine, int limit) {
+        scheduler.limit(engine, limit);
+    }
+
+    /**
+     * Returns the queue depth and latency metrics of every engine seen so far.
+     */
+    public List<SearchEngineStats> getEngineStats() {
+        return scheduler.stats();
+    }
+
     private void submit(SearchTask task) {
-        tasks.add(task);
-        executor.execute(task);
+        while (!tokenTasks(task.token()).add(task)) {
+            // the entry finished concurrently, try again with a new one
+        }
+
+        scheduler.execute(task.engine(), task.token(), task);
+    }
+
+    private TokenTasks tokenTasks(long token) {
+        while (true) {
+            TokenTasks tokenTasks = tasks.get(token);
+            if (tokenTasks == null) {
+                tokenTasks = new TokenTasks();
+                TokenTasks old = tasks.putIfAbsent(token, tokenTasks);
+                if (old != null) {
+                    tokenTasks = old;
+                }
+            }
+
+            if (!tokenTasks.closed()) {
+                return tokenTasks;
+            }
+
+            tasks.remove(token, tokenTasks);
+        }
     }
 
     private void onResults(SearchPerformer performer, List<? extends SearchResult> results) {
         List<SearchResult> list = new LinkedList<>();
+        TokenTasks tokenTasks = tasks.get(performer.getToken());
 
         for (SearchResult sr : results) {
+            if (tokenTasks != null && sr instanceof AbstractTorrentSearchResult &&
+                    tokenTasks.merge((AbstractTorrentSearchResult) sr)) {
+                // same torrent already found by another engine, no new result and no new crawl
+                continue;
+            }
+
             if (sr instanceof CrawlableSearchResult) {
                 CrawlableSearchResult csr = (CrawlableSearchResult) sr;
 
@@ -183,6 +289,11 @@ public final class SearchManager {
     }
 
     private void onStopped(long token) {
+        int[] crawlStats = CrawlPagedWebSearchPerformer.takeFetchStats(token);
+        if (crawlStats[0] > 0 || crawlStats[1] > 0) {
+            LOG.info("Search " + token + " crawl downloads: " + crawlStats[0] + ", saved by coalescing: " + crawlStats[1]);
+        }
+
         try {
             if (listener != null) {
                 listener.onStopped(token);
@@ -195,8 +306,7 @@ public final class SearchManager {
     private void crawl(SearchPerformer performer, CrawlableSearchResult sr) {
         if (performer != null && !performer.isStopped()) {
             try {
-                SearchTask task = new CrawlTask(this, performer, sr, nextOrdinal(performer.getToken()));
-                submit(task);
+                submit(new CrawlTask(this, performer, sr));
             } catch (Throwable e) {
                 LOG.warn("Error scheduling crawling of search result: " + sr);
             }
@@ -206,59 +316,234 @@ public final class SearchManager {
     }
 
     private void stopTasks(long token) {
-        synchronized (tasks) {
-            for (SearchTask task : tasks) {
-                if (token == -1L || task.token() == token) {
-                    task.stopSearch();
+        if (token == -1L) {
+            for (TokenTasks tokenTasks : tasks.values()) {
+                tokenTasks.stop();
+            }
+        } else {
+            TokenTasks tokenTasks = tasks.get(token);
+            if (tokenTasks != null) {
+                tokenTasks.stop();
+            }
+        }
+    }
+
+    private void onTimeout(long token, List<String> engines) {
+        try {
+            if (timeoutListener != null) {
+                timeoutListener.onTimeout(token, engines);
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error sending timeout signal to listener: " + e.getMessage(), e);
+        }
+    }
+
+    private void taskFinished(SearchTask task) {
+        long token = task.token();
+        TokenTasks tokenTasks = task.owner;
+
+        if (tokenTasks.release(task)) {
+            tasks.remove(token, tokenTasks);
+            onStopped(token);
+        }
+    }
+
+    private void expire(long token, final TokenTasks tokenTasks) {
+        List<String> engines = tokenTasks.expire();
+        tasks.remove(token, tokenTasks);
+
+        // null if finished in time, or the deadline was set after the search finished
+        if (engines != null) {
+            onTimeout(token, engines);
+            onStopped(token);
+
+            deadlines.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    for (SearchTask task : tokenTasks.tasks) {
+                        scheduler.abandon(task);
+                    }
                 }
+            }, HUNG_TASK_DELAY);
+        }
+    }
+
+    /**
+     * Key identifying a torrent across engines, the info hash, or the normalized
+     * name and size if the hash is unknown. Returns null if none can be computed.
+     */
+    static String torrentKey(AbstractTorrentSearchResult sr) {
+        String hash = sr.getHash();
+        if (hash == null || hash.isEmpty()) {
+            String url = sr.getTorrentUrl();
+            hash = url != null && url.startsWith("magnet") ? PerformersHelper.parseInfoHash(url) : null;
+        }
+        if (hash != null && !hash.isEmpty()) {
+            return hash.toLowerCase(Locale.US);
+        }
+
+        long size = sr.getSize();
+        String name = sr.getDisplayName();
+        if (size <= 0 || name == null) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder(name.length() + 21);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
             }
         }
+        return sb.length() > 0 ? sb.append(':').append(size).toString() : null;
     }
 
-    private void checkIfFinished(long token) {
-        SearchTask pendingTask = null;
+    /**
+     * Running tasks of a single search token, the number of pending tasks is
+     * tracked with an atomic counter so no task walks are needed to compute
+     * ordinals or detect the end of the search. Once the counter reaches zero,
+     * or the deadline expires, the entry is closed (-1) and no more tasks can
+     * be registered in it.
+     */
+    private static final class TokenTasks {
+
+        private final Set<SearchTask> tasks;
+        private final AtomicInteger pending;
+        private final ConcurrentMap<String, AbstractTorrentSearchResult> torrents;
+
+        private TimerTask deadline;
+        // false until the first task, a search that never started can't time out
+        private volatile boolean started;
+
+        TokenTasks() {
+            this.tasks = Collections.newSetFromMap(new ConcurrentHashMap<SearchTask, Boolean>());
+            this.pending = new AtomicInteger(0);
+            this.torrents = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * Returns true if the result is a torrent already seen in this search,
+         * in which case it's added as a duplicate of the first one.
+         */
+        boolean merge(AbstractTorrentSearchResult sr) {
+            String key = torrentKey(sr);
+            if (key == null) {
+                return false;
+            }
+
+            AbstractTorrentSearchResult primary = torrents.putIfAbsent(key, sr);
+            if (primary == null || primary == sr) {
+                return false;
+            }
 
-        synchronized (tasks) {
-            Iterator<SearchTask> it = tasks.iterator();
-            while (it.hasNext() && pendingTask == null) {
-                SearchTask task = it.next();
-                if (task.token() == token && !task.stopped()) {
-                    pendingTask = task;
+            primary.addDuplicate(sr);
+            return true;
+        }
+
+        /**
+         * Registers the task and assigns its ordinal, returns false if this
+         * entry is already closed.
+         */
+        boolean add(SearchTask task) {
+            while (true) {
+                int n = pending.get();
+                if (n < 0) {
+                    return false;
+                }
+                if (pending.compareAndSet(n, n + 1)) {
+                    started = true;
+                    task.owner = this;
+                    task.ordinal = n;
+                    tasks.add(task);
+                    return true;
                 }
+            }
+        }
 
-                if (task.stopped()) {
-                    it.remove();
+        boolean closed() {
+            return pending.get() < 0;
+        }
+
+        /**
+         * Returns true if this was the last pending task of the token.
+         */
+        boolean release(SearchTask task) {
+            tasks.remove(task);
+            while (true) {
+                int n = pending.get();
+                if (n < 0) {
+                    // expired, the deadline already reported the end
+                    return false;
+                }
+                // the last task closes the entry in the same step, an expire can't come in between
+                int next = n == 1 ? -1 : n - 1;
+                if (pending.compareAndSet(n, next)) {
+                    if (next == -1) {
+                        cancelDeadline();
+                        return true;
+                    }
+                    return false;
                 }
             }
         }
 
-        if (pendingTask == null) {
-            onStopped(token);
+        /**
+         * Replaces the deadline task, returns false if the entry is already closed.
+         */
+        synchronized boolean deadline(TimerTask task) {
+            if (closed()) {
+                return false;
+            }
+            if (deadline != null) {
+                deadline.cancel();
+            }
+            deadline = task;
+            return true;
+        }
+
+        /**
+         * Closes the entry and stops the pending tasks, returns the engines
+         * of those tasks or null if the entry was already closed or no task
+         * was ever added to it.
+         */
+        List<String> expire() {
+            if (pending.getAndSet(-1) < 0 || !started) {
+                return null;
+            }
+
+            Set<String> engines = new LinkedHashSet<>();
+            for (SearchTask task : tasks) {
+                engines.add(task.engine());
+                task.stopSearch();
+            }
+
+            return new ArrayList<>(engines);
+        }
+
+        private synchronized void cancelDeadline() {
+            if (deadline != null) {
+                deadline.cancel();
+                deadline = null;
+            }
         }
-    }
 
-    private int nextOrdinal(long token) {
-        int ordinal = 0;
-        synchronized (tasks) {
+        void stop() {
             for (SearchTask task : tasks) {
-                if (task.token() == token) {
-                    ordinal = ordinal + 1;
-                }
+                task.stopSearch();
             }
         }
-        return ordinal;
     }
 
     private static abstract class SearchTask extends Thread implements Comparable<SearchTask> {
 
         protected final SearchManager manager;
         protected final SearchPerformer performer;
-        private final int ordinal;
+        private TokenTasks owner;
+        private int ordinal;
 
-        SearchTask(SearchManager manager, SearchPerformer performer, int ordinal) {
+        SearchTask(SearchManager manager, SearchPerformer performer) {
             this.manager = manager;
             this.performer = performer;
-            this.ordinal = ordinal;
             this.setName(performer.getClass().getName() + "-SearchTask");
         }
 
@@ -266,6 +551,14 @@ public final class SearchManager {
             return performer.getToken();
         }
 
+        public String engine() {
+            if (performer instanceof WebSearchPerformer) {
+                return ((WebSearchPerformer) performer).getDomainName();
+            } else {
+                return performer.getClass().getName();
+            }
+        }
+
         public boolean stopped() {
             return performer.isStopped();
         }
@@ -284,8 +577,8 @@ public final class SearchManager {
 
     private static final class PerformTask extends SearchTask {
 
-        PerformTask(SearchManager manager, SearchPerformer performer, int order) {
-            super(manager, performer, order);
+        PerformTask(SearchManager manager, SearchPerformer performer) {
+            super(manager, performer);
         }
 
         @Override
@@ -297,9 +590,7 @@ public final class SearchManager {
             } catch (Throwable e) {
                 LOG.warn("Error performing search: " + performer + ", e=" + e.getMessage());
             } finally {
-                if (manager.tasks.remove(this)) {
-                    manager.checkIfFinished(performer.getToken());
-                }
+                manager.taskFinished(this);
             }
         }
     }
@@ -308,8 +599,8 @@ public final class SearchManager {
 
         private final CrawlableSearchResult sr;
 
-        CrawlTask(SearchManager manager, SearchPerformer performer, CrawlableSearchResult sr, int order) {
-            super(manager, performer, order);
+        CrawlTask(SearchManager manager, SearchPerformer performer, CrawlableSearchResult sr) {
+            super(manager, performer);
             this.sr = sr;
         }
 
@@ -322,9 +613,7 @@ public final class SearchManager {
             } catch (Throwable e) {
                 LOG.warn("Error performing crawling of: " + sr + ", e=" + e.getMessage());
             } finally {
-                if (manager.tasks.remove(this)) {
-                    manager.checkIfFinished(performer.getToken());
-                }
+                manager.taskFinished(this);
             }
         }
     }
@@ -0,0 +1,280 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.util.Logger;
+import com.frostwire.util.ThreadPool;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+
+/**
+ * Dispatches search tasks to a fixed number of threads with an in-flight
+ * limit per engine, so a slow engine can't take all the threads.
+ * <p>
+ * A task that doesn't respond to its stop can be {@link #abandon(Runnable) abandoned},
+ * it keeps its thread until it returns, but not its place in the limits, and
+ * the pool starts another thread for the next tasks.
+ * <p>
+ * Engines with queued tasks are served round-robin, and inside an engine the
+ * searches (tokens) with queued tasks too, so a search with many crawls can't
+ * hold back a newer one. The tasks of a search are ordered by their natural
+ * order (the per-token ordinal).
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class SearchScheduler {
+
+    private static final Logger LOG = Logger.getLogger(SearchScheduler.class);
+
+    private final ExecutorService executor;
+    private final int nThreads;
+
+    private final Map<String, EngineQueue> engines;
+    private final List<EngineQueue> ring;
+    private final Map<Runnable, Entry> active;
+    private int cursor;
+    private int running;
+
+    private int defaultLimit;
+
+    SearchScheduler(String name, int nThreads, int defaultLimit) {
+        // the limit is enforced here, the pool only grows past it for the abandoned tasks
+        this.executor = new ThreadPool(name, nThreads, Integer.MAX_VALUE, 60, new SynchronousQueue<Runnable>(), true);
+        this.nThreads = nThreads;
+        this.engines = new HashMap<>();
+        this.ring = new ArrayList<>();
+        this.active = new HashMap<>();
+        this.defaultLimit = defaultLimit;
+    }
+
+    /**
+     * @param engine the engine key
+     * @param token  the search token
+     * @param task   a {@link Comparable} runnable
+     */
+    void execute(String engine, long token, Runnable task) {
+        synchronized (this) {
+            EngineQueue q = engineQueue(engine);
+            q.add(token, new Entry(q, task));
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Frees the thread and engine slot of a running task, the thread is
+     * interrupted and left to finish on its own. Does nothing if the task
+     * is not running.
+     */
+    void abandon(Runnable task) {
+        synchronized (this) {
+            Entry e = active.get(task);
+            if (e == null || e.released) {
+                return;
+            }
+            release(e);
+            if (e.runner != null) {
+                e.runner.interrupt();
+            }
+        }
+
+        dispatch();
+    }
+
+    synchronized void defaultLimit(int limit) {
+        this.defaultLimit = Math.max(1, limit);
+    }
+
+    synchronized void limit(String engine, int limit) {
+        EngineQueue q = engineQueue(engine);
+        q.limit = Math.max(1, limit);
+        q.customLimit = true;
+    }
+
+    synchronized List<SearchEngineStats> stats() {
+        List<SearchEngineStats> list = new ArrayList<>(ring.size());
+        for (EngineQueue q : ring) {
+            list.add(new SearchEngineStats(q.name, q.limit(), q.size, q.running, q.completed, q.waitTime, q.runTime));
+        }
+        return list;
+    }
+
+    private EngineQueue engineQueue(String engine) {
+        EngineQueue q = engines.get(engine);
+        if (q == null) {
+            q = new EngineQueue(engine);
+            engines.put(engine, q);
+            ring.add(q);
+        }
+        return q;
+    }
+
+    private void dispatch() {
+        List<Entry> ready = new ArrayList<>(nThreads);
+
+        synchronized (this) {
+            int n = ring.size();
+            int idle = 0;
+            while (running < nThreads && idle < n) {
+                cursor = (cursor + 1) % n;
+                EngineQueue q = ring.get(cursor);
+                if (q.size > 0 && q.running < q.limit()) {
+                    Entry e = q.poll();
+                    q.running++;
+                    running++;
+                    active.put(e.task, e);
+                    ready.add(e);
+                    idle = 0;
+                } else {
+                    idle++;
+                }
+            }
+        }
+
+        for (Entry e : ready) {
+            e.started = System.currentTimeMillis();
+            executor.execute(e);
+        }
+    }
+
+    private void finished(Entry e) {
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            active.remove(e.task);
+            if (!e.released) {
+                release(e);
+            }
+            EngineQueue q = e.queue;
+            q.completed++;
+            q.waitTime += e.started - e.queued;
+            q.runTime += now - e.started;
+        }
+
+        dispatch();
+    }
+
+    // guarded by this
+    private void release(Entry e) {
+        e.released = true;
+        e.queue.running--;
+        running--;
+    }
+
+    private final class EngineQueue {
+
+        private final String name;
+        private final Map<Long, PriorityQueue<Entry>> tasks;
+        // the tokens with queued tasks, the next one to serve first
+        private final ArrayDeque<Long> tokens;
+        private int size;
+
+        private int limit;
+        private boolean customLimit;
+
+        private int running;
+        private long completed;
+        private long waitTime;
+        private long runTime;
+
+        EngineQueue(String name) {
+            this.name = name;
+            this.tasks = new HashMap<>();
+            this.tokens = new ArrayDeque<>();
+        }
+
+        int limit() {
+            return customLimit ? limit : defaultLimit;
+        }
+
+        void add(long token, Entry e) {
+            PriorityQueue<Entry> q = tasks.get(token);
+            if (q == null) {
+                q = new PriorityQueue<>();
+                tasks.put(token, q);
+                tokens.addLast(token);
+            }
+            q.add(e);
+            size++;
+        }
+
+        Entry poll() {
+            Long token = tokens.pollFirst();
+            PriorityQueue<Entry> q = tasks.get(token);
+            Entry e = q.poll();
+            if (q.isEmpty()) {
+                tasks.remove(token);
+            } else {
+                tokens.addLast(token);
+            }
+            size--;
+            return e;
+        }
+    }
+
+    private final class Entry implements Runnable, Comparable<Entry> {
+
+        private final EngineQueue queue;
+        private final Runnable task;
+        private final long queued;
+        private long started;
+
+        // guarded by the scheduler
+        private Thread runner;
+        private boolean released;
+
+        Entry(EngineQueue queue, Runnable task) {
+            this.queue = queue;
+            this.task = task;
+            this.queued = System.currentTimeMillis();
+        }
+
+        @Override
+        public void run() {
+            synchronized (SearchScheduler.this) {
+                runner = Thread.currentThread();
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                LOG.warn("Error running search task: " + task + ", e=" + e.getMessage());
+            } finally {
+                synchronized (SearchScheduler.this) {
+                    runner = null;
+                }
+                // clear the interrupt of an abandon
+                Thread.interrupted();
+                finished(this);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public int compareTo(Entry o) {
+            return ((Comparable<Object>) task).compareTo(o.task);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2016, FrostWire(R). All rights reserved.
+ 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import java.util.List;
+
+/**
+ * Listener of the expired deadlines, see {@link SearchManager#setDeadline(long, long)}.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public interface SearchTimeoutListener {
+
+    /**
+     * Called when the deadline of the search expires, right before {@link SearchListener#onStopped(long)}.
+     *
+     * @param token   the search token
+     * @param engines the engines that still had pending tasks
+     */
+    void onTimeout(long token, List<String> engines);
+}
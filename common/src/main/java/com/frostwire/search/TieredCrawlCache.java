@@ -0,0 +1,482 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.util.Logger;
+import com.frostwire.util.ThreadPool;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small in-heap LRU tier in front of a persistent {@link CrawlCache}.
+ * <p>
+ * Reads are served from memory when possible, writes and removals are queued
+ * and written behind to the persistent store in batches by a background thread.
+ * The entries of a batch are still read from memory until the store has them.
+ * <p>
+ * The byte budget is shared by the two, a quarter of it for the queued writes
+ * and the rest for the cached entries. When the queue is full the writers
+ * block until the background thread catches up.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class TieredCrawlCache implements CrawlCache {
+
+    private static final Logger LOG = Logger.getLogger(TieredCrawlCache.class);
+
+    private static final long FLUSH_DELAY = 2000; // 2 seconds
+    private static final int MAX_PENDING_WRITES = 256;
+    private static final int MAX_QUEUED_WRITES = 4 * MAX_PENDING_WRITES;
+    private static final int MAX_MEMORY_FAILURES = 1024;
+
+    // marker for a pending removal, compared by identity
+    private static final byte[] REMOVED = new byte[0];
+
+    private final CrawlCache store;
+    private final long maxMemoryBytes;
+    private final long maxPendingBytes;
+
+    private final LinkedHashMap<String, byte[]> memory;
+    private long memoryBytes;
+
+    // pending, inFlight and pendingBytes are guarded by the pending lock
+    private final LinkedHashMap<String, byte[]> pending;
+    // the batch being written to the store
+    private final Map<String, byte[]> inFlight;
+    private long pendingBytes;
+
+    // serializes the batches and the clear of the store
+    private final Object storeLock;
+    // incremented after every batch, a read from the store is only cached
+    // in memory if no batch was written meanwhile
+    private final AtomicLong flushes;
+
+    // key -> expiration time of the failure, failures are written through
+    private final LinkedHashMap<String, Long> failures;
+
+    private final ExecutorService writer;
+    private final Timer timer;
+    private final AtomicBoolean flushScheduled;
+    private final AtomicBoolean flushQueued;
+    private final Runnable flushTask;
+    private volatile boolean shutdown;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+
+    public TieredCrawlCache(CrawlCache store, long maxBytes) {
+        if (store == null) {
+            throw new IllegalArgumentException("Persistent crawl cache can't be null");
+        }
+
+        this.store = store;
+        this.maxPendingBytes = maxBytes / 4;
+        this.maxMemoryBytes = maxBytes - maxPendingBytes;
+
+        this.memory = new LinkedHashMap<>(16, 0.75f, true);
+        this.pending = new LinkedHashMap<>();
+        this.inFlight = new HashMap<>();
+        this.storeLock = new Object();
+        this.flushes = new AtomicLong();
+        this.failures = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > MAX_MEMORY_FAILURES;
+            }
+        };
+
+        this.writer = ThreadPool.newThreadPool("CrawlCacheWriter", 1, true);
+        this.timer = new Timer("CrawlCacheWriter-timer", true);
+        this.flushScheduled = new AtomicBoolean(false);
+        this.flushQueued = new AtomicBoolean(false);
+        this.flushTask = new Runnable() {
+            @Override
+            public void run() {
+                flushQueued.set(false);
+                flush();
+            }
+        };
+
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+    }
+
+    @Override
+    public byte[] get(String key) {
+        synchronized (memory) {
+            byte[] data = memory.get(key);
+            if (data != null) {
+                hits.incrementAndGet();
+                return data;
+            }
+        }
+
+        long flushCount = flushes.get();
+
+        synchronized (pending) {
+            byte[] data = pending.get(key);
+            if (data == null) {
+                data = inFlight.get(key);
+            }
+            if (data != null) {
+                hits.incrementAndGet();
+                return data != REMOVED ? data : null;
+            }
+        }
+
+        misses.incrementAndGet();
+
+        byte[] data = store.get(key);
+        if (data != null) {
+            cacheRead(key, data, flushCount);
+        }
+
+        return data;
+    }
+
+    @Override
+    public void put(String key, byte[] data) {
+        if (data == null) {
+            return;
+        }
+
+        awaitRoom(data.length);
+
+        boolean full;
+        synchronized (memory) {
+            cache(key, data);
+            full = enqueue(key, data);
+        }
+        scheduleFlush(full);
+    }
+
+    @Override
+    public void remove(String key) {
+        awaitRoom(0);
+
+        boolean full;
+        synchronized (memory) {
+            byte[] data = memory.remove(key);
+            if (data != null) {
+                memoryBytes -= data.length;
+            }
+            full = enqueue(key, REMOVED);
+        }
+        scheduleFlush(full);
+    }
+
+    @Override
+    public void putFailure(final String key, final long ttl) {
+        synchronized (failures) {
+            failures.put(key, System.currentTimeMillis() + ttl);
+        }
+
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    store.putFailure(key, ttl);
+                } catch (Throwable e) {
+                    LOG.warn("Error writing crawl failure to persistent store: " + key, e);
+                }
+            }
+        };
+
+        try {
+            writer.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run(); // after shutdown
+        }
+    }
+
+    @Override
+    public boolean hasFailure(String key) {
+        synchronized (failures) {
+            Long expires = failures.get(key);
+            if (expires != null) {
+                if (expires > System.currentTimeMillis()) {
+                    return true;
+                }
+                failures.remove(key);
+                return false;
+            }
+        }
+
+        return store.hasFailure(key);
+    }
+
+    @Override
+    public void clear() {
+        // waits for a batch being written, or it would write cleared data back
+        synchronized (storeLock) {
+            synchronized (memory) {
+                memory.clear();
+                memoryBytes = 0;
+            }
+
+            synchronized (failures) {
+                failures.clear();
+            }
+
+            synchronized (pending) {
+                pending.clear();
+                inFlight.clear();
+                pendingBytes = 0;
+                pending.notifyAll();
+            }
+
+            store.clear();
+            flushes.incrementAndGet();
+        }
+    }
+
+    /**
+     * The size of the persistent store plus the writes still queued, it doesn't
+     * wait for them, so it's only an estimate when the queue updates existing keys.
+     */
+    @Override
+    public long size() {
+        long queued = 0;
+        synchronized (pending) {
+            for (byte[] data : pending.values()) {
+                if (data != REMOVED) {
+                    queued++;
+                }
+            }
+            for (byte[] data : inFlight.values()) {
+                if (data != REMOVED) {
+                    queued++;
+                }
+            }
+        }
+        return store.size() + queued;
+    }
+
+    /**
+     * Number of reads served from memory, without touching the persistent store.
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of reads that had to go to the persistent store.
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Number of entries dropped from memory to stay under the byte budget.
+     */
+    public long evictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Writes all the pending changes to the persistent store, in the calling thread.
+     */
+    public void flush() {
+        synchronized (storeLock) {
+            List<Map.Entry<String, byte[]>> batch;
+            long batchBytes = 0;
+
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<Map.Entry<String, byte[]>>(pending.entrySet());
+                for (byte[] data : pending.values()) {
+                    batchBytes += data.length;
+                }
+                inFlight.putAll(pending);
+                pending.clear();
+            }
+
+            try {
+                for (Map.Entry<String, byte[]> e : batch) {
+                    try {
+                        if (e.getValue() == REMOVED) {
+                            store.remove(e.getKey());
+                        } else {
+                            store.put(e.getKey(), e.getValue());
+                        }
+                    } catch (Throwable t) {
+                        LOG.warn("Error writing crawl cache entry to persistent store: " + e.getKey(), t);
+                    }
+                }
+            } finally {
+                synchronized (pending) {
+                    inFlight.clear();
+                    pendingBytes -= batchBytes;
+                    pending.notifyAll();
+                }
+                flushes.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending changes to the persistent store and stops the
+     * background writer, to be called when the application exits.
+     */
+    public void shutdown() {
+        shutdown = true;
+        timer.cancel();
+        writer.shutdown();
+        flush();
+    }
+
+    @Override
+    public String toString() {
+        return "TieredCrawlCache(hits=" + hits.get() + ", misses=" + misses.get() + ", evictions=" + evictions.get() + ")";
+    }
+
+    private void cache(String key, byte[] data) {
+        if (data.length > maxMemoryBytes) {
+            return;
+        }
+
+        synchronized (memory) {
+            byte[] old = memory.put(key, data);
+            if (old != null) {
+                memoryBytes -= old.length;
+            }
+            memoryBytes += data.length;
+
+            Iterator<byte[]> it = memory.values().iterator();
+            while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+                memoryBytes -= it.next().length;
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Caches data read from the store, unless the key was written or removed
+     * since the read, then the data could be stale.
+     */
+    private void cacheRead(String key, byte[] data, long flushCount) {
+        synchronized (memory) {
+            if (memory.containsKey(key)) {
+                return;
+            }
+            synchronized (pending) {
+                if (pending.containsKey(key) || inFlight.containsKey(key) || flushes.get() != flushCount) {
+                    return;
+                }
+            }
+            cache(key, data);
+        }
+    }
+
+    /**
+     * Returns true if there are enough pending writes for a batch.
+     */
+    private boolean enqueue(String key, byte[] data) {
+        synchronized (pending) {
+            byte[] old = pending.remove(key); // keep the batch in arrival order
+            if (old != null) {
+                pendingBytes -= old.length;
+            }
+            pending.put(key, data);
+            pendingBytes += data.length;
+            return pending.size() >= MAX_PENDING_WRITES;
+        }
+    }
+
+    /**
+     * Blocks while the queue has no room for a write of the given length. A write
+     * bigger than the whole queue budget waits for the queue to be empty.
+     */
+    private void awaitRoom(int length) {
+        synchronized (pending) {
+            // after shutdown the writes are done in the calling thread
+            while (!shutdown && isFull(length)) {
+                if (flushQueued.compareAndSet(false, true)) {
+                    try {
+                        writer.execute(flushTask);
+                    } catch (RejectedExecutionException e) {
+                        flushQueued.set(false);
+                        return;
+                    }
+                }
+                try {
+                    pending.wait(FLUSH_DELAY);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // called with the pending lock held
+    private boolean isFull(int length) {
+        return pending.size() + inFlight.size() >= MAX_QUEUED_WRITES ||
+                (pendingBytes > 0 && pendingBytes + length > maxPendingBytes);
+    }
+
+    private void scheduleFlush(boolean full) {
+        if (shutdown) {
+            flush();
+            return;
+        }
+
+        try {
+            if (full) {
+                // at most one queued, it writes everything pending when it runs
+                if (flushQueued.compareAndSet(false, true)) {
+                    writer.execute(flushTask);
+                }
+            } else if (flushScheduled.compareAndSet(false, true)) {
+                timer.schedule(new TimerTask() {
+                    @Override
+                    public void run() {
+                        flushScheduled.set(false);
+                        if (flushQueued.compareAndSet(false, true)) {
+                            try {
+                                writer.execute(flushTask);
+                            } catch (RejectedExecutionException e) {
+                                // shutdown, the pending writes are flushed there
+                            }
+                        }
+                    }
+                }, FLUSH_DELAY);
+            }
+        } catch (RejectedExecutionException | IllegalStateException e) {
+            // after shutdown, the writes are done in the calling thread
+            flush();
+        }
+    }
+}
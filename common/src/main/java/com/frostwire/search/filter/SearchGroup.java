@@ -18,32 +18,79 @@
 package com.frostwire.search.filter;
 
 import com.frostwire.search.SearchResult;
+import com.frostwire.util.IndexedTreeList;
 
 import java.util.Collections;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Comparator;
+import java.util.List;
 
 /**
+ * The results of a view with the same {@link FilterKey}, kept sorted
+ * as they are added. Results that compare equal keep their arrival order,
+ * a result already in the group is not added again.
+ *
  * @author gubatron
  * @author aldenml
  */
 public final class SearchGroup {
 
-    private final SortedSet<SearchResult> data;
+    private final IndexedTreeList<SearchResult> data;
+    private Comparator<SearchResult> comparator;
+
+    SearchGroup(Comparator<SearchResult> comparator) {
+        this.data = new IndexedTreeList<>();
+        this.comparator = comparator;
+    }
+
+    public List<SearchResult> data() {
+        return Collections.unmodifiableList(data);
+    }
 
-    SearchGroup(SearchFilter filter) {
-        this.data = new TreeSet<>(filter.comparator());
+    public int size() {
+        return data.size();
     }
 
-    public SortedSet<SearchResult> data() {
-        return Collections.unmodifiableSortedSet(data);
+    public SearchResult get(int index) {
+        return data.get(index);
     }
 
-    void add(SearchResult sr) {
-        data.add(sr);
+    /**
+     * Inserts the result in its sorted position, O(log n).
+     *
+     * @return false if the result was already in the group
+     */
+    boolean add(SearchResult sr) {
+        if (data.contains(sr)) {
+            return false;
+        }
+        data.add(upperBound(sr), sr);
+        return true;
+    }
+
+    void sort(Comparator<SearchResult> comparator) {
+        this.comparator = comparator;
+        Collections.sort(data, comparator); // stable, equal results keep their order
     }
 
     void clear() {
         data.clear();
     }
+
+    /**
+     * Binary search of the first position with a result greater than sr,
+     * O(log n) comparisons of O(log n) lookups each.
+     */
+    private int upperBound(SearchResult sr) {
+        int low = 0;
+        int high = data.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(data.get(mid), sr) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
 }
@@ -30,14 +30,14 @@ import java.util.*;
 public final class SearchTable {
 
     private final long token;
-    private final LinkedList<SearchResult> data;
+    private final ArrayList<SearchResult> data;
 
     private final LinkedList<WeakReference<SearchView>> views;
     private final Object lock;
 
     public SearchTable(long token) {
         this.token = token;
-        this.data = new LinkedList<>();
+        this.data = new ArrayList<>();
 
         this.views = new LinkedList<>();
         this.lock = new Object();
@@ -47,21 +47,33 @@ public final class SearchTable {
         return token;
     }
 
+    /**
+     * Returns a snapshot of the results, in arrival order.
+     */
     public List<SearchResult> data() {
-        return Collections.unmodifiableList(data);
+        synchronized (lock) {
+            return Collections.unmodifiableList(new ArrayList<>(data));
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return data.size();
+        }
     }
 
     public SearchView view(SearchFilter filter) {
-        SearchView v = new SearchView(this, filter);
         synchronized (lock) {
+            // under the lock, no results are lost between the view load and the registration
+            SearchView v = new SearchView(this, filter);
             views.add(Ref.weak(v));
+            return v;
         }
-        return v;
     }
 
     public void add(List<? extends SearchResult> results) {
-        data.addAll(results);
         synchronized (lock) {
+            data.addAll(results);
             Iterator<WeakReference<SearchView>> it = views.iterator();
             while (it.hasNext()) {
                 WeakReference<SearchView> r = it.next();
@@ -75,8 +87,8 @@ public final class SearchTable {
     }
 
     public void clear() {
-        data.clear();
         synchronized (lock) {
+            data.clear();
             Iterator<WeakReference<SearchView>> it = views.iterator();
             while (it.hasNext()) {
                 WeakReference<SearchView> r = it.next();
@@ -22,6 +22,10 @@ import com.frostwire.search.SearchResult;
 import java.util.*;
 
 /**
+ * A filtered view of a {@link SearchTable}, with the accepted results indexed
+ * by {@link FilterKey}. The index is maintained as results arrive, showing or
+ * hiding a key or changing the sort order doesn't filter the table again.
+ *
  * @author gubatron
  * @author aldenml
  */
@@ -30,6 +34,10 @@ public final class SearchView {
     private final SearchTable table;
     private final SearchFilter filter;
     private final SortedMap<FilterKey, SearchGroup> groups;
+    private final Set<FilterKey> hidden;
+
+    private Comparator<SearchResult> comparator;
+    private int size;
 
     private SearchViewListener listener;
 
@@ -37,6 +45,8 @@ public final class SearchView {
         this.table = table;
         this.filter = filter;
         this.groups = new TreeMap<>();
+        this.hidden = new HashSet<>();
+        this.comparator = filter.comparator();
 
         add(table.data());
     }
@@ -52,18 +62,22 @@ public final class SearchView {
     public void add(List<? extends SearchResult> results) {
         LinkedList<SearchResult> added = new LinkedList<>();
 
-        for (SearchResult sr : results) {
-            if (filter.accept(sr)) {
-                FilterKey key = filter.key(sr);
-                SearchGroup group = groups.get(key);
-
-                if (group == null) {
-                    group = new SearchGroup(filter);
-                    groups.put(key, group);
+        synchronized (this) {
+            for (SearchResult sr : results) {
+                if (filter.accept(sr)) {
+                    FilterKey key = filter.key(sr);
+                    SearchGroup group = groups.get(key);
+
+                    if (group == null) {
+                        group = new SearchGroup(comparator);
+                        groups.put(key, group);
+                    }
+
+                    if (group.add(sr) && !hidden.contains(key)) {
+                        size++;
+                        added.add(sr);
+                    }
                 }
-
-                group.add(sr);
-                added.add(sr);
             }
         }
 
@@ -72,6 +86,86 @@ public final class SearchView {
         }
     }
 
+    /**
+     * Number of results in the visible groups.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns up to {@code limit} results of the visible groups, starting at
+     * {@code offset}, in group order. Whole groups before the offset are skipped
+     * by their size.
+     */
+    public synchronized List<SearchResult> page(int offset, int limit) {
+        List<SearchResult> page = new ArrayList<>(Math.max(0, Math.min(limit, size - offset)));
+
+        for (Map.Entry<FilterKey, SearchGroup> e : groups.entrySet()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            if (hidden.contains(e.getKey())) {
+                continue;
+            }
+
+            SearchGroup group = e.getValue();
+            int n = group.size();
+            if (offset >= n) {
+                offset -= n;
+                continue;
+            }
+
+            for (int i = offset; i < n && page.size() < limit; i++) {
+                page.add(group.get(i));
+            }
+            offset = 0;
+        }
+
+        return page;
+    }
+
+    public synchronized boolean isVisible(FilterKey key) {
+        return !hidden.contains(key);
+    }
+
+    /**
+     * Shows or hides the results of a group, without touching the table.
+     */
+    public void setVisible(FilterKey key, boolean visible) {
+        synchronized (this) {
+            boolean changed = visible ? hidden.remove(key) : hidden.add(key);
+            if (!changed) {
+                return;
+            }
+
+            SearchGroup group = groups.get(key);
+            if (group != null) {
+                size += visible ? group.size() : -group.size();
+            }
+        }
+
+        if (listener != null) {
+            listener.viewChanged(this);
+        }
+    }
+
+    /**
+     * Sorts every group with the given comparator, results are not filtered again.
+     */
+    public void sort(Comparator<SearchResult> comparator) {
+        synchronized (this) {
+            this.comparator = comparator;
+            for (SearchGroup g : groups.values()) {
+                g.sort(comparator);
+            }
+        }
+
+        if (listener != null) {
+            listener.viewChanged(this);
+        }
+    }
+
     public void refresh() {
         clear();
         add(table.data());
@@ -86,10 +180,13 @@ public final class SearchView {
     }
 
     public void clear() {
-        for (SearchGroup g : groups.values()) {
-            g.clear();
+        synchronized (this) {
+            for (SearchGroup g : groups.values()) {
+                g.clear();
+            }
+            groups.clear();
+            size = 0;
         }
-        groups.clear();
 
         if (listener != null) {
             listener.viewChanged(this);
@@ -19,7 +19,10 @@ package com.frostwire.search.torrent;
 
 import com.frostwire.search.AbstractFileSearchResult;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -43,6 +46,8 @@ public abstract class AbstractTorrentSearchResult extends AbstractFileSearchResu
 
     private int uid = -1;
 
+    private List<TorrentSearchResult> duplicates;
+
     @Override
     public boolean isComplete() {
         return true;
@@ -57,6 +62,54 @@ public abstract class AbstractTorrentSearchResult extends AbstractFileSearchResu
         return uid;
     }
 
+    /**
+     * Results of the same torrent found by other engines, merged into
+     * this one by the search manager.
+     *
+     * @return a copy of the duplicates, empty if there are none
+     */
+    public synchronized List<TorrentSearchResult> getDuplicates() {
+        return duplicates != null ? new ArrayList<>(duplicates) : Collections.<TorrentSearchResult>emptyList();
+    }
+
+    public synchronized void addDuplicate(TorrentSearchResult sr) {
+        if (duplicates == null) {
+            duplicates = new ArrayList<>(2);
+        }
+        duplicates.add(sr);
+    }
+
+    /**
+     * The most seeds reported for this torrent by any of the engines that
+     * found it. The engines count the same swarm, so they are not added.
+     */
+    public synchronized int getMaxSeeds() {
+        int seeds = getSeeds();
+        if (duplicates != null) {
+            for (TorrentSearchResult sr : duplicates) {
+                seeds = Math.max(seeds, sr.getSeeds());
+            }
+        }
+        return seeds;
+    }
+
+    /**
+     * Names of the engines that found this torrent, the source of
+     * this result first.
+     */
+    public synchronized List<String> getSources() {
+        List<String> sources = new ArrayList<>(1 + (duplicates != null ? duplicates.size() : 0));
+        sources.add(getSource());
+        if (duplicates != null) {
+            for (TorrentSearchResult sr : duplicates) {
+                if (!sources.contains(sr.getSource())) {
+                    sources.add(sr.getSource());
+                }
+            }
+        }
+        return sources;
+    }
+
     @Override
     public String getReferrerUrl() {
         return getDetailsUrl();
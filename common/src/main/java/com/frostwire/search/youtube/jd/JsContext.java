@@ -37,9 +37,4 @@ class JsContext {
     public final StringBuilder jscode;
     public final Map<String, LambdaN> functions;
     public final Map<String, JsObject> objects;
-
-    public void free() {
-        jscode.setLength(0);
-        jscode.trimToSize();
-    }
 }
@@ -25,27 +25,32 @@ import static com.frostwire.search.youtube.jd.JavaFunctions.join;
 import static com.frostwire.search.youtube.jd.JavaFunctions.json_loads;
 import static com.frostwire.search.youtube.jd.JavaFunctions.len;
 import static com.frostwire.search.youtube.jd.JavaFunctions.list;
-import static com.frostwire.search.youtube.jd.JavaFunctions.mscpy;
 import static com.frostwire.search.youtube.jd.JavaFunctions.reverse;
 import static com.frostwire.search.youtube.jd.JavaFunctions.slice;
 import static com.frostwire.search.youtube.jd.JavaFunctions.remove_quotes;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.frostwire.regex.Matcher;
 import com.frostwire.regex.Pattern;
 
 /**
+ * A JS function extracted from the player code, compiled to a tree of
+ * closures when it's created. The statements, and the objects and functions
+ * they use, are parsed only once, evaluating the function only runs the
+ * list operations.
+ *
  * @author gubatron
  * @author aldenml
  *
  */
 public final class JsFunction<T> {
 
-    private final JsContext ctx;
     private final LambdaN initial_function;
 
     // TODO: refactor visibility here
@@ -53,26 +58,30 @@ public final class JsFunction<T> {
     private final static String VAR = "[a-zA-Z$0-9_\"]+";
     private final static String CODE = "{(?<code>[^\\}]+)\\}";
 
+    private static final Pattern ASSIGN_PATTERN = Pattern.compile("^(?<out>[a-z]+)(\\[(?<index>.+?)\\])?=(?<expr>.*)$");
+    private static final Pattern MEMBER_PATTERN = Pattern.compile("^(?<var>" + VAR + ")\\.(?<member>[^\\(]+)(\\((?<args>[^\\(\\)]*)\\))?$");
+    // oE["do"](a,67)
+    private static final Pattern QUOTED_MEMBER_PATTERN = Pattern.compile("^(?<var>" + VAR + ")\\[\"(?<member>[^\\(]+)\"\\](\\((?<args>[^\\(\\)]*)\\))?$");
+    private static final Pattern INDEX_PATTERN = Pattern.compile("^(?<in>[a-z]+)\\[(?<idx>.+)\\]$");
+    private static final Pattern OPERATOR_PATTERN = Pattern.compile("^(?<a>.+?)(?<op>[%])(?<b>.+?)$");
+    private static final Pattern CALL_PATTERN = Pattern.compile("^(?<func>[a-zA-Z]+)\\((?<args>[a-z0-9,]*)\\)$");
+    private static final Pattern FIELDS_PATTERN = Pattern.compile("(?<key>" + VAR + ")" + WS + "*:" + WS + "*function\\((?<args>[a-z,]+)\\)\\" + CODE);
+
     public JsFunction(String jscode, String funcname) {
-        this.ctx = new JsContext(jscode);
-        this.initial_function = extract_function(ctx, funcname);
+        // the context is only needed to compile, jscode is not kept after this
+        this.initial_function = extract_function(new JsContext(jscode), funcname);
     }
 
     @SuppressWarnings("unchecked")
     public T eval(Object[] args) {
-        try {
-            return (T) initial_function.eval(args);
-        } finally {
-            // at this point we know that jscode is no longer necessary
-            ctx.free();
-        }
+        return (T) initial_function.eval(args);
     }
 
     public T eval(Object s) {
         return eval(new Object[] { s });
     }
 
-    private static Object interpret_statement(final JsContext ctx, String stmt, final Map<String, Object> local_vars, final int allow_recursion) {
+    private static Expr compile_statement(final JsContext ctx, String stmt, final Scope scope, final int allow_recursion) {
         if (allow_recursion < 0) {
             throw new JsError("Recursion limit reached");
         }
@@ -81,69 +90,55 @@ public final class JsFunction<T> {
             stmt = stmt.substring("var ".length());
         }
 
-        final Matcher ass_m = Pattern.compile("^(?<out>[a-z]+)(\\[(?<index>.+?)\\])?=(?<expr>.*)$").matcher(stmt);
-        Lambda1 assign;
-        String expr;
+        final Matcher ass_m = ASSIGN_PATTERN.matcher(stmt);
         if (ass_m.find()) {
             if (ass_m.group("index") != null) {
 
-                final Object lvar = local_vars.get(ass_m.group("out"));
-                final Object idx = interpret_expression(ctx, ass_m.group("index"), local_vars, allow_recursion);
-                assert idx instanceof Integer;
+                final int lvar = scope.slot(ass_m.group("out"));
+                final Expr idx = compile_expression(ctx, ass_m.group("index"), scope, allow_recursion);
+                final Expr expr = compile_expression(ctx, ass_m.group("expr"), scope, allow_recursion);
 
-                assign = new Lambda1() {
+                return new Expr() {
                     @SuppressWarnings("unchecked")
                     @Override
-                    public Object eval(Object val) {
-                        ((List<Object>) lvar).set((Integer) idx, val);
+                    public Object eval(Object[] vars) {
+                        List<Object> list = (List<Object>) vars[lvar];
+                        Integer index = (Integer) idx.eval(vars);
+                        Object val = expr.eval(vars);
+                        list.set(index, val);
                         return val;
                     }
                 };
-                expr = ass_m.group("expr");
             } else {
 
-                final String var = ass_m.group("out");
+                final Expr expr = compile_expression(ctx, ass_m.group("expr"), scope, allow_recursion);
+                // the variable is local only after the assignment
+                final int var = scope.define(ass_m.group("out"));
 
-                assign = new Lambda1() {
+                return new Expr() {
                     @Override
-                    public Object eval(Object val) {
-                        local_vars.put(var, val);
+                    public Object eval(Object[] vars) {
+                        Object val = expr.eval(vars);
+                        vars[var] = val;
                         return val;
                     }
                 };
-                expr = ass_m.group("expr");
             }
         } else if (stmt.startsWith("return ")) {
-            assign = new Lambda1() {
-                @Override
-                public Object eval(Object v) {
-                    return v;
-                }
-            };
-            expr = stmt.substring("return ".length());
+            return compile_expression(ctx, stmt.substring("return ".length()), scope, allow_recursion);
         } else {
             // Try interpreting it as an expression
-            expr = stmt;
-            assign = new Lambda1() {
-                @Override
-                public Object eval(Object v) {
-                    return v;
-                }
-            };
+            return compile_expression(ctx, stmt, scope, allow_recursion);
         }
-
-        Object v = interpret_expression(ctx, expr, local_vars, allow_recursion);
-        return assign.eval(v);
     }
 
-    @SuppressWarnings("unchecked")
-    private static Object interpret_expression(final JsContext ctx, String expr, Map<String, Object> local_vars, int allow_recursion) {
+    private static Expr compile_expression(final JsContext ctx, String expr, final Scope scope, int allow_recursion) {
         if (isdigit(expr)) {
-            return Integer.valueOf(expr);
+            return constant(Integer.valueOf(expr));
         }
 
         if (isalpha(expr)) {
-            return local_vars.get(expr);
+            return variable(scope.slot(expr));
         }
 
         //        try:
@@ -152,139 +147,266 @@ public final class JsFunction<T> {
         //            pass
         Object jsl = json_loads(expr);
         if (jsl != null) {
-            return jsl;
+            return constant(jsl);
         }
 
-        Matcher m = Pattern.compile("^(?<var>"+VAR+")\\.(?<member>[^\\(]+)(\\((?<args>[^\\(\\)]*)\\))?$").matcher(expr);
+        Matcher m = MEMBER_PATTERN.matcher(expr);
         boolean mFind = m.find();
         if (!mFind) {
             // maybe it's the new pattern?
-            // oE["do"](a,67)
-            m = Pattern.compile("^(?<var>" + VAR + ")\\[\"(?<member>[^\\(]+)\"\\](\\((?<args>[^\\(\\)]*)\\))?$").matcher(expr);
+            m = QUOTED_MEMBER_PATTERN.matcher(expr);
             mFind = m.find();
         }
 
         if (mFind) {
-            String variable = m.group("var");
-            String member = m.group("member");
-            String arg_str = m.group("args");
+            return compile_member(ctx, expr, m, scope);
+        }
 
-            Object obj = null;
-            if (local_vars.containsKey(variable)) {
-                obj = local_vars.get(variable);
-            } else {
-                if (!ctx.objects.containsKey(variable)) {
-                    ctx.objects.put(variable, extract_object(ctx, variable));
+        m = INDEX_PATTERN.matcher(expr);
+        if (m.find()) {
+            final int val = scope.slot(m.group("in"));
+            final Expr idx = compile_expression(ctx, m.group("idx"), scope, allow_recursion - 1);
+            return new Expr() {
+                @Override
+                public Object eval(Object[] vars) {
+                    return ((List<?>) vars[val]).get((Integer) idx.eval(vars));
                 }
-                obj = ctx.objects.get(variable);
-            }
+            };
+        }
 
-            if (arg_str == null) {
-                // Member access
-                if (member.equals("length")) {
-                    return len(obj);
+        m = OPERATOR_PATTERN.matcher(expr);
+        if (m.find()) {
+            final Expr a = compile_expression(ctx, m.group("a"), scope, allow_recursion);
+            final Expr b = compile_expression(ctx, m.group("b"), scope, allow_recursion);
+            return new Expr() {
+                @Override
+                public Object eval(Object[] vars) {
+                    return (Integer) a.eval(vars) % (Integer) b.eval(vars);
                 }
-                return ((JsObject) obj).functions.get(member).eval(new Object[] {});
-            }
+            };
+        }
 
-            if (!expr.endsWith(")")) {
-                throw new JsError("Error parsing js code");
+        m = CALL_PATTERN.matcher(expr);
+        if (m.find()) {
+            final LambdaN f = function(ctx, m.group("func"));
+            String[] args = m.group("args").split(",");
+            final Expr[] argvals = new Expr[args.length];
+            for (int i = 0; i < args.length; i++) {
+                String v = args[i];
+                argvals[i] = isdigit(v) ? constant(Integer.valueOf(v)) : variable(scope.slot(v));
             }
-            List<Object> argvals = null;
-            if (arg_str.equals("")) {
-                argvals = new ArrayList<Object>();
-            } else {
-                argvals = new ArrayList<Object>();
-                for (String v : arg_str.split(",")) {
-                    argvals.add(interpret_expression(ctx, v, local_vars, 20));
+            return new Expr() {
+                @Override
+                public Object eval(Object[] vars) {
+                    return f.eval(evalAll(argvals, vars));
                 }
-            }
+            };
+        }
+        throw new JsError(String.format("Unsupported JS expression %s", expr));
+    }
 
-            if (member.equals("split")) {
-                //assert argvals == ('',)
-                return list(obj);
-            }
-            if (member.equals("join")) {
-                //assert len(argvals) == 1
-                return join((List<Object>) obj, argvals.get(0));
-            }
-            if (member.equals("reverse")) {
-                //assert len(argvals) == 0
-                reverse(obj);
-                return obj;
+    private static Expr compile_member(final JsContext ctx, String expr, Matcher m, final Scope scope) {
+        String variable = m.group("var");
+        final String member = m.group("member");
+        String arg_str = m.group("args");
+
+        final Expr obj;
+        if (scope.isDefined(variable)) {
+            obj = variable(scope.slot(variable));
+        } else {
+            obj = constant(object(ctx, variable));
+        }
+
+        if (arg_str == null) {
+            // Member access
+            if (member.equals("length")) {
+                return new Expr() {
+                    @Override
+                    public Object eval(Object[] vars) {
+                        return len(obj.eval(vars));
+                    }
+                };
             }
-            if (member.equals("slice")) {
-                //assert len(argvals) == 1
-                return slice(obj, (Integer) argvals.get(0));
+            return call(obj, member, new Expr[] {});
+        }
+
+        if (!expr.endsWith(")")) {
+            throw new JsError("Error parsing js code");
+        }
+        final Expr[] argvals;
+        if (arg_str.equals("")) {
+            argvals = new Expr[] {};
+        } else {
+            String[] args = arg_str.split(",");
+            argvals = new Expr[args.length];
+            for (int i = 0; i < args.length; i++) {
+                argvals[i] = compile_expression(ctx, args[i], scope, 20);
             }
-            if (member.equals("splice")) {
-                //assert isinstance(obj, list)
-                int index = (Integer) argvals.get(0);
-                int howMany = (Integer) argvals.get(1);
-                List<Object> res = new ArrayList<Object>();
-                List<Object> list = (List<Object>) obj;
-                for (int i = index; i < Math.min(index + howMany, len(obj)); i++) {
-                    res.add(list.remove(index));
+        }
+
+        if (member.equals("split")) {
+            //assert argvals == ('',)
+            return new Expr() {
+                @Override
+                public Object eval(Object[] vars) {
+                    return list(obj.eval(vars));
+                }
+            };
+        }
+        if (member.equals("join")) {
+            //assert len(argvals) == 1
+            return new Expr() {
+                @SuppressWarnings("unchecked")
+                @Override
+                public Object eval(Object[] vars) {
+                    return join((List<Object>) obj.eval(vars), argvals[0].eval(vars));
                 }
-                return res.toArray();
+            };
+        }
+        if (member.equals("reverse")) {
+            //assert len(argvals) == 0
+            return new Expr() {
+                @Override
+                public Object eval(Object[] vars) {
+                    Object o = obj.eval(vars);
+                    reverse(o);
+                    return o;
+                }
+            };
+        }
+        if (member.equals("slice")) {
+            //assert len(argvals) == 1
+            return new Expr() {
+                @Override
+                public Object eval(Object[] vars) {
+                    return slice(obj.eval(vars), (Integer) argvals[0].eval(vars));
+                }
+            };
+        }
+        if (member.equals("splice")) {
+            //assert isinstance(obj, list)
+            return new Expr() {
+                @SuppressWarnings("unchecked")
+                @Override
+                public Object eval(Object[] vars) {
+                    List<Object> list = (List<Object>) obj.eval(vars);
+                    int index = (Integer) argvals[0].eval(vars);
+                    int howMany = (Integer) argvals[1].eval(vars);
+                    List<Object> res = new ArrayList<Object>();
+                    for (int i = index; i < Math.min(index + howMany, len(list)); i++) {
+                        res.add(list.remove(index));
+                    }
+                    return res.toArray();
+                }
+            };
+        }
+
+        return call(obj, member, argvals);
+    }
+
+    private static Expr call(final Expr obj, final String member, final Expr[] argvals) {
+        return new Expr() {
+            @Override
+            public Object eval(Object[] vars) {
+                // looked up here, the object could be still compiling when this is created
+                JsObject o = (JsObject) obj.eval(vars);
+                return o.functions.get(member).eval(evalAll(argvals, vars));
             }
+        };
+    }
 
-            return ((JsObject) obj).functions.get(member).eval(argvals.toArray());
-        }
+    private static Expr constant(final Object value) {
+        return new Expr() {
+            @Override
+            public Object eval(Object[] vars) {
+                return value;
+            }
+        };
+    }
 
-        m = Pattern.compile("^(?<in>[a-z]+)\\[(?<idx>.+)\\]$").matcher(expr);
-        if (m.find()) {
-            Object val = local_vars.get(m.group("in"));
-            Object idx = interpret_expression(ctx, m.group("idx"), local_vars, allow_recursion - 1);
-            return ((List<?>) val).get((Integer) idx);
+    private static Expr variable(final int slot) {
+        return new Expr() {
+            @Override
+            public Object eval(Object[] vars) {
+                return vars[slot];
+            }
+        };
+    }
+
+    private static Object[] evalAll(Expr[] exprs, Object[] vars) {
+        Object[] r = new Object[exprs.length];
+        for (int i = 0; i < exprs.length; i++) {
+            r[i] = exprs[i].eval(vars);
         }
+        return r;
+    }
 
-        m = Pattern.compile("^(?<a>.+?)(?<op>[%])(?<b>.+?)$").matcher(expr);
-        if (m.find()) {
-            Object a = interpret_expression(ctx, m.group("a"), local_vars, allow_recursion);
-            Object b = interpret_expression(ctx, m.group("b"), local_vars, allow_recursion);
-            return (Integer) a % (Integer) b;
+    private static JsObject object(final JsContext ctx, String objname) {
+        JsObject obj = ctx.objects.get(objname);
+        if (obj == null) {
+            obj = new JsObject();
+            // added before compiling its functions, they can use the object
+            ctx.objects.put(objname, obj);
+            extract_object(ctx, objname, obj);
         }
+        return obj;
+    }
 
-        m = Pattern.compile("^(?<func>[a-zA-Z]+)\\((?<args>[a-z0-9,]*)\\)$").matcher(expr);
-        if (m.find()) {
-            String fname = m.group("func");
-            if (!ctx.functions.containsKey(fname) && ctx.jscode.length() > 0) {
-                ctx.functions.put(fname, extract_function(ctx, fname));
-            }
-            List<Object> argvals = new ArrayList<Object>();
-            for (String v : m.group("args").split(",")) {
-                if (isdigit(v)) {
-                    argvals.add(Integer.valueOf(v));
-                } else {
-                    argvals.add(local_vars.get(v));
+    private static LambdaN function(final JsContext ctx, String funcname) {
+        LambdaN f = ctx.functions.get(funcname);
+        if (f == null) {
+            // a recursive function calls itself through this until it's compiled
+            final LambdaN[] compiled = new LambdaN[1];
+            ctx.functions.put(funcname, new LambdaN() {
+                @Override
+                public Object eval(Object[] args) {
+                    return compiled[0].eval(args);
                 }
+            });
+            try {
+                f = extract_function(ctx, funcname);
+            } catch (RuntimeException e) {
+                ctx.functions.remove(funcname);
+                throw e;
             }
-            return ctx.functions.get(fname).eval(argvals.toArray());
+            compiled[0] = f;
+            ctx.functions.put(funcname, f);
         }
-        throw new JsError(String.format("Unsupported JS expression %s", expr));
+        return f;
     }
 
-    private static JsObject extract_object(final JsContext ctx, String objname) {
-        JsObject obj = new JsObject();
+    private static void extract_object(final JsContext ctx, String objname, JsObject obj) {
         String obj_mRegex = String.format("(var"+ WS +"+)%1$s"+ WS +"*="+ WS +"*\\{",
                 escape(objname)) + WS +"*(?<fields>("+VAR + WS +"*:"+ WS +"*function\\(.*?\\)"+ WS +"*\\{.*?\\}(,"+ WS +")*)*)\\}"+ WS +"*;";
         final Matcher obj_m = Pattern.compile(obj_mRegex).matcher(ctx.jscode);
         obj_m.find();
         String fields = obj_m.group("fields");
         // Currently, it only supports function definitions
-        final Matcher fields_m = Pattern.compile("(?<key>"+VAR+")"+ WS +"*:"+ WS +"*function\\((?<args>[a-z,]+)\\)\\"+CODE).matcher(fields);
+        final Matcher fields_m = FIELDS_PATTERN.matcher(fields);
 
         while (fields_m.find()) {
-            final String[] argnames = mscpy(fields_m.group("args").split(","));
-
-            LambdaN f = build_function(ctx, argnames, fields_m.group("code"));
-
+            final String[] argnames = fields_m.group("args").split(",");
             String field = remove_quotes(fields_m.group("key"));
+
+            LambdaN f;
+            try {
+                f = build_function(ctx, argnames, fields_m.group("code"));
+            } catch (RuntimeException e) {
+                // the object can have functions not used by this one, with code
+                // not supported here, it's an error only if it's called
+                f = unsupported(field, e.getMessage());
+            }
             obj.functions.put(field, f);
         }
+    }
 
-        return obj;
+    private static LambdaN unsupported(final String funcname, final String error) {
+        return new LambdaN() {
+            @Override
+            public Object eval(Object[] args) {
+                throw new JsError("Unsupported JS function " + funcname + ": " + error);
+            }
+        };
     }
 
     private static LambdaN extract_function(final JsContext ctx, String funcname) {
@@ -295,30 +417,79 @@ public final class JsFunction<T> {
             throw new JsError("JsFunction.extract_function(): Could not find JS function " + funcname);
         }
         
-        final String[] argnames = mscpy(func_m.group("args").split(","));
+        final String[] argnames = func_m.group("args").split(",");
 
         return build_function(ctx, argnames, func_m.group("code"));
     }
 
     private static LambdaN build_function(final JsContext ctx, final String[] argnames, String code) {
-        final String[] stmts = mscpy(code.split(";"));
+        final Scope scope = new Scope();
+        final int[] args_slots = new int[argnames.length];
+        for (int i = 0; i < argnames.length; i++) {
+            args_slots[i] = scope.define(argnames[i]);
+        }
+
+        String[] stmts = code.split(";");
+        final Expr[] body = new Expr[stmts.length];
         for (int i = 0; i < stmts.length; i++) {
-            stmts[i] = stmts[i].replaceAll("[\n\r]", "");
+            body[i] = compile_statement(ctx, stmts[i].replaceAll("[\n\r]", "").trim(), scope, 100);
         }
+        final int size = scope.size();
 
         return new LambdaN() {
             @Override
             public Object eval(Object[] args) {
-                Map<String, Object> local_vars = new HashMap<String, Object>();
-                for (int i = 0; i < argnames.length; i++) {
-                    local_vars.put(argnames[i], args[i]);
+                Object[] vars = new Object[size];
+                for (int i = 0; i < args_slots.length; i++) {
+                    vars[args_slots[i]] = args[i];
                 }
                 Object res = null;
-                for (String stmt : stmts) {
-                    res = interpret_statement(ctx, stmt.trim(), local_vars, 100);
+                for (Expr stmt : body) {
+                    res = stmt.eval(vars);
                 }
                 return res;
             }
         };
     }
+
+    /**
+     * A compiled expression or statement, the local variables are
+     * in the array, in the slots given by the function's scope.
+     */
+    private interface Expr {
+
+        Object eval(Object[] vars);
+    }
+
+    /**
+     * Local variables of a function while it's compiled.
+     */
+    private static final class Scope {
+
+        private final Map<String, Integer> slots = new HashMap<String, Integer>();
+        private final Set<String> defined = new HashSet<String>();
+
+        int slot(String name) {
+            Integer slot = slots.get(name);
+            if (slot == null) {
+                slot = slots.size();
+                slots.put(name, slot);
+            }
+            return slot;
+        }
+
+        int define(String name) {
+            defined.add(name);
+            return slot(name);
+        }
+
+        // statements run in order, defined at this point means defined when it runs
+        boolean isDefined(String name) {
+            return defined.contains(name);
+        }
+
+        int size() {
+            return slots.size();
+        }
+    }
 }
@@ -28,6 +28,8 @@ import com.frostwire.search.torrent.TorrentRegexSearchPerformer;
 public final class ZooqleSearchPerformer extends TorrentRegexSearchPerformer<ZooqleSearchResult> {
 
     private static final int MAX_RESULTS = 30;
+    // the page number is in the url, the pages are fetched at the same time
+    private static final int PAGES = 2;
     private static final String PRELIMINARY_RESULTS_REGEX =
             "(?is)<i class=\".*?text-muted2 zqf-small pad-r2\"></i><a class=\".*?small\"href=\"/(?<detailPath>.*?).html\">.*?</a>";
     private static final String HTML_DETAIL_REGEX = "(?is)<h4 id=torname>(?<filename>.*?)<span.*?" +
@@ -38,7 +40,12 @@ public final class ZooqleSearchPerformer extends TorrentRegexSearchPerformer<Zoo
             "href=\"/download/(?<torrent>.*?)\\.torrent\"";
 
     public ZooqleSearchPerformer(String domainName, long token, String keywords, int timeout) {
-        super(domainName, token, keywords, timeout, 1, 2 * MAX_RESULTS, MAX_RESULTS, PRELIMINARY_RESULTS_REGEX, HTML_DETAIL_REGEX);
+        super(domainName, token, keywords, timeout, PAGES, PAGES * MAX_RESULTS, MAX_RESULTS, PRELIMINARY_RESULTS_REGEX, HTML_DETAIL_REGEX);
+    }
+
+    @Override
+    protected int getParallelPages() {
+        return PAGES;
     }
 
     @Override
@@ -26,12 +26,17 @@ import com.frostwire.util.HttpClientFactory;
 import com.frostwire.util.ThreadPool;
 import com.frostwire.util.http.HttpClient;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.FileChannel;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -49,6 +54,8 @@ public abstract class BaseHttpDownload implements Transfer {
     // is 20 concurrent downloads enough?
     private static final ExecutorService THREAD_POOL = ThreadPool.newThreadPool("HttpDownload", 20, true);
 
+    private static final long MOVE_CHUNK_SIZE = 8 * 1024 * 1024;
+
     protected final Info info;
 
     protected final File savePath;
@@ -59,6 +66,10 @@ public abstract class BaseHttpDownload implements Transfer {
     protected SpeedStat stat;
     protected boolean complete;
 
+    private volatile MoveMode moveMode;
+    private volatile long bytesMoved;
+    private volatile long moveTime;
+
     protected BaseHttpDownload(Info info) {
         this.info = info;
 
@@ -158,6 +169,29 @@ public abstract class BaseHttpDownload implements Transfer {
         return complete;
     }
 
+    /**
+     * How the downloaded file was moved from the temp path to the save path,
+     * null while it's not moved.
+     */
+    public MoveMode getMoveMode() {
+        return moveMode;
+    }
+
+    /**
+     * Bytes of the downloaded file already moved to the save path, it
+     * grows with the copy while the transfer is finishing.
+     */
+    public long getBytesMoved() {
+        return bytesMoved;
+    }
+
+    /**
+     * Time in milliseconds it took to move the downloaded file.
+     */
+    public long getMoveTime() {
+        return moveTime;
+    }
+
     @Override
     public List<TransferItem> getItems() {
         return Collections.emptyList();
@@ -266,20 +300,83 @@ public abstract class BaseHttpDownload implements Transfer {
 
     protected void moveAndComplete(File src, File dst) {
         FileSystem fs = Platforms.fileSystem();
-        if (fs.copy(src, dst)) {
+        long start = System.currentTimeMillis();
+
+        // a rename in the same volume, the data is copied only across volumes
+        if (fs.rename(src, dst)) {
+            bytesMoved = fs.length(dst);
+            moveMode = MoveMode.RENAME;
+        } else if (copy(fs, src, dst)) {
+            moveMode = MoveMode.COPY;
 
             if (!fs.delete(src)) {
                 LOG.warn("Error deleting source file while moving: " + src);
             }
+        } else {
+            complete(TransferState.ERROR_MOVING_INCOMPLETE);
+            return;
+        }
 
-            state = TransferState.SCANNING;
+        moveTime = System.currentTimeMillis() - start;
+        LOG.info("Moved " + dst + " (" + moveMode + ", " + bytesMoved + " bytes) in " + moveTime + " ms");
 
-            fs.scan(dst);
+        state = TransferState.SCANNING;
 
-            complete(TransferState.COMPLETE);
-        } else {
-            complete(TransferState.ERROR_MOVING_INCOMPLETE);
+        fs.scan(dst);
+
+        complete(TransferState.COMPLETE);
+    }
+
+    private boolean copy(FileSystem fs, File src, File dst) {
+        try {
+            transfer(src, dst);
+            return true;
+        } catch (Throwable e) {
+            LOG.warn("Error copying file: " + src + " -> " + dst + ", trying with the platform file system", e);
+        }
+
+        // in android the documents of the SD card are only written by the platform
+        bytesMoved = 0;
+        if (fs.copy(src, dst)) {
+            bytesMoved = fs.length(dst);
+            return true;
         }
+        return false;
+    }
+
+    /**
+     * Copies the file in chunks with {@link FileChannel#transferTo}, updating
+     * the bytes moved after each chunk.
+     */
+    private void transfer(File src, File dst) throws IOException {
+        FileInputStream in = null;
+        FileOutputStream out = null;
+        try {
+            in = new FileInputStream(src);
+            out = new FileOutputStream(dst);
+            FileChannel input = in.getChannel();
+            FileChannel output = out.getChannel();
+
+            long size = input.size();
+            long pos = 0;
+            while (pos < size) {
+                long n = input.transferTo(pos, Math.min(MOVE_CHUNK_SIZE, size - pos), output);
+                if (n <= 0) {
+                    break;
+                }
+                pos += n;
+                bytesMoved = pos;
+            }
+
+            if (pos != size) {
+                throw new IOException("Failed to copy full contents from '" + src + "' to '" + dst + "'");
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+            IOUtils.closeQuietly(in);
+        }
+
+        dst.setLastModified(src.lastModified());
     }
 
     protected void onHttpComplete() throws Throwable {
@@ -369,6 +466,10 @@ public abstract class BaseHttpDownload implements Transfer {
         }
     }
 
+    public enum MoveMode {
+        RENAME, COPY
+    }
+
     public static final class Info {
 
         private final String url;
@@ -18,16 +18,39 @@
 
 package com.frostwire.util;
 
+import java.util.AbstractMap;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Thread safe key counter.
+ * <p>
+ * Every key has its own mutable counter, an update is a lookup and an atomic
+ * increment. Optionally, the keys with the highest counts are kept ranked
+ * as they are updated, see {@link #top()}.
+ */
 public class HistoHashMap<K> {
-    private final Map<K,Integer> map = new HashMap<>();
+
+    private final ConcurrentMap<K, AtomicInteger> map = new ConcurrentHashMap<>();
+    private final AtomicInteger totalCount = new AtomicInteger();
+    private final TopKeys<K> top;
+
+    public HistoHashMap() {
+        this(0);
+    }
+
+    /**
+     * @param topSize number of keys with the highest counts to keep ranked, 0 to disable it
+     */
+    public HistoHashMap(int topSize) {
+        this.top = topSize > 0 ? new TopKeys<K>(topSize) : null;
+    }
 
     /**
      * (Cheap operation)
@@ -35,16 +58,25 @@ public class HistoHashMap<K> {
      * @return
      */
     public int update(K key) {
-        int r = 1;
-        if (map.containsKey(key)) {
-            r = 1 + map.get(key);
+        AtomicInteger counter = map.get(key);
+        if (counter == null) {
+            AtomicInteger newCounter = new AtomicInteger();
+            counter = map.putIfAbsent(key, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        int r = counter.incrementAndGet();
+        totalCount.incrementAndGet();
+        if (top != null) {
+            top.offer(key, r);
         }
-        map.put(key, r);
         return r;
     }
-    
+
     public Integer get(K key) {
-        return map.get(key);
+        AtomicInteger counter = map.get(key);
+        return counter != null ? counter.get() : null;
     }
 
     /**
@@ -52,11 +84,20 @@ public class HistoHashMap<K> {
      * Returns the inner map as a sorted Entry array.
      * @return
      */
-    public Entry<K,Integer>[] histogram() {
-        Set<Entry<K, Integer>> entrySet = new HashSet<>(map.entrySet());
-        @SuppressWarnings("unchecked")
-        Entry<K, Integer>[] array = entrySet.toArray(new Entry[0]);
-        Arrays.sort(array, new Comparator<Entry<K,Integer>>() {
+    public Entry<K, Integer>[] histogram() {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Entry<K, Integer>[] array = new Entry[map.size()];
+        int n = 0;
+        for (Entry<K, AtomicInteger> e : map.entrySet()) {
+            if (n == array.length) {
+                array = Arrays.copyOf(array, n + 16);
+            }
+            array[n++] = new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue().get());
+        }
+        if (n < array.length) {
+            array = Arrays.copyOf(array, n);
+        }
+        Arrays.sort(array, new Comparator<Entry<K, Integer>>() {
             @Override
             public int compare(Entry<K, Integer> o1, Entry<K, Integer> o2) {
                 return o1.getValue().compareTo(o2.getValue());
@@ -65,11 +106,114 @@ public class HistoHashMap<K> {
         return array;
     }
 
+    /**
+     * (Cheap operation)
+     * Returns the ranked keys with the highest counts, sorted like {@link #histogram()},
+     * or the full histogram if this map was created without a top size.
+     * @return
+     */
+    public Entry<K, Integer>[] top() {
+        return top != null ? top.entries() : histogram();
+    }
+
     public int getKeyCount() {
         return map.size();
     }
 
+    /**
+     * @return the sum of the counts of all the keys
+     */
+    public int getTotalCount() {
+        return totalCount.get();
+    }
+
     public void reset() {
         map.clear();
+        totalCount.set(0);
+        if (top != null) {
+            top.clear();
+        }
+    }
+
+    /**
+     * Keys sorted by descending count, counts only grow so a key
+     * can only move up in the ranking. The slot of every ranked key
+     * is indexed, an offer only walks the slots the key moves up.
+     */
+    private static final class TopKeys<K> {
+
+        private final Object[] keys;
+        private final int[] counts;
+        private final Map<K, Integer> slots;
+        private int size;
+
+        // count a key needs to enter a full ranking, read without lock
+        private volatile int threshold;
+
+        TopKeys(int capacity) {
+            this.keys = new Object[capacity];
+            this.counts = new int[capacity];
+            this.slots = new HashMap<>(capacity * 2);
+        }
+
+        void offer(K key, int count) {
+            if (count <= threshold) {
+                return;
+            }
+
+            synchronized (this) {
+                Integer slot = slots.get(key);
+                int i;
+                if (slot == null) {
+                    if (size < keys.length) {
+                        i = size++;
+                    } else if (count > counts[size - 1]) {
+                        i = size - 1;
+                        slots.remove(keys[i]);
+                    } else {
+                        return;
+                    }
+                } else {
+                    i = slot;
+                    if (count <= counts[i]) {
+                        return; // a newer count was already offered
+                    }
+                }
+
+                while (i > 0 && counts[i - 1] < count) {
+                    keys[i] = keys[i - 1];
+                    counts[i] = counts[i - 1];
+                    slots.put(key(i), i);
+                    i--;
+                }
+                keys[i] = key;
+                counts[i] = count;
+                slots.put(key, i);
+
+                threshold = size == keys.length ? counts[size - 1] : 0;
+            }
+        }
+
+        synchronized Entry<K, Integer>[] entries() {
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Entry<K, Integer>[] array = new Entry[size];
+            for (int i = 0; i < size; i++) {
+                array[size - 1 - i] = new AbstractMap.SimpleImmutableEntry<>(key(i), counts[i]);
+            }
+            return array;
+        }
+
+        synchronized void clear() {
+            Arrays.fill(keys, null);
+            Arrays.fill(counts, 0);
+            slots.clear();
+            size = 0;
+            threshold = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private K key(int i) {
+            return (K) keys[i];
+        }
     }
 }
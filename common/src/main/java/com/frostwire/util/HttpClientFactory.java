@@ -20,6 +20,7 @@ package com.frostwire.util;
 import com.frostwire.util.http.HttpClient;
 import com.frostwire.util.http.JdkHttpClient;
 import com.frostwire.util.http.OKHTTPClient;
+import okhttp3.OkHttpClient;
 
 import java.util.HashMap;
 import java.util.Locale;
@@ -39,7 +40,7 @@ public class HttpClientFactory {
         MISC
     }
 
-    private static Map<HttpContext, ThreadPool> okHttpClientPools = null;
+    private static Map<HttpContext, OkHttpClient> okHttpClients = null;
 
     private HttpClientFactory() {
     }
@@ -53,17 +54,26 @@ public class HttpClientFactory {
             return new JdkHttpClient();
         }
 
-        if (okHttpClientPools == null) {
-            okHttpClientPools = buildThreadPools();
+        return new OKHTTPClient(okHttpClient(context));
+    }
+
+    /**
+     * The clients are created once per context and shared, so the keep-alive
+     * connections, the dispatcher threads and the per host limits are shared
+     * by all the requests of the context.
+     */
+    private static synchronized OkHttpClient okHttpClient(HttpContext context) {
+        if (okHttpClients == null) {
+            okHttpClients = buildOkHttpClients();
         }
-        return new OKHTTPClient(okHttpClientPools.get(context));
+        return okHttpClients.get(context);
     }
 
-    private static Map<HttpContext, ThreadPool> buildThreadPools() {
-        final HashMap<HttpContext, ThreadPool> map = new HashMap<>();
-        map.put(HttpContext.SEARCH, new ThreadPool("OkHttpClient-searches", 1, 5, 60, new LinkedBlockingQueue<Runnable>(), true));
-        map.put(HttpContext.DOWNLOAD, new ThreadPool("OkHttpClient-downloads", 1, 10, 5, new LinkedBlockingQueue<Runnable>(), true));
-        map.put(HttpContext.MISC, new ThreadPool("OkHttpClient-misc", 2, 10, 30, new LinkedBlockingQueue<Runnable>(), true));
+    private static Map<HttpContext, OkHttpClient> buildOkHttpClients() {
+        final HashMap<HttpContext, OkHttpClient> map = new HashMap<>();
+        map.put(HttpContext.SEARCH, OKHTTPClient.newOkHttpClient(new ThreadPool("OkHttpClient-searches", 1, 5, 60, new LinkedBlockingQueue<Runnable>(), true), 4).build());
+        map.put(HttpContext.DOWNLOAD, OKHTTPClient.newOkHttpClient(new ThreadPool("OkHttpClient-downloads", 1, 10, 5, new LinkedBlockingQueue<Runnable>(), true), 0).build()); // long lived transfers, no host limit
+        map.put(HttpContext.MISC, OKHTTPClient.newOkHttpClient(new ThreadPool("OkHttpClient-misc", 2, 10, 30, new LinkedBlockingQueue<Runnable>(), true), 4).build());
         return map;
     }
 
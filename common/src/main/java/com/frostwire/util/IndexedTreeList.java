@@ -0,0 +1,284 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * List backed by a balanced tree (a treap ordered by position), where
+ * {@link #get(int)}, {@link #add(int, Object)}, {@link #remove(int)} and
+ * {@link #indexOf(Object)} take O(log n).
+ * <p>
+ * Elements are compared by identity and an element can be in the list
+ * only once, this is what makes {@link #indexOf(Object)} fast. Not thread safe.
+ * <p>
+ * {@link #set(int, Object)} can put an element that is also at another position,
+ * as {@link java.util.Collections#sort} does while it permutes the list. The
+ * element index is then rebuilt on the next lookup, which throws an
+ * {@link IllegalStateException} if an element is still in the list twice.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class IndexedTreeList<E> extends AbstractList<E> implements RandomAccess {
+
+    private final Map<E, Node<E>> nodes = new IdentityHashMap<>();
+    // the nodes map is out of date, an element was set in two positions
+    private boolean stale;
+    private Node<E> root;
+    private int seed = 0x2545f491;
+
+    @Override
+    public E get(int index) {
+        return node(index).element;
+    }
+
+    @Override
+    public E set(int index, E element) {
+        Node<E> n = node(index);
+        E old = n.element;
+        if (old != element) {
+            n.element = element;
+            if (!stale) {
+                nodes.remove(old);
+                // an element can be in two positions for a moment, while the list is being permuted in place
+                stale = nodes.put(element, n) != null;
+            }
+        }
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        checkNotContained(element);
+
+        Node<E> n = new Node<>(element, nextPriority());
+        nodes.put(element, n);
+
+        Node<E>[] parts = split(root, index);
+        setRoot(merge(merge(parts[0], n), parts[1]));
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        checkIndex(index);
+
+        Node<E>[] parts = split(root, index);
+        Node<E>[] rest = split(parts[1], 1);
+        setRoot(merge(parts[0], rest[1]));
+        modCount++;
+
+        E element = rest[0].element;
+        if (!stale) {
+            nodes.remove(element);
+        }
+        return element;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        Node<E> n = nodes().get(o);
+        if (n == null) {
+            return -1;
+        }
+
+        int index = size(n.left);
+        while (n.parent != null) {
+            if (n == n.parent.right) {
+                index += size(n.parent.left) + 1;
+            }
+            n = n.parent;
+        }
+        return index;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return nodes().containsKey(o);
+    }
+
+    @Override
+    public void clear() {
+        nodes.clear();
+        stale = false;
+        root = null;
+        modCount++;
+    }
+
+    private Node<E> node(int index) {
+        checkIndex(index);
+
+        Node<E> n = root;
+        while (true) {
+            int leftSize = size(n.left);
+            if (index < leftSize) {
+                n = n.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                n = n.right;
+            } else {
+                return n;
+            }
+        }
+    }
+
+    private void setRoot(Node<E> n) {
+        root = n;
+        if (n != null) {
+            n.parent = null;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+    private void checkNotContained(E element) {
+        if (nodes().containsKey(element)) {
+            throw new IllegalArgumentException("Element already in the list");
+        }
+    }
+
+    private Map<E, Node<E>> nodes() {
+        if (stale) {
+            nodes.clear();
+            // in order, with a stack, the depth is only probably logarithmic
+            ArrayDeque<Node<E>> stack = new ArrayDeque<>();
+            Node<E> n = root;
+            while (n != null || !stack.isEmpty()) {
+                while (n != null) {
+                    stack.push(n);
+                    n = n.left;
+                }
+                n = stack.pop();
+                if (nodes.put(n.element, n) != null) {
+                    throw new IllegalStateException("Element in the list more than once: " + n.element);
+                }
+                n = n.right;
+            }
+            stale = false;
+        }
+        return nodes;
+    }
+
+    // xorshift, priorities only need to look random
+    private int nextPriority() {
+        int x = seed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        seed = x;
+        return x;
+    }
+
+    /**
+     * Splits the tree in the first k elements and the rest.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E> Node<E>[] split(Node<E> t, int k) {
+        Node<E>[] parts = new Node[2];
+        if (t == null) {
+            return parts;
+        }
+
+        int leftSize = size(t.left);
+        if (k <= leftSize) {
+            Node<E>[] l = split(t.left, k);
+            t.left = l[1];
+            parts[0] = l[0];
+            parts[1] = t;
+        } else {
+            Node<E>[] r = split(t.right, k - leftSize - 1);
+            t.right = r[0];
+            parts[0] = t;
+            parts[1] = r[1];
+        }
+        t.update();
+        return parts;
+    }
+
+    private static <E> Node<E> merge(Node<E> a, Node<E> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            a.update();
+            return a;
+        } else {
+            b.left = merge(a, b.left);
+            b.update();
+            return b;
+        }
+    }
+
+    private static int size(Node<?> n) {
+        return n != null ? n.size : 0;
+    }
+
+    private static final class Node<E> {
+
+        E element;
+        final int priority;
+
+        Node<E> left;
+        Node<E> right;
+        Node<E> parent;
+        int size;
+
+        Node(E element, int priority) {
+            this.element = element;
+            this.priority = priority;
+            this.size = 1;
+        }
+
+        void update() {
+            size = 1 + size(left) + size(right);
+            if (left != null) {
+                left.parent = this;
+            }
+            if (right != null) {
+                right.parent = this;
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util.http;
+
+import com.frostwire.util.Logger;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the number of requests in flight to the same host. The permit is
+ * held until the response body is read to the end or closed, not only until
+ * the headers arrive. Callers must close the response bodies, as every
+ * method of {@link OKHTTPClient} does.
+ * <p>
+ * If a permit is not available in {@link #MAX_WAIT} the request goes ahead
+ * anyway, so a body never closed can't block a host forever.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class HostLimitInterceptor implements Interceptor {
+
+    private static final Logger LOG = Logger.getLogger(HostLimitInterceptor.class);
+
+    private static final long MAX_WAIT = 10000; // 10 seconds
+
+    private final int maxRequestsPerHost;
+    private final ConcurrentMap<String, Semaphore> hosts;
+
+    HostLimitInterceptor(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.hosts = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        String host = chain.request().url().host();
+        Semaphore permits = permits(host);
+
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(MAX_WAIT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection to " + host);
+        }
+
+        if (!acquired) {
+            LOG.warn("Waited too long for a connection to " + host + ", going over the limit of " + maxRequestsPerHost);
+            return chain.proceed(chain.request());
+        }
+
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        ResponseBody body = response.body();
+        if (body == null) {
+            permits.release();
+            return response;
+        }
+
+        return response.newBuilder().body(new ReleasingBody(body, permits)).build();
+    }
+
+    private Semaphore permits(String host) {
+        Semaphore permits = hosts.get(host);
+        if (permits == null) {
+            permits = new Semaphore(maxRequestsPerHost);
+            Semaphore old = hosts.putIfAbsent(host, permits);
+            if (old != null) {
+                permits = old;
+            }
+        }
+        return permits;
+    }
+
+    private static final class ReleasingBody extends ResponseBody {
+
+        private final ResponseBody body;
+        private final Semaphore permits;
+        private final AtomicBoolean released;
+        private BufferedSource source;
+
+        ReleasingBody(ResponseBody body, Semaphore permits) {
+            this.body = body;
+            this.permits = permits;
+            this.released = new AtomicBoolean(false);
+        }
+
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return body.contentLength();
+        }
+
+        @Override
+        public synchronized BufferedSource source() {
+            if (source == null) {
+                source = Okio.buffer(new ForwardingSource(body.source()) {
+                    @Override
+                    public long read(Buffer sink, long byteCount) throws IOException {
+                        long n = super.read(sink, byteCount);
+                        if (n == -1) {
+                            release();
+                        }
+                        return n;
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            release();
+                        }
+                    }
+                });
+            }
+            return source;
+        }
+
+        @Override
+        public void close() {
+            try {
+                body.close();
+            } finally {
+                release();
+            }
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+}
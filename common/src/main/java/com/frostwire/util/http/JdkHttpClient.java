@@ -160,6 +160,8 @@ public final class JdkHttpClient extends AbstractHttpClient {
         conn.setUseCaches(false);
 
         ByteArrayInputStream in = new ByteArrayInputStream(data);
+        byte[] b = TransferBuffers.acquire();
+        boolean keepAlive = false;
 
         try {
             OutputStream out;
@@ -169,7 +171,6 @@ public final class JdkHttpClient extends AbstractHttpClient {
                 out = conn.getOutputStream();
             }
 
-            byte[] b = new byte[4096];
             int n;
             while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
                 if (!canceled) {
@@ -191,25 +192,22 @@ public final class JdkHttpClient extends AbstractHttpClient {
             if (canceled) {
                 onCancel();
             } else {
-                BufferedInputStream bis = new BufferedInputStream(conn.getInputStream(), 4096);
-                ByteArrayBuffer baf = new ByteArrayBuffer(1024);
-                byte[] buffer = new byte[64];
-                int read;
-                while (true) {
-                    read = bis.read(buffer);
-                    if (read == -1) {
-                        break;
-                    }
-                    baf.append(buffer, 0, read);
+                InputStream responseIn = conn.getInputStream();
+                ByteArrayOutputStream baos = new ByteArrayOutputStream(b.length);
+                while ((n = responseIn.read(b, 0, b.length)) != -1) {
+                    baos.write(b, 0, n);
                 }
-                result = new String(baf.toByteArray());
+                closeQuietly(responseIn);
+                result = new String(baos.toByteArray());
+                keepAlive = true;
                 onComplete();
             }
         } catch (Exception e) {
             onError(e);
         } finally {
+            TransferBuffers.release(b);
             closeQuietly(in);
-            closeQuietly(conn);
+            closeQuietly(conn, keepAlive);
         }
         return result;
     }
@@ -290,8 +288,9 @@ public final class JdkHttpClient extends AbstractHttpClient {
         onHeaders(conn.getHeaderFields());
         checkRangeSupport(rangeStart, conn);
 
+        byte[] b = TransferBuffers.acquire();
+        boolean keepAlive = false;
         try {
-            byte[] b = new byte[4096];
             int n;
             while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
                 if (!canceled) {
@@ -305,13 +304,15 @@ public final class JdkHttpClient extends AbstractHttpClient {
             if (canceled) {
                 onCancel();
             } else {
+                keepAlive = true;
                 onComplete();
             }
         } catch (Exception e) {
             onError(e);
         } finally {
+            TransferBuffers.release(b);
             closeQuietly(in);
-            closeQuietly(conn);
+            closeQuietly(conn, keepAlive);
         }
     }
 
@@ -338,11 +339,12 @@ public final class JdkHttpClient extends AbstractHttpClient {
         conn.setUseCaches(false);
 
         InputStream in = new ByteArrayInputStream(data);
+        byte[] b = TransferBuffers.acquire();
+        boolean keepAlive = false;
 
         try {
             OutputStream postOut = conn.getOutputStream();
 
-            byte[] b = new byte[4096];
             int n;
             while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
                 if (!canceled) {
@@ -367,7 +369,6 @@ public final class JdkHttpClient extends AbstractHttpClient {
                 throw new ResponseCodeNotSupportedException(httpResponseCode);
             }
 
-            b = new byte[4096];
             while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
                 if (!canceled) {
                     out.write(b, 0, n);
@@ -380,13 +381,15 @@ public final class JdkHttpClient extends AbstractHttpClient {
             if (canceled) {
                 onCancel();
             } else {
+                keepAlive = true;
                 onComplete();
             }
         } catch (Exception e) {
             onError(e);
         } finally {
+            TransferBuffers.release(b);
             closeQuietly(in);
-            closeQuietly(conn);
+            closeQuietly(conn, keepAlive);
         }
     }
 
@@ -478,8 +481,12 @@ public final class JdkHttpClient extends AbstractHttpClient {
         }
     }
 
-    private void closeQuietly(URLConnection conn) {
-        if (conn instanceof HttpURLConnection) {
+    /**
+     * A fully read response with its stream closed leaves the connection in the
+     * JDK keep-alive cache, only a canceled or failed transfer disconnects it.
+     */
+    private void closeQuietly(URLConnection conn, boolean keepAlive) {
+        if (!keepAlive && conn instanceof HttpURLConnection) {
             try {
                 ((HttpURLConnection) conn).disconnect();
             } catch (Throwable e) {
@@ -33,6 +33,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -46,12 +47,24 @@ import java.util.concurrent.TimeUnit;
 public class OKHTTPClient extends AbstractHttpClient {
 
     private static final Logger LOG = Logger.getLogger(OKHTTPClient.class);
-    private final ThreadPool pool;
 
-    public static final ConnectionPool CONNECTION_POOL = new ConnectionPool(5, 10, TimeUnit.SECONDS);
+    /**
+     * Keep-alive connections shared by all the clients.
+     */
+    public static final ConnectionPool CONNECTION_POOL = new ConnectionPool(16, 5, TimeUnit.MINUTES);
+
+    private final OkHttpClient client;
+
+    /**
+     * @param client a shared client, requests are made with derived clients
+     *               that keep its connection pool, dispatcher and interceptors
+     */
+    public OKHTTPClient(final OkHttpClient client) {
+        this.client = client;
+    }
 
     public OKHTTPClient(final ThreadPool pool) {
-        this.pool = pool;
+        this(newOkHttpClient(pool).build());
     }
 
     @Override
@@ -65,8 +78,12 @@ public class OKHTTPClient extends AbstractHttpClient {
                 head().
                 build();
         Response resp = okHttpClient.build().newCall(req).execute();
-        copyMultiMap(resp.headers().toMultimap(), outputHeaders);
-        return resp.code();
+        try {
+            copyMultiMap(resp.headers().toMultimap(), outputHeaders);
+            return resp.code();
+        } finally {
+            closeQuietly(resp.body());
+        }
     }
 
     @Override
@@ -132,16 +149,20 @@ public class OKHTTPClient extends AbstractHttpClient {
         onHeaders(headers);
         final InputStream in = response.body().byteStream();
 
-        byte[] b = new byte[4096];
-        int n;
-        while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
-            if (!canceled) {
-                fos.write(b, 0, n);
-                onData(b, 0, n);
+        byte[] b = TransferBuffers.acquire();
+        try {
+            int n;
+            while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
+                if (!canceled) {
+                    fos.write(b, 0, n);
+                    onData(b, 0, n);
+                }
             }
+        } finally {
+            TransferBuffers.release(b);
+            closeQuietly(fos);
+            closeQuietly(response.body());
         }
-        closeQuietly(fos);
-        closeQuietly(response.body());
         if (canceled) {
             onCancel();
         } else {
@@ -174,14 +195,13 @@ public class OKHTTPClient extends AbstractHttpClient {
         final OkHttpClient.Builder okHttpClient = newOkHttpClient();
         final Request.Builder builder = prepareRequestBuilder(okHttpClient, url, timeout, userAgent, null, null);
         final RequestBody requestBody = RequestBody.create(MediaType.parse(postContentType), postData);
-        prepareOkHttpClientForPost(okHttpClient, gzip);
+        prepareOkHttpClientForPost(okHttpClient);
         builder.post(requestBody);
-        return getPostSyncResponse(builder);
+        return getPostSyncResponse(okHttpClient, builder);
     }
 
-    private String getPostSyncResponse(Request.Builder builder) throws IOException {
+    private String getPostSyncResponse(OkHttpClient.Builder okHttpClient, Request.Builder builder) throws IOException {
         String result = null;
-        final OkHttpClient.Builder okHttpClient = newOkHttpClient();
         final Response response = this.getSyncResponse(okHttpClient, builder);
         try {
             int httpResponseCode = response.code();
@@ -203,14 +223,10 @@ public class OKHTTPClient extends AbstractHttpClient {
         return result;
     }
 
-    private void prepareOkHttpClientForPost(OkHttpClient.Builder okHttpClient, boolean gzip) {
+    private void prepareOkHttpClientForPost(OkHttpClient.Builder okHttpClient) {
         okHttpClient.followRedirects(false);
-        if (gzip) {
-            if (okHttpClient.interceptors().size() > 0) {
-                okHttpClient.interceptors().remove(0);
-                okHttpClient.interceptors().add(0, new GzipRequestInterceptor());
-            }
-        }
+        // the gzip flag is ignored, the bodies have always been posted
+        // uncompressed and the servers are not known to accept gzip
     }
 
     private void addRangeHeader(long rangeStart, long rangeEnd, Request.Builder builderRef) {
@@ -231,7 +247,6 @@ public class OKHTTPClient extends AbstractHttpClient {
         okHttpClient.connectTimeout(timeout, TimeUnit.MILLISECONDS);
         okHttpClient.readTimeout(timeout, TimeUnit.MILLISECONDS);
         okHttpClient.writeTimeout(timeout, TimeUnit.MILLISECONDS);
-        okHttpClient.interceptors().clear();
         Request.Builder builder = new Request.Builder();
         builder.url(url);
         if (!StringUtils.isNullOrEmpty(userAgent)) {
@@ -264,13 +279,30 @@ public class OKHTTPClient extends AbstractHttpClient {
     }
 
     private OkHttpClient.Builder newOkHttpClient() {
-        return newOkHttpClient(pool);
+        // cheap, the derived client shares the connection pool and the dispatcher
+        return client.newBuilder();
     }
 
     public static OkHttpClient.Builder newOkHttpClient(ThreadPool pool) {
+        return newOkHttpClient(pool, 0);
+    }
+
+    /**
+     * @param pool               the thread pool of the dispatcher
+     * @param maxRequestsPerHost maximum number of requests in flight to the same host, 0 for no limit
+     */
+    public static OkHttpClient.Builder newOkHttpClient(ThreadPool pool, int maxRequestsPerHost) {
         OkHttpClient.Builder searchClient = new OkHttpClient.Builder();
-        searchClient.dispatcher(new Dispatcher(pool));
+        Dispatcher dispatcher = new Dispatcher(pool);
+        if (maxRequestsPerHost > 0) {
+            dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+            // the dispatcher only limits asynchronous calls
+            searchClient.addInterceptor(new HostLimitInterceptor(maxRequestsPerHost));
+        }
+        searchClient.dispatcher(dispatcher);
         searchClient.connectionPool(CONNECTION_POOL);
+        // multiplexed HTTP/2 if the platform negotiates it with ALPN
+        searchClient.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
         searchClient.followRedirects(true);
         searchClient.followSslRedirects(true);
         searchClient.hostnameVerifier(new HostnameVerifier() {
@@ -281,8 +313,6 @@ public class OKHTTPClient extends AbstractHttpClient {
         });
         searchClient.sslSocketFactory(CUSTOM_SSL_SOCKET_FACTORY, new AllX509TrustManager());
         searchClient.connectTimeout(DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
-        // Maybe we should use a custom connection pool here. Using default.
-        //searchClient.setConnectionPool(?);
         return searchClient;
     }
 
@@ -0,0 +1,63 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util.http;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of the buffers used to copy HTTP bodies, so a transfer doesn't
+ * allocate a new buffer every time.
+ * <p>
+ * A buffer passed to a listener in {@code onData} is only valid
+ * during the call.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class TransferBuffers {
+
+    static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 16;
+
+    private static final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    private TransferBuffers() {
+    }
+
+    static byte[] acquire() {
+        byte[] b = buffers.poll();
+        if (b != null) {
+            pooled.decrementAndGet();
+            return b;
+        }
+        return new byte[BUFFER_SIZE];
+    }
+
+    static void release(byte[] b) {
+        if (b == null || b.length != BUFFER_SIZE) {
+            return;
+        }
+        if (pooled.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            buffers.offer(b);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.bittorrent;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Startup restore with synthetic resume files.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public class BTRestoreIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadResume() throws IOException {
+        File home = folder.getRoot();
+        List<String> infoHashes = createResumeFiles(home, 10);
+
+        List<BTRestoreIndex.Entry> entries = new BTRestoreIndex(home).load(infoHashes);
+
+        assertEquals(infoHashes.size(), entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            BTRestoreIndex.Entry e = entries.get(i);
+            assertEquals(infoHashes.get(i), e.infoHash);
+            assertEquals(savePath(i), e.savePath);
+            assertEquals(i % 3 == 0, e.paused);
+        }
+    }
+
+    @Test
+    public void testMissingResume() throws IOException {
+        File home = folder.getRoot();
+        FileUtils.writeStringToFile(new File(home, "bad.resume"), "d9:save_path", "UTF-8");
+
+        List<String> infoHashes = new ArrayList<>();
+        infoHashes.add("missing");
+        infoHashes.add("bad");
+        List<BTRestoreIndex.Entry> entries = new BTRestoreIndex(home).load(infoHashes);
+
+        assertNull(entries.get(0).savePath);
+        assertNull(entries.get(1).savePath);
+    }
+
+    @Test
+    public void testChangedResume() throws IOException {
+        File home = folder.getRoot();
+        List<String> infoHashes = createResumeFiles(home, 10);
+        new BTRestoreIndex(home).load(infoHashes);
+
+        String infoHash = infoHashes.get(1);
+        writeResumeFile(new File(home, infoHash + ".resume"), infoHash, "/moved/to/another/dir", true, new Random(1));
+
+        BTRestoreIndex.Entry e = new BTRestoreIndex(home).load(infoHashes).get(1);
+        assertEquals("/moved/to/another/dir", e.savePath);
+        assertTrue(e.paused);
+    }
+
+    @Test
+    public void testRestorePerformance() throws IOException {
+        File home = folder.getRoot();
+        List<String> infoHashes = createResumeFiles(home, 5000);
+
+        BTRestoreIndex index = new BTRestoreIndex(home);
+
+        long start = System.nanoTime();
+        for (String infoHash : infoHashes) {
+            BTRestoreIndex.readResume(infoHash, index.resumeFile(infoHash));
+        }
+        long sequentialTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<BTRestoreIndex.Entry> cold = index.load(infoHashes);
+        long coldTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<BTRestoreIndex.Entry> warm = new BTRestoreIndex(home).load(infoHashes);
+        long warmTime = System.nanoTime() - start;
+
+        System.out.println("Restore of " + infoHashes.size() + " resume files, sequential: " + sequentialTime / 1000000 +
+                " ms, parallel: " + coldTime / 1000000 + " ms, from index: " + warmTime / 1000000 + " ms");
+
+        for (int i = 0; i < infoHashes.size(); i++) {
+            assertEquals(cold.get(i).savePath, warm.get(i).savePath);
+            assertEquals(cold.get(i).paused, warm.get(i).paused);
+        }
+    }
+
+    private static List<String> createResumeFiles(File home, int n) throws IOException {
+        Random random = new Random(n);
+        List<String> infoHashes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String infoHash = String.format(Locale.US, "%040x", i);
+            writeResumeFile(new File(home, infoHash + ".resume"), infoHash, savePath(i), i % 3 == 0, random);
+            infoHashes.add(infoHash);
+        }
+        return infoHashes;
+    }
+
+    private static String savePath(int i) {
+        return "/home/user/Torrent Data/" + (i % 4);
+    }
+
+    // similar to the libtorrent resume data, with a pieces bitfield and peers
+    private static void writeResumeFile(File f, String infoHash, String savePath, boolean paused, Random random) throws IOException {
+        byte[] pieces = new byte[1000 + random.nextInt(2000)];
+        byte[] peers = new byte[6 * random.nextInt(200)];
+        random.nextBytes(peers);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("d");
+        sb.append("10:extra_datad10:was_paused").append(paused ? "4:true" : "5:false").append("e");
+        sb.append("11:file-format22:libtorrent resume file");
+        sb.append("12:file-versioni1e");
+        sb.append("9:info-hash").append(infoHash.length()).append(':').append(infoHash);
+        sb.append("6:pausedi").append(paused ? 1 : 0).append("e");
+        sb.append("5:peers").append(peers.length).append(':').append(latin1(peers));
+        sb.append("6:pieces").append(pieces.length).append(':').append(latin1(pieces));
+        sb.append("9:save_path").append(savePath.length()).append(':').append(savePath);
+        sb.append("8:trackersll").append("37:udp://tracker.example.com:80/announce").append("ee");
+        sb.append("e");
+
+        // one char per byte, the save paths are ASCII
+        FileUtils.writeByteArrayToFile(f, sb.toString().getBytes("ISO-8859-1"));
+    }
+
+    private static String latin1(byte[] arr) {
+        char[] chars = new char[arr.length];
+        for (int i = 0; i < arr.length; i++) {
+            chars[i] = (char) (arr[i] & 0xff);
+        }
+        return new String(chars);
+    }
+}
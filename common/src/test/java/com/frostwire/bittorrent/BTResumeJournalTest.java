@@ -0,0 +1,312 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.bittorrent;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Saving and crash recovery of the resume data journal.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public class BTResumeJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        File home = folder.getRoot();
+        BTResumeJournal journal = new BTResumeJournal(home);
+        journal.open();
+
+        journal.put("a", data(1));
+        journal.put("b", data(2));
+
+        assertArrayEquals(data(1), journal.get("a"));
+        assertFalse(resumeFile(home, "a").exists());
+        assertTrue(journalFile(home).length() > 0);
+
+        journal.checkpoint();
+
+        assertArrayEquals(data(1), FileUtils.readFileToByteArray(resumeFile(home, "a")));
+        assertArrayEquals(data(2), FileUtils.readFileToByteArray(resumeFile(home, "b")));
+        assertArrayEquals(data(2), journal.get("b"));
+        assertEquals(0, journalFile(home).length());
+
+        journal.close();
+    }
+
+    @Test
+    public void testRecovery() throws IOException {
+        File home = folder.getRoot();
+        BTResumeJournal journal = new BTResumeJournal(home);
+        journal.open();
+        journal.put("a", data(1));
+        journal.put("a", data(2));
+        journal.put("b", data(3));
+        journal.close(); // crash, no checkpoint
+
+        journal = new BTResumeJournal(home);
+        journal.open();
+
+        assertArrayEquals(data(2), FileUtils.readFileToByteArray(resumeFile(home, "a")));
+        assertArrayEquals(data(3), FileUtils.readFileToByteArray(resumeFile(home, "b")));
+        assertEquals(0, journalFile(home).length());
+        journal.close();
+    }
+
+    @Test
+    public void testIncompleteRecord() throws IOException {
+        File home = folder.getRoot();
+        BTResumeJournal journal = new BTResumeJournal(home);
+        journal.open();
+        journal.put("a", data(1));
+        journal.put("b", data(2));
+        journal.close();
+
+        // the last write was interrupted
+        RandomAccessFile f = new RandomAccessFile(journalFile(home), "rw");
+        f.setLength(f.length() - 3);
+        f.close();
+
+        journal = new BTResumeJournal(home);
+        journal.open();
+
+        assertArrayEquals(data(1), FileUtils.readFileToByteArray(resumeFile(home, "a")));
+        assertFalse(resumeFile(home, "b").exists());
+        journal.close();
+    }
+
+    @Test
+    public void testCorruptRecord() throws IOException {
+        File home = folder.getRoot();
+        BTResumeJournal journal = new BTResumeJournal(home);
+        journal.open();
+        journal.put("a", data(1));
+        journal.put("b", data(2));
+        journal.put("c", data(3));
+        journal.close();
+
+        // a byte in the data of the second record
+        RandomAccessFile f = new RandomAccessFile(journalFile(home), "rw");
+        long pos = f.length() / 2;
+        f.seek(pos);
+        int b = f.read();
+        f.seek(pos);
+        f.write(b ^ 0xff);
+        f.close();
+
+        journal = new BTResumeJournal(home);
+        journal.open();
+
+        assertArrayEquals(data(1), FileUtils.readFileToByteArray(resumeFile(home, "a")));
+        assertFalse(resumeFile(home, "b").exists());
+        assertFalse(resumeFile(home, "c").exists());
+        journal.close();
+    }
+
+    @Test
+    public void testRecoveryFromTempFile() throws IOException {
+        File home = folder.getRoot();
+        BTResumeJournal journal = new BTResumeJournal(home);
+        journal.open();
+        journal.put("a", data(1));
+        journal.put("b", data(2));
+        journal.close();
+
+        // a crash in windows between the delete of the journal and the rename of the new one
+        File tmp = new File(home, "resume.journal.tmp");
+        assertTrue(journalFile(home).renameTo(tmp));
+
+        journal = new BTResumeJournal(home);
+        journal.open();
+
+        assertArrayEquals(data(1), FileUtils.readFileToByteArray(resumeFile(home, "a")));
+        assertArrayEquals(data(2), FileUtils.readFileToByteArray(resumeFile(home, "b")));
+        assertFalse(tmp.exists());
+        journal.close();
+    }
+
+    @Test
+    public void testRemove() throws IOException {
+        File home = folder.getRoot();
+        BTResumeJournal journal = new BTResumeJournal(home);
+        journal.open();
+        journal.put("a", data(1));
+        journal.put("b", data(2));
+        journal.remove("a");
+        assertNull(journal.get("a"));
+        journal.close();
+
+        journal = new BTResumeJournal(home);
+        journal.open();
+
+        assertFalse(resumeFile(home, "a").exists());
+        assertTrue(resumeFile(home, "b").exists());
+        journal.close();
+    }
+
+    @Test
+    public void testFailedWriteKept() throws IOException {
+        File home = folder.getRoot();
+        BTResumeJournal journal = new BTResumeJournal(home);
+        journal.open();
+        journal.put("a", data(1));
+        journal.put("b", data(2));
+
+        // the temp file of b can't be created
+        File blocker = new File(home, "b.resume.tmp");
+        assertTrue(blocker.mkdir());
+        journal.checkpoint();
+
+        assertTrue(resumeFile(home, "a").exists());
+        assertFalse(resumeFile(home, "b").exists());
+        assertArrayEquals(data(2), journal.get("b"));
+        assertTrue(journalFile(home).length() > 0);
+        journal.close();
+
+        assertTrue(blocker.delete());
+        journal = new BTResumeJournal(home);
+        journal.open();
+
+        assertArrayEquals(data(2), FileUtils.readFileToByteArray(resumeFile(home, "b")));
+        assertEquals(0, journalFile(home).length());
+        journal.close();
+    }
+
+    @Test
+    public void testBackgroundCheckpoint() throws IOException, InterruptedException {
+        File home = folder.getRoot();
+        BTResumeJournal journal = new BTResumeJournal(home);
+        journal.open();
+
+        byte[] data = new byte[1024 * 1024];
+        for (int i = 0; i < 17; i++) {
+            journal.put(infoHash(i), data);
+        }
+
+        // the journal passed the max size
+        long deadline = System.currentTimeMillis() + 10000;
+        while (journalFile(home).length() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, journalFile(home).length());
+        assertTrue(resumeFile(home, infoHash(16)).exists());
+        journal.close();
+    }
+
+    @Test
+    public void testWritePerformance() throws IOException {
+        int torrents = 500;
+        int saves = 20;
+        Random random = new Random(torrents);
+        byte[][] data = new byte[torrents][];
+        for (int i = 0; i < torrents; i++) {
+            data[i] = new byte[2000 + random.nextInt(4000)];
+            random.nextBytes(data[i]);
+        }
+
+        // current layout, every save rewrites the .resume file
+        File perFile = folder.newFolder("perfile");
+        long start = System.nanoTime();
+        for (int s = 0; s < saves; s++) {
+            for (int i = 0; i < torrents; i++) {
+                FileUtils.writeByteArrayToFile(resumeFile(perFile, infoHash(i)), data[i]);
+            }
+        }
+        long perFileWriteTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < torrents; i++) {
+            FileUtils.readFileToByteArray(resumeFile(perFile, infoHash(i)));
+        }
+        long perFileReadTime = System.nanoTime() - start;
+
+        File home = folder.newFolder("journal");
+        BTResumeJournal journal = new BTResumeJournal(home);
+        journal.open();
+        start = System.nanoTime();
+        for (int s = 0; s < saves; s++) {
+            for (int i = 0; i < torrents; i++) {
+                journal.put(infoHash(i), data[i]);
+            }
+        }
+        journal.checkpoint();
+        long journalWriteTime = System.nanoTime() - start;
+        journal.close();
+
+        // a crash before a checkpoint, with three saves of every torrent left
+        File crashed = folder.newFolder("crashed");
+        journal = new BTResumeJournal(crashed);
+        journal.open();
+        for (int s = 0; s < 3; s++) {
+            for (int i = 0; i < torrents; i++) {
+                journal.put(infoHash(i), data[i]);
+            }
+        }
+        journal.close();
+        long journalSize = journalFile(crashed).length();
+
+        start = System.nanoTime();
+        journal = new BTResumeJournal(crashed);
+        journal.open();
+        long recoveryTime = System.nanoTime() - start;
+        journal.close();
+
+        System.out.println("Resume data of " + torrents + " torrents saved " + saves + " times");
+        System.out.println("Per file: " + (torrents * saves) + " file rewrites in " + perFileWriteTime / 1000000 +
+                " ms, read in " + perFileReadTime / 1000000 + " ms");
+        System.out.println("Journal: " + (torrents * saves) + " appends to one file and a checkpoint in " + journalWriteTime / 1000000 +
+                " ms, " + journalSize / 1024 + " KB left to recover in " + recoveryTime / 1000000 + " ms");
+
+        for (int i = 0; i < torrents; i++) {
+            assertArrayEquals(data[i], FileUtils.readFileToByteArray(resumeFile(home, infoHash(i))));
+            assertArrayEquals(data[i], FileUtils.readFileToByteArray(resumeFile(crashed, infoHash(i))));
+        }
+    }
+
+    private static String infoHash(int i) {
+        return String.format("%040x", i);
+    }
+
+    private static byte[] data(int n) {
+        byte[] arr = new byte[100 * n];
+        new Random(n).nextBytes(arr);
+        return arr;
+    }
+
+    private static File resumeFile(File home, String infoHash) {
+        return BTResumeJournal.resumeFile(home, infoHash);
+    }
+
+    private static File journalFile(File home) {
+        return new File(home, "resume.journal");
+    }
+}
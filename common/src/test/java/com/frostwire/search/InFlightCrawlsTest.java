@@ -0,0 +1,151 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class InFlightCrawlsTest {
+
+    private static final int NUM_THREADS = 8;
+
+    @Test
+    public void testCoalescing() throws InterruptedException {
+        final InFlightCrawls inFlight = new InFlightCrawls(5000);
+        final AtomicInteger downloads = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(NUM_THREADS);
+        final byte[] data = new byte[]{1, 2, 3};
+        final AtomicInteger matches = new AtomicInteger();
+
+        for (int i = 0; i < NUM_THREADS; i++) {
+            // half of the results only share the info hash
+            final String url = i % 2 == 0 ? "http://a.com/file.torrent" : "http://b.com/file.torrent";
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    byte[] r = inFlight.fetch(1, new String[]{url, "hash"}, new InFlightCrawls.Fetch() {
+                        @Override
+                        public byte[] fetch() {
+                            downloads.incrementAndGet();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                // ignore
+                            }
+                            return data;
+                        }
+                    });
+                    if (r == data) {
+                        matches.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        Thread.sleep(200);
+        release.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, downloads.get());
+        assertEquals(NUM_THREADS, matches.get());
+        assertArrayEquals(new int[]{1, NUM_THREADS - 1}, inFlight.takeStats(1));
+        assertArrayEquals(new int[]{0, 0}, inFlight.takeStats(1));
+    }
+
+    @Test
+    public void testRetryAfterFailedLeader() throws InterruptedException {
+        final InFlightCrawls inFlight = new InFlightCrawls(5000);
+        final CountDownLatch leading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final byte[] data = new byte[]{1, 2, 3};
+
+        Thread leader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                inFlight.fetch(3, new String[]{"http://a.com/file.torrent", "hash"}, new InFlightCrawls.Fetch() {
+                    @Override
+                    public byte[] fetch() {
+                        leading.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            // ignore
+                        }
+                        return null;
+                    }
+                });
+            }
+        });
+        leader.start();
+        assertTrue(leading.await(10, TimeUnit.SECONDS));
+
+        final byte[][] result = new byte[1][];
+        Thread follower = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result[0] = inFlight.fetch(3, new String[]{"http://b.com/file.torrent", "hash"}, new InFlightCrawls.Fetch() {
+                    @Override
+                    public byte[] fetch() {
+                        return data;
+                    }
+                });
+            }
+        });
+        follower.start();
+
+        Thread.sleep(200);
+        release.countDown();
+        leader.join(10000);
+        follower.join(10000);
+
+        assertArrayEquals(data, result[0]);
+        assertArrayEquals(new int[]{2, 0}, inFlight.takeStats(3));
+    }
+
+    @Test
+    public void testNoCoalescingAfterFinish() {
+        InFlightCrawls inFlight = new InFlightCrawls(5000);
+        final AtomicInteger downloads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            inFlight.fetch(2, new String[]{"http://a.com/file.torrent", null}, new InFlightCrawls.Fetch() {
+                @Override
+                public byte[] fetch() {
+                    downloads.incrementAndGet();
+                    return null;
+                }
+            });
+        }
+
+        assertEquals(3, downloads.get());
+        assertArrayEquals(new int[]{3, 0}, inFlight.takeStats(2));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.util.HistoHashMap;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class KeywordDetectorTest {
+
+    private static final int NUM_RESULTS = 5000;
+
+    private static final String[] WORDS = {
+            "The", "Beatles", "-", "Abbey", "Road", "(Remastered)", "[2009]", "mp3", "320kbps",
+            "Canción", "de", "Niños", "Ñandú", "feat.", "Ubuntu", "16.04", "LTS", "x64", "DVD",
+            "Москва", "東京", "ft", "HD\t1080p", "S01E02", "ÉTÉ", "Björk", "the", "matrix", "  ", "a",
+            "İSTANBUL", "ΟΔΟΣ"
+    };
+
+    @Test
+    public void testTokenizer() {
+        String[] titles = titles(new Random(1));
+
+        KeywordDetector detector = new KeywordDetector(null);
+        HistoHashMap<String> histogram = histogram(detector, KeywordDetector.Feature.FILE_NAME);
+
+        Map<String, Integer> expected = new HashMap<>();
+        long before = allocatedBytes();
+        for (String title : titles) {
+            addSearchTermsRegex(KeywordDetector.Feature.FILE_NAME, title, expected);
+        }
+        long regexBytes = allocatedBytes() - before;
+
+        before = allocatedBytes();
+        for (String title : titles) {
+            detector.addSearchTerms(KeywordDetector.Feature.FILE_NAME, title);
+        }
+        long tokenizerBytes = allocatedBytes() - before;
+
+        assertEquals(expected.size(), histogram.getKeyCount());
+        for (Map.Entry<String, Integer> e : expected.entrySet()) {
+            assertEquals(e.getKey(), e.getValue(), histogram.get(e.getKey()));
+        }
+        assertTrue(tokenizerBytes < regexBytes);
+    }
+
+    @Test
+    public void testLowerCase() {
+        KeywordDetector detector = new KeywordDetector(null);
+        HistoHashMap<String> histogram = histogram(detector, KeywordDetector.Feature.FILE_NAME);
+
+        detector.addSearchTerms(KeywordDetector.Feature.FILE_NAME, "\u0130STANBUL \u039f\u0394\u039f\u03a3 Istanbul");
+
+        // a dotted i and a final sigma, as String#toLowerCase does
+        assertEquals(1, (int) histogram.get("i\u0307stanbul"));
+        assertEquals(1, (int) histogram.get("\u03bf\u03b4\u03bf\u03c2"));
+        assertEquals(1, (int) histogram.get("istanbul"));
+    }
+
+    /**
+     * The tokenization based on regular expressions the detector used before,
+     * with only the stop words present in {@link #WORDS}.
+     */
+    private static void addSearchTermsRegex(KeywordDetector.Feature feature, String terms, Map<String, Integer> histogram) {
+        String[] tokens = terms.replaceAll("[^a-zA-Z0-9\\p{L}\\. ]", "").toLowerCase(Locale.US).split("\\s");
+        for (String token : tokens) {
+            token = token.trim();
+            if (feature.minimumTokenLength <= token.length() && token.length() <= feature.maximumTokenLength &&
+                    !"the".equals(token) && !"feat.".equals(token) && !"de".equals(token)) {
+                Integer n = histogram.get(token);
+                histogram.put(token, n != null ? n + 1 : 1);
+            }
+        }
+    }
+
+    private static HistoHashMap<String> histogram(KeywordDetector detector, final KeywordDetector.Feature feature) {
+        final AtomicReference<HistoHashMap<String>> r = new AtomicReference<>();
+        detector.setKeywordDetectorListener(new KeywordDetector.KeywordDetectorListener() {
+            @Override
+            public void onHistogramUpdate(KeywordDetector detector, KeywordDetector.Feature feature, Map.Entry<String, Integer>[] histogram, boolean force) {
+            }
+
+            @Override
+            public void notify(KeywordDetector detector, Map<KeywordDetector.Feature, HistoHashMap<String>> histograms) {
+                r.set(histograms.get(feature));
+            }
+        });
+        detector.reset();
+        return r.get();
+    }
+
+    private static String[] titles(Random random) {
+        String[] titles = new String[NUM_RESULTS];
+        for (int i = 0; i < titles.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            int n = 3 + random.nextInt(8);
+            for (int j = 0; j < n; j++) {
+                sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            titles[i] = sb.toString();
+        }
+        return titles;
+    }
+
+    /**
+     * Bytes allocated by the current thread, the test is skipped if the JVM can't tell.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.licenses.License;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Paged searches against a local server that answers every page
+ * after a simulated latency.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public class PagedWebSearchPerformerTest {
+
+    private static final int PAGES = 6;
+    private static final int RESULTS_PER_PAGE = 10;
+
+    private HttpServer server;
+    private String domainName;
+    private volatile int latency;
+    private volatile int lastPage = PAGES;
+    private volatile int failingPage;
+    private String nodelay;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        // otherwise Nagle's algorithm delays every response of the local server
+        nodelay = System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                try {
+                    Thread.sleep(latency);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+
+                String query = exchange.getRequestURI().getQuery();
+                int page = Integer.parseInt(query.substring(query.indexOf("page=") + 5));
+                if (page == failingPage) {
+                    // connection dropped without a response
+                    exchange.close();
+                    return;
+                }
+                byte[] body = (page <= lastPage ? String.valueOf(page) : "").getBytes("UTF-8");
+
+                exchange.sendResponseHeaders(200, body.length > 0 ? body.length : -1);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        domainName = "127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        if (nodelay != null) {
+            System.setProperty("sun.net.httpserver.nodelay", nodelay);
+        } else {
+            System.clearProperty("sun.net.httpserver.nodelay");
+        }
+    }
+
+    @Test
+    public void testTimeToLastPage() {
+        for (int latency : new int[]{20, 50, 100}) {
+            this.latency = latency;
+
+            long sequential = timeToLastPage(1);
+            long parallel = timeToLastPage(3);
+
+            assertTrue(parallel < sequential);
+        }
+    }
+
+    @Test
+    public void testStopAtEmptyPage() {
+        latency = 10;
+        lastPage = 2;
+
+        List<SearchResult> results = search(3);
+
+        // page 3 is empty, pages 4 and 5 may already be in flight when it arrives
+        assertEquals(2 * RESULTS_PER_PAGE, results.size());
+        assertTrue(requests.get() <= 5);
+    }
+
+    @Test
+    public void testSkipFailedPage() {
+        latency = 10;
+        failingPage = 2;
+
+        List<SearchResult> results = search(3);
+
+        // an error is not the end of the results
+        assertEquals((PAGES - 1) * RESULTS_PER_PAGE, results.size());
+        assertTrue(requests.get() >= PAGES);
+    }
+
+    private long timeToLastPage(int parallelPages) {
+        long start = System.currentTimeMillis();
+        List<SearchResult> results = search(parallelPages);
+        long time = System.currentTimeMillis() - start;
+
+        assertEquals(PAGES * RESULTS_PER_PAGE, results.size());
+
+        return time;
+    }
+
+    private List<SearchResult> search(int parallelPages) {
+        final List<SearchResult> results = Collections.synchronizedList(new ArrayList<SearchResult>());
+
+        StubPerformer performer = new StubPerformer(domainName, parallelPages);
+        performer.setListener(new SearchListener() {
+            @Override
+            public void onResults(long token, List<? extends SearchResult> r) {
+                results.addAll(r);
+            }
+
+            @Override
+            public void onError(long token, SearchError error) {
+            }
+
+            @Override
+            public void onStopped(long token) {
+            }
+        });
+        performer.perform();
+
+        return results;
+    }
+
+    private static final class StubPerformer extends PagedWebSearchPerformer {
+
+        private final int parallelPages;
+
+        StubPerformer(String domainName, int parallelPages) {
+            super(domainName, 1, "test", 5000, PAGES);
+            this.parallelPages = parallelPages;
+        }
+
+        @Override
+        protected int getParallelPages() {
+            return parallelPages;
+        }
+
+        @Override
+        protected String getUrl(int page, String encodedKeywords) {
+            return "http://" + getDomainName() + "/search?q=" + encodedKeywords + "&page=" + page;
+        }
+
+        @Override
+        protected List<? extends SearchResult> searchPage(String page) {
+            List<SearchResult> results = new ArrayList<>();
+            if (!page.isEmpty()) {
+                for (int i = 0; i < RESULTS_PER_PAGE; i++) {
+                    results.add(new PageResult(page + ":" + i));
+                }
+            }
+            return results;
+        }
+    }
+
+    private static final class PageResult implements SearchResult {
+
+        private final String id;
+
+        PageResult(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return id;
+        }
+
+        @Override
+        public String getDetailsUrl() {
+            return null;
+        }
+
+        @Override
+        public long getCreationTime() {
+            return 0;
+        }
+
+        @Override
+        public String getSource() {
+            return "test";
+        }
+
+        @Override
+        public License getLicense() {
+            return null;
+        }
+
+        @Override
+        public String getThumbnailUrl() {
+            return null;
+        }
+
+        @Override
+        public int uid() {
+            return id.hashCode();
+        }
+    }
+}
@@ -0,0 +1,501 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.licenses.License;
+import com.frostwire.search.torrent.AbstractTorrentSearchResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class SearchManagerTest {
+
+    private static final int NUM_TOKENS = 50;
+    private static final int CRAWLS_PER_TOKEN = 200;
+
+    @Test
+    public void testCrawlStress() throws InterruptedException {
+        SearchManager manager = new SearchManager(6);
+
+        final AtomicInteger crawls = new AtomicInteger();
+        final ConcurrentHashMap<Long, AtomicInteger> stopped = new ConcurrentHashMap<>();
+        final CountDownLatch finished = new CountDownLatch(NUM_TOKENS);
+
+        manager.setListener(new SearchListener() {
+            @Override
+            public void onResults(long token, List<? extends SearchResult> results) {
+            }
+
+            @Override
+            public void onError(long token, SearchError error) {
+            }
+
+            @Override
+            public void onStopped(long token) {
+                stopped.putIfAbsent(token, new AtomicInteger());
+                stopped.get(token).incrementAndGet();
+                finished.countDown();
+            }
+        });
+
+        for (int i = 0; i < NUM_TOKENS; i++) {
+            manager.perform(new CrawlingPerformer(i, crawls));
+        }
+
+        assertTrue(finished.await(60, TimeUnit.SECONDS));
+
+        assertEquals(NUM_TOKENS * CRAWLS_PER_TOKEN, crawls.get());
+        assertEquals(NUM_TOKENS, stopped.size());
+        for (long token = 0; token < NUM_TOKENS; token++) {
+            assertEquals(1, stopped.get(token).get());
+        }
+    }
+
+    @Test
+    public void testEngineLimit() throws InterruptedException {
+        SearchManager manager = new SearchManager(6);
+
+        final CountDownLatch slowRelease = new CountDownLatch(1);
+        final CountDownLatch slowStarted = new CountDownLatch(3);
+        final CountDownLatch slowDone = new CountDownLatch(10);
+        final CountDownLatch fastDone = new CountDownLatch(1);
+        final AtomicInteger slowRunning = new AtomicInteger();
+        final AtomicInteger slowMaxRunning = new AtomicInteger();
+
+        for (int i = 0; i < 10; i++) {
+            manager.perform(new AbstractSearchPerformer(1) {
+                @Override
+                public void perform() {
+                    int n = slowRunning.incrementAndGet();
+                    synchronized (slowMaxRunning) {
+                        slowMaxRunning.set(Math.max(slowMaxRunning.get(), n));
+                    }
+                    slowStarted.countDown();
+                    try {
+                        slowRelease.await();
+                    } catch (InterruptedException e) {
+                        // ignore
+                    } finally {
+                        slowRunning.decrementAndGet();
+                        slowDone.countDown();
+                    }
+                }
+
+                @Override
+                public void crawl(CrawlableSearchResult sr) {
+                }
+            });
+        }
+
+        manager.perform(new CrawlingPerformer(2, new AtomicInteger()) {
+            @Override
+            public void perform() {
+                fastDone.countDown();
+            }
+        });
+
+        // the slow engine has its 3 threads (6 / 2), the fast one is not stuck behind it
+        assertTrue(slowStarted.await(10, TimeUnit.SECONDS));
+        assertTrue(fastDone.await(10, TimeUnit.SECONDS));
+        assertEquals(3, slowRunning.get());
+
+        List<SearchEngineStats> stats = manager.getEngineStats();
+        assertEquals(2, stats.size());
+        assertEquals(3, stats.get(0).running());
+        assertEquals(7, stats.get(0).queued());
+
+        slowRelease.countDown();
+        assertTrue(slowDone.await(10, TimeUnit.SECONDS));
+        assertEquals(3, slowMaxRunning.get());
+    }
+
+    @Test
+    public void testDeadline() throws InterruptedException {
+        SearchManager manager = new SearchManager(6);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final List<String> timedOut = new ArrayList<>();
+
+        manager.setListener(new SearchListener() {
+            @Override
+            public void onResults(long token, List<? extends SearchResult> results) {
+            }
+
+            @Override
+            public void onError(long token, SearchError error) {
+            }
+
+            @Override
+            public void onStopped(long token) {
+                stopped.countDown();
+            }
+        });
+        manager.setTimeoutListener(new SearchTimeoutListener() {
+            @Override
+            public void onTimeout(long token, List<String> engines) {
+                timedOut.addAll(engines);
+            }
+        });
+
+        manager.setDeadline(1, 200);
+
+        manager.perform(new CrawlingPerformer(1, new AtomicInteger()));
+        HangingPerformer hanging = new HangingPerformer(1, release);
+        manager.perform(hanging);
+
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertTrue(hanging.isStopped());
+        assertEquals(1, timedOut.size());
+        assertEquals(HangingPerformer.class.getName(), timedOut.get(0));
+
+        release.countDown();
+    }
+
+    @Test
+    public void testHungTaskAbandoned() throws InterruptedException {
+        SearchManager manager = new SearchManager(1);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch stopped = new CountDownLatch(2);
+
+        manager.setListener(new SearchListener() {
+            @Override
+            public void onResults(long token, List<? extends SearchResult> results) {
+            }
+
+            @Override
+            public void onError(long token, SearchError error) {
+            }
+
+            @Override
+            public void onStopped(long token) {
+                stopped.countDown();
+            }
+        });
+
+        manager.setDeadline(1, 100);
+        // ignores the stop and the interrupt, the only thread is held until released
+        manager.perform(new AbstractSearchPerformer(1) {
+            @Override
+            public void perform() {
+                while (true) {
+                    try {
+                        release.await();
+                        return;
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                }
+            }
+
+            @Override
+            public void crawl(CrawlableSearchResult sr) {
+            }
+        });
+        manager.perform(new CrawlingPerformer(2, new AtomicInteger()));
+
+        // the second search gets a thread once the hung task is abandoned
+        assertTrue(stopped.await(20, TimeUnit.SECONDS));
+        assertEquals(1, release.getCount());
+
+        release.countDown();
+    }
+
+    @Test
+    public void testDeadlineAfterFinished() throws InterruptedException {
+        SearchManager manager = new SearchManager(6);
+
+        final AtomicInteger stopped = new AtomicInteger();
+        final AtomicInteger timeouts = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        manager.setListener(new SearchListener() {
+            @Override
+            public void onResults(long token, List<? extends SearchResult> results) {
+            }
+
+            @Override
+            public void onError(long token, SearchError error) {
+            }
+
+            @Override
+            public void onStopped(long token) {
+                stopped.incrementAndGet();
+                finished.countDown();
+            }
+        });
+        manager.setTimeoutListener(new SearchTimeoutListener() {
+            @Override
+            public void onTimeout(long token, List<String> engines) {
+                timeouts.incrementAndGet();
+            }
+        });
+
+        manager.perform(new CrawlingPerformer(1, new AtomicInteger()));
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+
+        manager.setDeadline(1, 50);
+        Thread.sleep(300);
+
+        assertEquals(1, stopped.get());
+        assertEquals(0, timeouts.get());
+    }
+
+    @Test
+    public void testDuplicateTorrents() throws InterruptedException {
+        SearchManager manager = new SearchManager(6);
+
+        final List<SearchResult> delivered = Collections.synchronizedList(new ArrayList<SearchResult>());
+        final AtomicInteger crawls = new AtomicInteger();
+        final CountDownLatch stopped = new CountDownLatch(1);
+
+        manager.setListener(new SearchListener() {
+            @Override
+            public void onResults(long token, List<? extends SearchResult> results) {
+                delivered.addAll(results);
+            }
+
+            @Override
+            public void onError(long token, SearchError error) {
+            }
+
+            @Override
+            public void onStopped(long token) {
+                stopped.countDown();
+            }
+        });
+
+        final String hash = "0123456789abcdef0123456789abcdef01234567";
+        TestTorrentResult first = new TestTorrentResult("a", hash, "Ubuntu 16.04 LTS", 1000);
+        TestTorrentResult sameHash = new TestTorrentResult("b", hash.toUpperCase(), "ubuntu-16.04-lts", 1000);
+        TestTorrentResult magnet = new TestTorrentResult("c", null, "Ubuntu", 1000);
+        first.seeds = 10;
+        sameHash.seeds = 50;
+        magnet.seeds = 5;
+        magnet.torrentUrl = "magnet:?xt=urn:btih:" + hash + "&dn=ubuntu";
+        TestTorrentResult sameName = new TestTorrentResult("d", null, "Ubuntu.16.04.LTS", 2000);
+        TestTorrentResult sameName2 = new TestTorrentResult("e", null, "ubuntu 16 04 lts", 2000);
+
+        manager.perform(new TorrentPerformer(1, crawls, first, sameName));
+        manager.perform(new TorrentPerformer(1, crawls, sameHash, magnet, sameName2));
+
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertEquals(2, delivered.size());
+        assertEquals(2, crawls.get());
+
+        TestTorrentResult primary = delivered.contains(first) ? first : sameHash;
+        assertEquals(2, primary.getDuplicates().size());
+        assertEquals(50, primary.getMaxSeeds());
+        assertEquals(3, primary.getSources().size());
+        assertEquals(primary.getSource(), primary.getSources().get(0));
+        assertTrue(primary.getSources().containsAll(Arrays.asList("a", "b", "c")));
+        TestTorrentResult primaryByName = delivered.contains(sameName) ? sameName : sameName2;
+        assertEquals(1, primaryByName.getDuplicates().size());
+    }
+
+    private static final class TorrentPerformer extends AbstractSearchPerformer {
+
+        private final AtomicInteger crawls;
+        private final List<SearchResult> results;
+
+        TorrentPerformer(long token, AtomicInteger crawls, SearchResult... results) {
+            super(token);
+            this.crawls = crawls;
+            this.results = Arrays.asList(results);
+        }
+
+        @Override
+        public void perform() {
+            onResults(results);
+        }
+
+        @Override
+        public void crawl(CrawlableSearchResult sr) {
+            crawls.incrementAndGet();
+        }
+    }
+
+    private static final class TestTorrentResult extends AbstractTorrentSearchResult {
+
+        private final String id;
+        private final String hash;
+        private final String name;
+        private final long size;
+        String torrentUrl;
+        int seeds;
+
+        TestTorrentResult(String id, String hash, String name, long size) {
+            this.id = id;
+            this.hash = hash;
+            this.name = name;
+            this.size = size;
+            this.torrentUrl = "http://" + id + ".com/file.torrent";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return name;
+        }
+
+        @Override
+        public String getDetailsUrl() {
+            return "http://" + id + ".com/details";
+        }
+
+        @Override
+        public String getSource() {
+            return id;
+        }
+
+        @Override
+        public String getFilename() {
+            return name + ".torrent";
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String getTorrentUrl() {
+            return torrentUrl;
+        }
+
+        @Override
+        public int getSeeds() {
+            return seeds;
+        }
+
+        @Override
+        public String getHash() {
+            return hash;
+        }
+    }
+
+    private static final class HangingPerformer extends AbstractSearchPerformer {
+
+        private final CountDownLatch release;
+
+        HangingPerformer(long token, CountDownLatch release) {
+            super(token);
+            this.release = release;
+        }
+
+        @Override
+        public void perform() {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        }
+
+        @Override
+        public void crawl(CrawlableSearchResult sr) {
+        }
+    }
+
+    private static class CrawlingPerformer extends AbstractSearchPerformer {
+
+        private final AtomicInteger crawls;
+
+        CrawlingPerformer(long token, AtomicInteger crawls) {
+            super(token);
+            this.crawls = crawls;
+        }
+
+        @Override
+        public void perform() {
+            List<SearchResult> results = new ArrayList<>(CRAWLS_PER_TOKEN);
+            for (int i = 0; i < CRAWLS_PER_TOKEN; i++) {
+                results.add(new IncompleteSearchResult(getToken() + ":" + i));
+            }
+            onResults(results);
+        }
+
+        @Override
+        public void crawl(CrawlableSearchResult sr) {
+            crawls.incrementAndGet();
+        }
+    }
+
+    private static final class IncompleteSearchResult implements CrawlableSearchResult {
+
+        private final String id;
+
+        IncompleteSearchResult(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean isComplete() {
+            return false;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return id;
+        }
+
+        @Override
+        public String getDetailsUrl() {
+            return "http://" + id + ".com/details";
+        }
+
+        @Override
+        public long getCreationTime() {
+            return 0;
+        }
+
+        @Override
+        public String getSource() {
+            return "test";
+        }
+
+        @Override
+        public License getLicense() {
+            return null;
+        }
+
+        @Override
+        public String getThumbnailUrl() {
+            return null;
+        }
+
+        @Override
+        public int uid() {
+            return id.hashCode();
+        }
+    }
+}
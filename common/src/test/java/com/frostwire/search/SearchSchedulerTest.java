@@ -0,0 +1,101 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class SearchSchedulerTest {
+
+    @Test
+    public void testTokenRotation() throws InterruptedException {
+        SearchScheduler scheduler = new SearchScheduler("SearchSchedulerTest", 1, 1);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(8);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        // holds the only thread while the other tasks are queued
+        scheduler.execute("engine", 1, new Task("blocker", 0, order, done) {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                super.run();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // a search with many crawls, then a newer one with a few
+        for (int i = 1; i <= 5; i++) {
+            scheduler.execute("engine", 1, new Task("a" + i, i, order, done));
+        }
+        for (int i = 1; i <= 2; i++) {
+            scheduler.execute("engine", 2, new Task("b" + i, i, order, done));
+        }
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList("blocker", "a1", "b1", "a2", "b2", "a3", "a4", "a5"), order);
+    }
+
+    private static class Task implements Runnable, Comparable<Task> {
+
+        private final String name;
+        private final int ordinal;
+        private final List<String> order;
+        private final CountDownLatch done;
+
+        Task(String name, int ordinal, List<String> order, CountDownLatch done) {
+            this.name = name;
+            this.ordinal = ordinal;
+            this.order = order;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            order.add(name);
+            done.countDown();
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            return (ordinal < o.ordinal) ? -1 : ((ordinal == o.ordinal) ? 0 : 1);
+        }
+    }
+}
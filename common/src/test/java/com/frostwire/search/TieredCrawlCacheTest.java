@@ -0,0 +1,327 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class TieredCrawlCacheTest {
+
+    @Test
+    public void testReadFromMemory() {
+        MapCrawlCache store = new MapCrawlCache();
+        TieredCrawlCache cache = new TieredCrawlCache(store, 1024);
+
+        cache.put("a", new byte[10]);
+        assertNotNull(cache.get("a"));
+        assertEquals(1, cache.hits());
+        assertEquals(0, cache.misses());
+
+        cache.flush();
+        assertEquals(1, store.size());
+        assertEquals(0, store.gets);
+    }
+
+    @Test
+    public void testEviction() {
+        MapCrawlCache store = new MapCrawlCache();
+        TieredCrawlCache cache = new TieredCrawlCache(store, 100);
+
+        cache.put("a", new byte[60]);
+        cache.put("b", new byte[60]);
+        assertEquals(1, cache.evictions());
+
+        cache.flush();
+        assertNotNull(cache.get("a"));
+        assertEquals(1, cache.misses());
+        assertEquals(1, store.gets);
+    }
+
+    @Test
+    public void testRemove() {
+        MapCrawlCache store = new MapCrawlCache();
+        TieredCrawlCache cache = new TieredCrawlCache(store, 1024);
+
+        cache.put("a", new byte[10]);
+        cache.flush();
+        cache.remove("a");
+        assertNull(cache.get("a"));
+        assertEquals(1, store.size());
+
+        cache.flush();
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testFailures() throws InterruptedException {
+        MapCrawlCache store = new MapCrawlCache();
+        TieredCrawlCache cache = new TieredCrawlCache(store, 1024);
+
+        cache.putFailure("a", 60000);
+        cache.putFailure("b", 1);
+        Thread.sleep(10);
+
+        assertTrue(cache.hasFailure("a"));
+        assertFalse(cache.hasFailure("b"));
+        assertFalse(cache.hasFailure("c"));
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testReadWhileFlushing() throws InterruptedException {
+        final BlockingCrawlCache store = new BlockingCrawlCache();
+        final TieredCrawlCache cache = new TieredCrawlCache(store, 100);
+
+        cache.put("a", new byte[10]);
+        cache.flush();
+        cache.remove("a");
+        cache.put("b", new byte[80]); // too big for memory
+
+        store.block = true;
+        Thread flusher = new Thread() {
+            @Override
+            public void run() {
+                cache.flush();
+            }
+        };
+        flusher.start();
+        assertTrue(store.writing.await(5, TimeUnit.SECONDS));
+
+        // the batch is being written, it's read without going to the store
+        int gets = store.gets;
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertEquals(gets, store.gets);
+
+        store.release.countDown();
+        flusher.join();
+
+        assertNull(cache.get("a"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testQueueBounded() throws InterruptedException {
+        final BlockingCrawlCache store = new BlockingCrawlCache();
+        final TieredCrawlCache cache = new TieredCrawlCache(store, 400);
+
+        store.block = true;
+        cache.put("a", new byte[60]);
+        Thread flusher = new Thread() {
+            @Override
+            public void run() {
+                cache.flush();
+            }
+        };
+        flusher.start();
+        assertTrue(store.writing.await(5, TimeUnit.SECONDS));
+
+        final CountDownLatch written = new CountDownLatch(1);
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                cache.put("b", new byte[60]);
+                written.countDown();
+            }
+        };
+        writer.start();
+
+        // a is still being written, there is no room for b
+        assertFalse(written.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, cache.size());
+
+        store.release.countDown();
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        flusher.join();
+        writer.join();
+        cache.flush();
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void testSizeDoesNotFlush() {
+        MapCrawlCache store = new MapCrawlCache();
+        TieredCrawlCache cache = new TieredCrawlCache(store, 1024);
+
+        cache.put("a", new byte[10]);
+        cache.put("b", new byte[10]);
+        cache.remove("b");
+        assertEquals(1, cache.size());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testStaleReadNotCached() {
+        MapCrawlCache store = new MapCrawlCache();
+        TieredCrawlCache cache = new TieredCrawlCache(store, 1024);
+
+        store.put("a", new byte[1]);
+        store.put("b", new byte[1]);
+        cache.get("a");
+        cache.put("a", new byte[2]);
+        assertEquals(2, cache.get("a").length);
+
+        cache.remove("b");
+        assertNull(cache.get("b"));
+        cache.flush();
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void testShutdown() {
+        MapCrawlCache store = new MapCrawlCache();
+        TieredCrawlCache cache = new TieredCrawlCache(store, 1024);
+
+        cache.put("a", new byte[10]);
+        assertEquals(1, cache.size());
+        cache.put("b", new byte[10]);
+        cache.shutdown();
+        assertEquals(2, store.size());
+
+        // written in the calling thread after shutdown
+        cache.put("c", new byte[10]);
+        cache.putFailure("d", 60000);
+        assertEquals(3, store.size());
+        assertTrue(store.hasFailure("d"));
+    }
+
+    @Test
+    public void testManyWrites() {
+        MapCrawlCache store = new MapCrawlCache();
+        TieredCrawlCache cache = new TieredCrawlCache(store, 1024 * 1024);
+
+        for (int i = 0; i < 10000; i++) {
+            cache.put("k" + i, new byte[10]);
+        }
+        cache.shutdown();
+        assertEquals(10000, store.size());
+    }
+
+    // blocks the writes of the store until released
+    private static final class BlockingCrawlCache implements CrawlCache {
+
+        private final MapCrawlCache map = new MapCrawlCache();
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean block;
+        volatile int gets;
+
+        @Override
+        public byte[] get(String key) {
+            gets++;
+            return map.get(key);
+        }
+
+        @Override
+        public void put(String key, byte[] data) {
+            await();
+            map.put(key, data);
+        }
+
+        @Override
+        public void remove(String key) {
+            await();
+            map.remove(key);
+        }
+
+        @Override
+        public void putFailure(String key, long ttl) {
+            map.putFailure(key, ttl);
+        }
+
+        @Override
+        public boolean hasFailure(String key) {
+            return map.hasFailure(key);
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public long size() {
+            return map.size();
+        }
+
+        private void await() {
+            if (block) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static final class MapCrawlCache implements CrawlCache {
+
+        private final Map<String, byte[]> map = new ConcurrentHashMap<>();
+        private final Map<String, Long> failures = new ConcurrentHashMap<>();
+        int gets;
+
+        @Override
+        public byte[] get(String key) {
+            gets++;
+            return map.get(key);
+        }
+
+        @Override
+        public void put(String key, byte[] data) {
+            map.put(key, data);
+        }
+
+        @Override
+        public void remove(String key) {
+            map.remove(key);
+        }
+
+        @Override
+        public void putFailure(String key, long ttl) {
+            failures.put(key, System.currentTimeMillis() + ttl);
+        }
+
+        @Override
+        public boolean hasFailure(String key) {
+            Long expires = failures.get(key);
+            return expires != null && expires > System.currentTimeMillis();
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public long size() {
+            return map.size();
+        }
+    }
+}
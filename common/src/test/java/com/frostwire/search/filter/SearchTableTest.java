@@ -20,11 +20,15 @@ package com.frostwire.search.filter;
 import com.frostwire.search.SearchResult;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.SortedMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -81,4 +85,83 @@ public class SearchTableTest {
         t.clear();
         assertTrue(b2.get());
     }
+
+    @Test
+    public void testPagingAndVisibility() {
+        SearchTable t = new SearchTable(0);
+
+        SourceKey k1 = new SourceKey("test1", 0);
+        SourceKey k2 = new SourceKey("test2", 1);
+        SearchView view = t.view(new SourceFilter(k1, k2));
+
+        List<SearchResult> results = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            results.add(new TestSearchResult("r" + i).source(i % 2 == 0 ? "test1" : "test2"));
+        }
+        t.add(results);
+
+        // equal results keep their arrival order
+        assertEquals(1000, view.size());
+        List<SearchResult> page = view.page(498, 4);
+        assertEquals(4, page.size());
+        assertSame(results.get(996), page.get(0));
+        assertSame(results.get(998), page.get(1));
+        assertSame(results.get(1), page.get(2));
+        assertSame(results.get(3), page.get(3));
+
+        view.setVisible(k1, false);
+        assertEquals(500, view.size());
+        assertSame(results.get(1), view.page(0, 1).get(0));
+
+        t.add(new TestSearchResult("x").source("test1"));
+        assertEquals(500, view.size());
+
+        view.setVisible(k1, true);
+        assertEquals(1001, view.size());
+        assertEquals(1, view.page(1000, 10).size());
+    }
+
+    @Test
+    public void testSort() {
+        SearchTable t = new SearchTable(0);
+        SearchView view = t.view(SearchFilter.NONE);
+
+        t.add(new TestSearchResult("b"));
+        t.add(new TestSearchResult("a"));
+        t.add(new TestSearchResult("c"));
+        assertEquals(3, view.size());
+
+        view.sort(new Comparator<SearchResult>() {
+            @Override
+            public int compare(SearchResult o1, SearchResult o2) {
+                return o1.getDisplayName().compareTo(o2.getDisplayName());
+            }
+        });
+        t.add(new TestSearchResult("0"));
+
+        List<SearchResult> page = view.page(0, 10);
+        assertEquals("DisplayName:0", page.get(0).getDisplayName());
+        assertEquals("DisplayName:a", page.get(1).getDisplayName());
+        assertEquals("DisplayName:c", page.get(3).getDisplayName());
+    }
+
+    @Test
+    public void testEqualResults() {
+        SearchTable t = new SearchTable(0);
+        SearchView view = t.view(SearchFilter.NONE);
+
+        // NONE compares every result equal, they keep their arrival order
+        TestSearchResult a = new TestSearchResult("a");
+        t.add(new TestSearchResult("b"));
+        t.add(a);
+        t.add(new TestSearchResult("c"));
+        view.add(Collections.singletonList(a));
+
+        List<SearchResult> page = view.page(0, 10);
+        assertEquals(3, view.size());
+        assertEquals(3, page.size());
+        assertEquals("DisplayName:b", page.get(0).getDisplayName());
+        assertSame(a, page.get(1));
+        assertEquals("DisplayName:c", page.get(2).getDisplayName());
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search.youtube;
+
+import com.frostwire.search.youtube.jd.JsFunction;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Signature decoding with the function of a saved player (player.js).
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public class YouTubeSigTest {
+
+    private static final String CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789.";
+
+    private static String jscode;
+
+    @BeforeClass
+    public static void loadPlayer() throws IOException {
+        InputStream is = YouTubeSigTest.class.getResourceAsStream("player.js");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = is.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            jscode = out.toString("UTF-8");
+        } finally {
+            is.close();
+        }
+    }
+
+    @Test
+    public void testCalc() {
+        YouTubeSig sig = new YouTubeSig(jscode);
+        String[] sigs = signatures(100);
+        for (String s : sigs) {
+            assertEquals(decode(s), sig.calc(s));
+        }
+    }
+
+    @Test
+    public void testCalcMany() {
+        YouTubeSig sig = new YouTubeSig(jscode);
+        for (String s : signatures(10000)) {
+            assertEquals(decode(s), sig.calc(s));
+        }
+    }
+
+    @Test
+    public void testUnsupportedHelperNotCalled() {
+        String js = "var Xy={ab:function(a,b){a.splice(0,b)},cd:function(a){a.reverse()},zz:function(a){return a<<1}};" +
+                "sg=function(a){a=a.split(\"\");Xy.cd(a,0);Xy.ab(a,2);return a.join(\"\")};";
+
+        JsFunction<String> f = new JsFunction<>(js, "sg");
+        assertEquals("cba", f.eval("abcde"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testUnsupportedHelperCalled() {
+        String js = "var Xy={cd:function(a){a.reverse()},zz:function(a){return a<<1}};" +
+                "sg=function(a){a=a.split(\"\");Xy.zz(a,0);return a.join(\"\")};";
+
+        new JsFunction<String>(js, "sg").eval("abcde");
+    }
+
+    private static String[] signatures(int n) {
+        Random random = new Random(n);
+        String[] sigs = new String[n];
+        for (int i = 0; i < n; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < 81; j++) {
+                sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+            }
+            sigs[i] = sb.toString();
+        }
+        return sigs;
+    }
+
+    // the function in player.js, written by hand
+    private static String decode(String s) {
+        StringBuilder sb = new StringBuilder(s);
+        swap(sb, 44);
+        sb.reverse();
+        sb.delete(0, 3);
+        swap(sb, 23);
+        sb.reverse();
+        swap(sb, 63);
+        sb.delete(0, 1);
+        swap(sb, 10);
+        return sb.toString();
+    }
+
+    private static void swap(StringBuilder sb, int b) {
+        char c = sb.charAt(0);
+        sb.setCharAt(0, sb.charAt(b % sb.length()));
+        sb.setCharAt(b % sb.length(), c);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util;
+
+import java.util.Map.Entry;
+import java.util.Random;
+
+/**
+ * Time to count the tokens of a search and rank them after every page of
+ * results, as the keyword detector does, with the ranked top keys against
+ * sorting the full histogram.
+ * <p>
+ * Not a unit test, run it by hand with the test classpath:
+ * <pre>
+ * java com.frostwire.util.HistoHashMapBenchmark 100
+ * </pre>
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class HistoHashMapBenchmark {
+
+    private static final int PAGE_SIZE = 25;
+    private static final int TOKENS_PER_RESULT = 8;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int topSize = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        String[] tokens = HistoHashMapTest.tokenStream(new Random(1));
+
+        // the first rounds warm up the jit
+        long histogramTime = 0;
+        long topTime = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            histogramTime = run(new HistoHashMap<String>(), tokens);
+            topTime = run(new HistoHashMap<String>(topSize), tokens);
+        }
+
+        System.out.printf("%d tokens, ranked every %d results: histogram() %7.1f ms, top(%d) %7.1f ms%n",
+                tokens.length, PAGE_SIZE, histogramTime / 1e6, topSize, topTime / 1e6);
+    }
+
+    private static long run(HistoHashMap<String> map, String[] tokens) {
+        int page = PAGE_SIZE * TOKENS_PER_RESULT;
+        int ranked = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < tokens.length; i++) {
+            map.update(tokens[i]);
+            if ((i + 1) % page == 0) {
+                Entry<String, Integer>[] top = map.top();
+                ranked += top.length;
+            }
+        }
+        long time = System.nanoTime() - start;
+        if (ranked == 0) {
+            throw new IllegalStateException("Nothing ranked");
+        }
+        return time;
+    }
+}
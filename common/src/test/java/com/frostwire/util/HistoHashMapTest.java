@@ -0,0 +1,126 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util;
+
+import org.junit.Test;
+
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class HistoHashMapTest {
+
+    private static final int NUM_RESULTS = 5000;
+    private static final int TOKENS_PER_RESULT = 8;
+    private static final int VOCABULARY_SIZE = 3000;
+    private static final int TOP_SIZE = 100;
+
+    @Test
+    public void testTopMatchesHistogram() {
+        HistoHashMap<String> map = new HistoHashMap<>(TOP_SIZE);
+        String[] tokens = tokenStream(new Random(1));
+        for (String token : tokens) {
+            map.update(token);
+        }
+        Entry<String, Integer>[] top = map.top();
+        Entry<String, Integer>[] histogram = map.histogram();
+
+        assertEquals(tokens.length, map.getTotalCount());
+        assertEquals(TOP_SIZE, top.length);
+        for (int i = 1; i <= TOP_SIZE; i++) {
+            Entry<String, Integer> t = top[top.length - i];
+            assertEquals(histogram[histogram.length - i].getValue(), t.getValue());
+            assertEquals(t.getValue(), map.get(t.getKey()));
+        }
+    }
+
+    @Test
+    public void testRankingEvictsLowestKey() {
+        HistoHashMap<String> map = new HistoHashMap<>(2);
+        map.update("a");
+        map.update("a");
+        map.update("b");
+        map.update("c");
+        map.update("c"); // c moves over b, b is dropped
+        map.update("b");
+        map.update("b");
+        map.update("b"); // b enters again at the top
+
+        Entry<String, Integer>[] top = map.top();
+        assertEquals(2, top.length);
+        assertEquals("b", top[1].getKey());
+        assertEquals(4, (int) top[1].getValue());
+        assertEquals(2, (int) top[0].getValue());
+        assertEquals(3, map.getKeyCount());
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        final HistoHashMap<String> map = new HistoHashMap<>(TOP_SIZE);
+        final int nThreads = 4;
+        final CountDownLatch done = new CountDownLatch(nThreads);
+        ExecutorService executor = ThreadPool.newThreadPool("HistoHashMapTest", nThreads, true);
+
+        for (int i = 0; i < nThreads; i++) {
+            final String[] tokens = tokenStream(new Random(i));
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (String token : tokens) {
+                        map.update(token);
+                    }
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        int sum = 0;
+        for (Entry<String, Integer> e : map.histogram()) {
+            sum += e.getValue();
+        }
+        assertEquals(nThreads * NUM_RESULTS * TOKENS_PER_RESULT, sum);
+        assertEquals(sum, map.getTotalCount());
+
+        for (Entry<String, Integer> e : map.top()) {
+            assertEquals(e.getValue(), map.get(e.getKey()));
+        }
+    }
+
+    /**
+     * Zipf-like distribution of tokens, like the file names of a search.
+     */
+    static String[] tokenStream(Random random) {
+        String[] tokens = new String[NUM_RESULTS * TOKENS_PER_RESULT];
+        for (int i = 0; i < tokens.length; i++) {
+            int rank = (int) Math.pow(VOCABULARY_SIZE, random.nextDouble());
+            tokens[i] = "token" + rank;
+        }
+        return tokens;
+    }
+}
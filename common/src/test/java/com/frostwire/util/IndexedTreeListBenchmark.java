@@ -0,0 +1,100 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util;
+
+import com.frostwire.util.IndexedTreeListTest.Row;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.frostwire.util.IndexedTreeListTest.insertionPoint;
+import static com.frostwire.util.IndexedTreeListTest.rows;
+
+/**
+ * Sorted insertion of the rows of a search, with a lookup of the row of
+ * every new line, in an {@link IndexedTreeList} against an array list with
+ * a hash to index map remapped after every insertion, as the result table
+ * did before.
+ * <p>
+ * Not a unit test, run it by hand with the test classpath:
+ * <pre>
+ * java com.frostwire.util.IndexedTreeListBenchmark 1000 10000 50000
+ * </pre>
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class IndexedTreeListBenchmark {
+
+    // the remapping is quadratic, too slow to wait for above this
+    private static final int MAX_REMAP_ROWS = 10000;
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            args = new String[]{"1000", "10000", "50000"};
+        }
+
+        for (String arg : args) {
+            int n = Integer.parseInt(arg);
+            List<Row> rows = rows(new Random(n), n);
+
+            long tree = sortedInsertion(rows);
+            String array = n <= MAX_REMAP_ROWS ? sortedInsertionRemap(rows) + " ms" : "n.a";
+
+            System.out.printf("%6d rows: indexed tree %5d ms, array list with remapped indexes %s%n", n, tree, array);
+        }
+    }
+
+    private static long sortedInsertion(List<Row> rows) {
+        long start = System.currentTimeMillis();
+
+        IndexedTreeList<Row> list = new IndexedTreeList<>();
+        Map<String, Row> byHash = new HashMap<>();
+        for (Row row : rows) {
+            list.add(insertionPoint(list, row), row);
+            byHash.put(row.hash, row);
+            if (list.get(list.indexOf(byHash.get(row.hash))) != row) {
+                throw new IllegalStateException("Wrong row: " + row);
+            }
+        }
+
+        return System.currentTimeMillis() - start;
+    }
+
+    private static long sortedInsertionRemap(List<Row> rows) {
+        long start = System.currentTimeMillis();
+
+        List<Row> list = new ArrayList<>();
+        Map<String, Integer> indexes = new HashMap<>();
+        for (Row row : rows) {
+            int index = insertionPoint(list, row);
+            list.add(index, row);
+            for (int i = index; i < list.size(); i++) {
+                indexes.put(list.get(i).hash, i);
+            }
+            if (list.get(indexes.get(row.hash)) != row) {
+                throw new IllegalStateException("Wrong row: " + row);
+            }
+        }
+
+        return System.currentTimeMillis() - start;
+    }
+}
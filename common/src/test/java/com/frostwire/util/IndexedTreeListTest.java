@@ -0,0 +1,159 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class IndexedTreeListTest {
+
+    static final Comparator<Row> BY_SEEDS = new Comparator<Row>() {
+        @Override
+        public int compare(Row o1, Row o2) {
+            return o1.seeds < o2.seeds ? -1 : (o1.seeds == o2.seeds ? 0 : 1);
+        }
+    };
+
+    @Test
+    public void testMatchesArrayList() {
+        Random random = new Random(1);
+        List<Row> expected = new ArrayList<>();
+        IndexedTreeList<Row> list = new IndexedTreeList<>();
+
+        for (int i = 0; i < 20000; i++) {
+            int op = random.nextInt(10);
+            if (op < 6 || expected.isEmpty()) {
+                Row row = new Row(String.valueOf(i), random.nextInt(1000));
+                int index = random.nextInt(expected.size() + 1);
+                expected.add(index, row);
+                list.add(index, row);
+            } else if (op < 8) {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.remove(index), list.remove(index));
+            } else {
+                int index = random.nextInt(expected.size());
+                Row row = new Row("set" + i, random.nextInt(1000));
+                assertEquals(expected.set(index, row), list.set(index, row));
+            }
+        }
+
+        assertEquals(expected, list);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i, list.indexOf(expected.get(i)));
+        }
+        assertEquals(-1, list.indexOf(new Row("x", 0)));
+
+        Collections.sort(expected, BY_SEEDS);
+        Collections.sort(list, BY_SEEDS);
+        assertEquals(expected, list);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i, list.indexOf(expected.get(i)));
+        }
+    }
+
+    @Test
+    public void testSortedInsertion() {
+        List<Row> rows = rows(new Random(1), 10000);
+
+        // like the result table does, the row of a line is asked to the list
+        IndexedTreeList<Row> list = new IndexedTreeList<>();
+        Map<String, Row> byHash = new HashMap<>();
+        for (Row row : rows) {
+            list.add(insertionPoint(list, row), row);
+            byHash.put(row.hash, row);
+            assertEquals(row, list.get(list.indexOf(byHash.get(row.hash))));
+        }
+
+        for (int i = 1; i < list.size(); i++) {
+            assertTrue(BY_SEEDS.compare(list.get(i - 1), list.get(i)) <= 0);
+        }
+        for (Row row : rows) {
+            assertEquals(row, list.get(list.indexOf(row)));
+        }
+    }
+
+    @Test
+    public void testSetDuplicate() {
+        Row a = new Row("a", 1);
+        Row b = new Row("b", 2);
+        Row c = new Row("c", 3);
+        IndexedTreeList<Row> list = new IndexedTreeList<>();
+        list.addAll(Arrays.asList(a, b, c));
+
+        // swapped in place, c is in two positions for a moment
+        list.set(0, c);
+        list.set(2, a);
+
+        assertEquals(Arrays.asList(c, b, a), list);
+        assertEquals(0, list.indexOf(c));
+        assertEquals(2, list.indexOf(a));
+
+        list.set(1, a);
+        try {
+            list.indexOf(b);
+            fail("a is in the list twice");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    static int insertionPoint(List<Row> list, Row row) {
+        int index = Collections.binarySearch(list, row, BY_SEEDS);
+        return index < 0 ? -(index + 1) : index;
+    }
+
+    static List<Row> rows(Random random, int n) {
+        List<Row> rows = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            rows.add(new Row(Integer.toHexString(random.nextInt()) + i, random.nextInt(5000)));
+        }
+        return rows;
+    }
+
+    static final class Row {
+
+        final String hash;
+        final int seeds;
+
+        Row(String hash, int seeds) {
+            this.hash = hash;
+            this.seeds = seeds;
+        }
+
+        @Override
+        public String toString() {
+            return hash + ":" + seeds;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util.http;
+
+import com.frostwire.util.HttpClientFactory;
+import com.frostwire.util.ThreadPool;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fetches of a search page from a local server, with the shared
+ * client of the search context.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public class OKHTTPClientTest {
+
+    private static final int NUM_FETCHES = 1000;
+    private static final int NUM_THREADS = 8;
+
+    private HttpServer server;
+    private String url;
+    private String nodelay;
+    private final Set<Integer> connections = Collections.synchronizedSet(new HashSet<Integer>());
+
+    @Before
+    public void startServer() throws IOException {
+        final byte[] page = new byte[32 * 1024];
+        Arrays.fill(page, (byte) 'a');
+
+        // otherwise Nagle's algorithm delays every response of the local server
+        nodelay = System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                connections.add(exchange.getRemoteAddress().getPort());
+                exchange.sendResponseHeaders(200, page.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(page);
+                out.close();
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(NUM_THREADS * 2));
+        server.start();
+
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/search?q=test";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        if (nodelay != null) {
+            System.setProperty("sun.net.httpserver.nodelay", nodelay);
+        } else {
+            System.clearProperty("sun.net.httpserver.nodelay");
+        }
+    }
+
+    @Test
+    public void testSequentialFetches() throws IOException {
+        HttpClient client = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.SEARCH);
+        for (int i = 0; i < NUM_FETCHES; i++) {
+            assertEquals(32 * 1024, client.get(url).length());
+        }
+
+        assertTrue(connections.size() <= 2);
+    }
+
+    @Test
+    public void testPermitReleasedAtEndOfBody() throws IOException {
+        ThreadPool pool = new ThreadPool("OKHTTPClientTest", 1, new LinkedBlockingQueue<Runnable>(), true);
+        OkHttpClient client = OKHTTPClient.newOkHttpClient(pool, 1).build();
+        Request request = new Request.Builder().url(url).build();
+
+        // the body is read to the end but not closed
+        Response first = client.newCall(request).execute();
+        assertEquals(32 * 1024, first.body().source().readByteArray().length);
+
+        long start = System.currentTimeMillis();
+        Response second = client.newCall(request).execute();
+        try {
+            assertEquals(32 * 1024, second.body().bytes().length);
+        } finally {
+            second.close();
+        }
+        // no wait for the permit of the first request
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        pool.shutdown();
+    }
+
+    @Test
+    public void testParallelFetches() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        final CountDownLatch done = new CountDownLatch(NUM_FETCHES);
+        final AtomicInteger ok = new AtomicInteger();
+
+        for (int i = 0; i < NUM_FETCHES; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // a new client for every fetch, as the search performers do
+                        HttpClient client = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.SEARCH);
+                        if (client.get(url).length() == 32 * 1024) {
+                            ok.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        // counted as failed
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(NUM_FETCHES, ok.get());
+        // keep-alive connections, no more than the search per host limit
+        assertTrue(connections.size() <= 4);
+    }
+}
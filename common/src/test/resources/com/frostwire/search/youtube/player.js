@@ -0,0 +1,9 @@
+var _yt_player={};(function(g){var window=this;
+var aa=function(a){var b=0;return function(){return b<a.length?{done:!1,value:a[b++]}:{done:!0}}},ba=function(a){return a.replace(/^[\s\xa0]+|[\s\xa0]+$/g,"")};
+var JM={kL:function(a,b){var c=a[0];a[0]=a[b%a.length];a[b%a.length]=c},
+NX:function(a){a.reverse()},
+Px:function(a,b){a.splice(0,b)}};
+var KM=function(a){a=a.split("");JM.kL(a,44);JM.NX(a,47);JM.Px(a,3);JM.kL(a,23);JM["NX"](a,32);JM.kL(a,63);JM["Px"](a,1);JM.kL(a,10);return a.join("")};
+g.Ip=function(a,b,c){var d=a.sp||"signature";c.s&&b.set(d,KM(c.s));return b};
+var LM=function(a,b){if(a.sig)b.set("signature",a.sig);else if(a.s)b.set("signature",KM(a.s));return b};
+g.Jp=function(a){return ba(a)};})(_yt_player);
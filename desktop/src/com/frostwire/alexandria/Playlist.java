@@ -22,6 +22,7 @@ import com.frostwire.alexandria.db.LibraryDatabaseEntity;
 import com.frostwire.alexandria.db.PlaylistDB;
 import com.frostwire.alexandria.db.PlaylistItemDB;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -100,6 +101,19 @@ public class Playlist extends LibraryDatabaseEntity {
         }
     }
 
+    /**
+     * Saves the given items of this playlist in a single transaction,
+     * instead of one item at a time.
+     *
+     * @param propagateStars if true, the files of the starred items are
+     *                       starred in every playlist.
+     */
+    public synchronized void saveItems(List<PlaylistItem> items, boolean propagateStars) {
+        if (db != null) {
+            PlaylistItemDB.save(db, items, propagateStars, new LibraryDatabase.Batch());
+        }
+    }
+
     public synchronized void delete() {
         if (db != null) {
             PlaylistDB.delete(db, this);
@@ -109,8 +123,34 @@ public class Playlist extends LibraryDatabaseEntity {
 
     public synchronized void refresh() {
         if (db != null) {
+            setItems(PlaylistItemDB.getPlaylistItems(db, this));
+        }
+    }
+
+    /**
+     * Reloads the items like {@link #refresh()}, but the listener gets every
+     * page as soon as it's read, the first one with at most firstPageSize items.
+     * The items of the playlist are replaced after the last page.
+     */
+    public synchronized void refresh(int firstPageSize, PageListener listener) {
+        if (db != null) {
+            List<PlaylistItem> items = new ArrayList<>();
+            PlaylistItemDB.ItemCursor cursor = new PlaylistItemDB.ItemCursor(db, this);
+            int limit = firstPageSize;
+            while (cursor.hasNext()) {
+                List<PlaylistItem> page = cursor.next(limit);
+                items.addAll(page);
+                listener.onPage(page);
+                limit = PlaylistItemDB.PAGE_SIZE;
+            }
+            setItems(items);
+        }
+    }
+
+    private void setItems(List<PlaylistItem> items) {
+        synchronized (_items) {
             _items.clear();
-            _items.addAll(PlaylistItemDB.getPlaylistItems(db, this));
+            _items.addAll(items);
         }
     }
 
@@ -133,4 +173,9 @@ public class Playlist extends LibraryDatabaseEntity {
     public String toString() {
         return _name;
     }
+
+    public interface PageListener {
+
+        void onPage(List<PlaylistItem> items);
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.alexandria.db;
+
+import org.h2.fulltext.FullTextLucene;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lucene full text trigger that commits the index once per batch.
+ * <p>
+ * The H2 trigger commits the Lucene index, and reopens its reader, for
+ * every row, that is most of the time spent inserting playlist items.
+ * Inside {@link #begin()} and {@link #end()} the rows are only added to
+ * the index writer and the commit is done at the end. Outside a batch it
+ * works like the H2 trigger.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class BatchFullTextTrigger extends FullTextLucene.FullTextTrigger {
+
+    // triggers with uncommitted changes, null if the thread is not running a batch
+    private static final ThreadLocal<List<BatchFullTextTrigger>> DEFERRED = new ThreadLocal<>();
+
+    // the last row written without commit, it's written again to commit the index
+    private Object[] lastRow;
+    private boolean lastRowInserted;
+
+    static void begin() {
+        DEFERRED.set(new ArrayList<BatchFullTextTrigger>());
+    }
+
+    static void end() throws SQLException {
+        List<BatchFullTextTrigger> triggers = DEFERRED.get();
+        DEFERRED.remove();
+
+        if (triggers != null) {
+            for (BatchFullTextTrigger trigger : triggers) {
+                trigger.commit();
+            }
+        }
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        List<BatchFullTextTrigger> triggers = DEFERRED.get();
+        if (triggers == null) {
+            super.fire(conn, oldRow, newRow);
+            return;
+        }
+
+        if (oldRow != null) {
+            if (newRow != null) {
+                if (hasChanged(oldRow, newRow)) {
+                    delete(oldRow, false);
+                    insert(newRow, false);
+                    deferred(triggers, newRow, true);
+                }
+            } else {
+                delete(oldRow, false);
+                deferred(triggers, oldRow, false);
+            }
+        } else if (newRow != null) {
+            insert(newRow, false);
+            deferred(triggers, newRow, true);
+        }
+    }
+
+    private void deferred(List<BatchFullTextTrigger> triggers, Object[] row, boolean inserted) {
+        if (lastRow == null) {
+            triggers.add(this);
+        }
+        lastRow = row;
+        lastRowInserted = inserted;
+    }
+
+    private void commit() throws SQLException {
+        Object[] row = lastRow;
+        lastRow = null;
+
+        // the H2 trigger only commits after a change, replaying the last one is harmless
+        if (lastRowInserted) {
+            delete(row, false);
+            insert(row, true);
+        } else {
+            delete(row, true);
+        }
+    }
+
+    private boolean hasChanged(Object[] oldRow, Object[] newRow) {
+        for (int c : indexColumns) {
+            Object o = oldRow[c];
+            Object n = newRow[c];
+            if (o == null ? n != null : !o.equals(n)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -32,7 +32,10 @@ public class LibraryDatabase {
     public static final int OBJECT_NOT_SAVED_ID = -1;
     public static final int OBJECT_INVALID_ID = -2;
     public static final int STARRED_PLAYLIST_ID = -3;
-    private static final int LIBRARY_DATABASE_VERSION = 4;
+    private static final int LIBRARY_DATABASE_VERSION = 6;
+
+    // rows sent to the driver at once in a batch
+    private static final int MAX_BATCH_ROWS = 1000;
 
     public static final String STARRED_TABLE_NAME_DO_NOT_TRANSLATE_THIS = "starred";
     
@@ -85,6 +88,44 @@ public class LibraryDatabase {
         return query(_connection, statementSql, arguments);
     }
 
+    /**
+     * Like {@link #query(String, Object...)}, but every row is mapped while the
+     * cursor walks the result set, without a list of boxed columns in between.
+     */
+    public synchronized <T> List<T> query(RowMapper<T> mapper, String statementSql, Object... arguments) {
+        List<T> result = new ArrayList<>();
+        if (isClosed()) {
+            return result;
+        }
+
+        PreparedStatement statement = null;
+        try {
+            statement = _connection.prepareStatement(statementSql);
+
+            if (arguments != null) {
+                for (int i = 0; i < arguments.length; i++) {
+                    statement.setObject(i + 1, arguments[i]);
+                }
+            }
+
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                result.add(mapper.map(resultSet));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (statement != null) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                }
+            }
+        }
+
+        return result;
+    }
+
     /**
      * This method is synchronized due to possible concurrent issues, specially
      * during recently generated id retrieval.
@@ -117,6 +158,43 @@ public class LibraryDatabase {
         return OBJECT_INVALID_ID;
     }
 
+    /**
+     * Runs all the statements of the batch in a single transaction,
+     * consecutive runs of the same statement go to the driver as one
+     * prepared statement with a JDBC batch.
+     *
+     * @return the ids generated by the INSERT statements, in order, or
+     * null if the transaction failed and was rolled back.
+     */
+    public synchronized int[] execute(Batch batch) {
+        if (isClosed()) {
+            return null;
+        }
+
+        try {
+            _connection.setAutoCommit(false);
+            BatchFullTextTrigger.begin();
+            try {
+                int[] ids = execute(_connection, batch);
+                _connection.commit();
+                return ids;
+            } catch (Exception e) {
+                e.printStackTrace();
+                _connection.rollback();
+            } finally {
+                try {
+                    BatchFullTextTrigger.end();
+                } finally {
+                    _connection.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
     public synchronized void close() {
         if (isClosed()) {
             return;
@@ -154,10 +232,18 @@ public class LibraryDatabase {
             setupLuceneIndex(connection);
         }
         
-        if (oldVersion == 3 && newVersion == 4) {
+        if (oldVersion == 3 && newVersion >= 4) {
             setupPlaylistIndexes(connection);
         }
 
+        if (oldVersion <= 4 && newVersion >= 5) {
+            setupBatchFullTextTrigger(connection);
+        }
+
+        if (oldVersion <= 5 && newVersion >= 6) {
+            setupPlaylistSortIndex(connection);
+        }
+
         update(connection, "UPDATE Library SET version = ?", LIBRARY_DATABASE_VERSION);
     }
 
@@ -193,6 +279,7 @@ public class LibraryDatabase {
                 "CREATE TABLE PlaylistItems (playlistItemId INTEGER IDENTITY, filePath VARCHAR(10000), fileName VARCHAR(500), fileSize BIGINT, fileExtension VARCHAR(10), trackTitle VARCHAR(500), trackDurationInSecs REAL, trackArtist VARCHAR(500), trackAlbum VARCHAR(500), coverArtPath VARCHAR(10000), trackBitrate VARCHAR(10), trackComment VARCHAR(500), trackGenre VARCHAR(20), trackNumber VARCHAR(6), trackYear VARCHAR(6), playlistId INTEGER, starred BOOLEAN, sortIndex INTEGER)");
         update(connection, "CREATE INDEX idx_PlaylistItems_filePath ON PlaylistItems (filePath)");
         update(connection, "CREATE INDEX idx_PlaylistItems_starred ON PlaylistItems (starred)");
+        update(connection, "CREATE INDEX idx_PlaylistItems_playlistId_sortIndex ON PlaylistItems (playlistId, sortIndex, playlistItemId)");
 
         setupLuceneIndex(connection);
 
@@ -328,6 +415,60 @@ public class LibraryDatabase {
         return -1;
     }
 
+    private int[] execute(Connection connection, Batch batch) throws SQLException {
+        int[] ids = new int[batch.insertCount];
+        int numIds = 0;
+
+        int i = 0;
+        while (i < batch.statements.size()) {
+            String statementSql = batch.statements.get(i);
+            boolean insert = statementSql.toUpperCase().startsWith("INSERT");
+
+            PreparedStatement statement = insert ?
+                    connection.prepareStatement(statementSql, Statement.RETURN_GENERATED_KEYS) :
+                    connection.prepareStatement(statementSql);
+            try {
+                int rows = 0;
+                for (; i < batch.statements.size() && batch.statements.get(i).equals(statementSql); i++) {
+                    Object[] arguments = batch.arguments.get(i);
+                    for (int j = 0; j < arguments.length; j++) {
+                        statement.setObject(j + 1, arguments[j]);
+                    }
+                    statement.addBatch();
+
+                    if (++rows % MAX_BATCH_ROWS == 0) {
+                        statement.executeBatch();
+                        numIds = readGeneratedKeys(statement, insert, ids, numIds);
+                    }
+                }
+                if (rows % MAX_BATCH_ROWS != 0) {
+                    statement.executeBatch();
+                    numIds = readGeneratedKeys(statement, insert, ids, numIds);
+                }
+            } finally {
+                statement.close();
+            }
+        }
+
+        return ids;
+    }
+
+    private int readGeneratedKeys(PreparedStatement statement, boolean insert, int[] ids, int numIds) throws SQLException {
+        if (!insert) {
+            return numIds;
+        }
+
+        ResultSet keys = statement.getGeneratedKeys();
+        try {
+            while (keys.next()) {
+                ids[numIds++] = keys.getInt(1);
+            }
+        } finally {
+            keys.close();
+        }
+        return numIds;
+    }
+
     private int getDatabaseVersion(Connection connection) {
         List<List<Object>> query = query(connection, "SELECT version FROM Library");
         return query.size() > 0 ? (Integer) query.get(0).get(0) : -1;
@@ -337,6 +478,19 @@ public class LibraryDatabase {
         update(connection, "CREATE ALIAS IF NOT EXISTS FTL_INIT FOR \"org.h2.fulltext.FullTextLucene.init\"");
         update(connection, "CALL FTL_INIT()");
         update(connection, "CALL FTL_CREATE_INDEX('PUBLIC', 'PLAYLISTITEMS', 'FILEPATH, TRACKTITLE, TRACKARTIST, TRACKALBUM, TRACKGENRE, TRACKYEAR')");
+        setupBatchFullTextTrigger(connection);
+    }
+
+    /**
+     * Replaces the trigger created by FTL_CREATE_INDEX with one that commits the
+     * Lucene index once per batch, see {@link BatchFullTextTrigger}.
+     */
+    private void setupBatchFullTextTrigger(final Connection connection) {
+        if (query(connection, "SELECT TRIGGER_NAME FROM INFORMATION_SCHEMA.TRIGGERS WHERE TRIGGER_SCHEMA = 'PUBLIC' AND TRIGGER_NAME = 'FTL_PLAYLISTITEMS'").isEmpty()) {
+            return;
+        }
+        update(connection, "DROP TRIGGER PUBLIC.FTL_PLAYLISTITEMS");
+        update(connection, "CREATE TRIGGER PUBLIC.FTL_PLAYLISTITEMS AFTER INSERT, UPDATE, DELETE ON PUBLIC.PLAYLISTITEMS FOR EACH ROW CALL \"" + BatchFullTextTrigger.class.getName() + "\"");
     }
 
     private void setupPlaylistIndexes(final Connection connection) {
@@ -357,4 +511,40 @@ public class LibraryDatabase {
             }
         }
     }
+
+    private void setupPlaylistSortIndex(final Connection connection) {
+        // the items are read in pages by sortIndex, null would never match
+        update(connection, "UPDATE PlaylistItems SET sortIndex = 0 WHERE sortIndex IS NULL");
+        update(connection, "CREATE INDEX IF NOT EXISTS idx_PlaylistItems_playlistId_sortIndex ON PlaylistItems (playlistId, sortIndex, playlistItemId)");
+    }
+
+    /**
+     * Maps the current row of a result set, see {@link #query(RowMapper, String, Object...)}.
+     */
+    public interface RowMapper<T> {
+
+        T map(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * Statements to run together with {@link #execute(Batch)}.
+     */
+    public static final class Batch {
+
+        private final List<String> statements = new ArrayList<>();
+        private final List<Object[]> arguments = new ArrayList<>();
+        private int insertCount;
+
+        public void add(String statementSql, Object... arguments) {
+            statements.add(statementSql);
+            this.arguments.add(arguments != null ? arguments : new Object[0]);
+            if (statementSql.toUpperCase().startsWith("INSERT")) {
+                insertCount++;
+            }
+        }
+
+        public boolean isEmpty() {
+            return statements.isEmpty();
+        }
+    }
 }
@@ -36,21 +36,28 @@ public class PlaylistDB {
             return;
         }
 
+        LibraryDatabase.Batch batch = new LibraryDatabase.Batch();
+
         if (obj.getId() == LibraryDatabase.OBJECT_NOT_SAVED_ID) {
             int id = db.insert("INSERT INTO Playlists (name, description) VALUES (LEFT(?, 500), LEFT(?, 10000))", obj.getName(), obj.getDescription());
             obj.setId(id);
         } else {
-            db.update("DELETE FROM PlaylistItems WHERE playlistId = ?", obj.getId());
+            batch.add("DELETE FROM PlaylistItems WHERE playlistId = ?", obj.getId());
             Object[] statementObjects = createPlaylistUpdateStatement(obj);
-            db.update((String) statementObjects[0], (Object[]) statementObjects[1]);
+            batch.add((String) statementObjects[0], (Object[]) statementObjects[1]);
         }
         
-        List<PlaylistItem> items = new ArrayList<>(obj.getItems());
+        List<PlaylistItem> items;
+        synchronized (obj.getItems()) {
+            items = new ArrayList<>(obj.getItems());
+        }
 
         for (PlaylistItem item : items) {
             item.setId(LibraryDatabase.OBJECT_NOT_SAVED_ID);
-            item.save();
         }
+
+        // the items are written again in one transaction
+        PlaylistItemDB.save(db, items, false, batch);
     }
 
     public static void delete(LibraryDatabase db, Playlist obj) {
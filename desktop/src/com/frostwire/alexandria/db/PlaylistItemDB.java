@@ -21,11 +21,20 @@ package com.frostwire.alexandria.db;
 import com.frostwire.alexandria.Playlist;
 import com.frostwire.alexandria.PlaylistItem;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class PlaylistItemDB {
 
+    // items read at once when a playlist is loaded
+    public static final int PAGE_SIZE = 1000;
+
+    private static final String SELECT_ITEMS = "SELECT playlistItemId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred, sortIndex FROM PlaylistItems ";
+
     private PlaylistItemDB() {}
 
     public static void fill(LibraryDatabase db, PlaylistItem obj) {
@@ -77,6 +86,26 @@ public class PlaylistItemDB {
         obj.setSortIndexByTrackNumber(sortIndex);
     }
 
+    private static void fill(ResultSet rs, PlaylistItem obj) throws SQLException {
+        obj.setId(rs.getInt(1));
+        obj.setFilePath(rs.getString(2));
+        obj.setFileName(rs.getString(3));
+        obj.setFileSize(rs.getLong(4));
+        obj.setFileExtension(rs.getString(5));
+        obj.setTrackTitle(rs.getString(6));
+        obj.setTrackDurationInSecs(rs.getFloat(7));
+        obj.setTrackArtist(rs.getString(8));
+        obj.setTrackAlbum(rs.getString(9));
+        obj.setCoverArtPath(rs.getString(10));
+        obj.setTrackBitrate(rs.getString(11));
+        obj.setTrackComment(rs.getString(12));
+        obj.setTrackGenre(rs.getString(13));
+        obj.setTrackNumber(rs.getString(14));
+        obj.setTrackYear(rs.getString(15));
+        obj.setStarred(rs.getBoolean(16));
+        obj.setSortIndexByTrackNumber(rs.getInt(17));
+    }
+
     public static void save(LibraryDatabase db, PlaylistItem obj, boolean updateStarred) {
         if (obj.getId() == LibraryDatabase.OBJECT_INVALID_ID || obj.getPlaylist() == null) {
             return;
@@ -100,27 +129,77 @@ public class PlaylistItemDB {
         }
     }
 
+    /**
+     * Saves many items at once, with a single transaction and reusing the
+     * statements, the statements already in the batch run first.
+     *
+     * @param propagateStars if true, the files of the starred items are
+     *                       starred in every playlist.
+     */
+    public static boolean save(LibraryDatabase db, List<PlaylistItem> items, boolean propagateStars, LibraryDatabase.Batch batch) {
+        List<PlaylistItem> inserted = new ArrayList<>();
+        Set<String> starredPaths = null;
+
+        for (PlaylistItem item : items) {
+            if (item.getId() == LibraryDatabase.OBJECT_INVALID_ID || item.getPlaylist() == null) {
+                continue;
+            }
+            Object[] sqlAndValues;
+            if (item.getId() == LibraryDatabase.OBJECT_NOT_SAVED_ID) {
+                if (starredPaths == null) {
+                    starredPaths = getStarredPaths(db);
+                }
+                item.setStarred(starredPaths.contains(item.getFilePath()) || item.isStarred());
+                sqlAndValues = createPlaylistItemInsert(item);
+                inserted.add(item);
+            } else {
+                sqlAndValues = createPlaylistItemUpdate(item);
+            }
+            batch.add((String) sqlAndValues[0], (Object[]) sqlAndValues[1]);
+        }
+
+        if (propagateStars) {
+            for (PlaylistItem item : items) {
+                if (item.isStarred() && item.getPlaylist() != null) {
+                    Object[] sqlAndValues = updateStarred(item);
+                    batch.add((String) sqlAndValues[0], (Object[]) sqlAndValues[1]);
+                }
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        int[] ids = db.execute(batch);
+        if (ids == null) {
+            return false;
+        }
+
+        // the inserts of the items are the last ones
+        int offset = ids.length - inserted.size();
+        for (int i = 0; i < inserted.size(); i++) {
+            inserted.get(i).setId(ids[offset + i]);
+        }
+        return true;
+    }
+
     public static void delete(LibraryDatabase db, PlaylistItem obj) {
         db.update("DELETE FROM PlaylistItems WHERE playlistItemId = ?", obj.getId());
     }
     
     public static List<PlaylistItem> getPlaylistItems(LibraryDatabase db, Playlist playlist) {
-        String query = "SELECT playlistItemId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred, sortIndex "
-                + "FROM PlaylistItems WHERE playlistId = ? ORDER BY sortIndex ASC";
-
-        List<List<Object>> result = db.query(query, playlist.getId());
-
-        List<PlaylistItem> items = new ArrayList<>(result.size());
+        List<PlaylistItem> items = new ArrayList<>();
 
-        for (List<Object> row : result) {
-            PlaylistItem item = new PlaylistItem(playlist);
-            PlaylistItemDB.fill(row, item);
-            items.add(item);
+        // a page at a time, so other queries can use the connection in between
+        ItemCursor cursor = new ItemCursor(db, playlist);
+        while (cursor.hasNext()) {
+            items.addAll(cursor.next(PAGE_SIZE));
         }
 
         return items;
     }
-    
+
     private static Object[] createPlaylistItemInsert(PlaylistItem item) {
         String sql = "INSERT INTO PlaylistItems (playlistId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred, sortIndex) "
                 + " VALUES (?, LEFT(?, 10000), LEFT(?, 500), ?, LEFT(?, 10), LEFT(?, 500), ?, LEFT(?, 500), LEFT(?, 500), LEFT(?, 10000), LEFT(?, 10), LEFT(?, 500), LEFT(?, 20), LEFT(?, 6), LEFT(?, 6), ?, ?)";
@@ -148,6 +227,15 @@ public class PlaylistItemDB {
         return new Object[] { sql, values };
     }
     
+    private static Set<String> getStarredPaths(LibraryDatabase db) {
+        List<List<Object>> result = db.query("SELECT DISTINCT filePath FROM PlaylistItems WHERE starred = TRUE");
+        Set<String> paths = new HashSet<>(result.size());
+        for (List<Object> row : result) {
+            paths.add((String) row.get(0));
+        }
+        return paths;
+    }
+
     private static boolean isStarred(LibraryDatabase db, PlaylistItem item) {
         List<List<Object>> result = db
                 .query("SELECT starred FROM PlaylistItems WHERE filePath = ? LIMIT 1", item.getFilePath());
@@ -157,4 +245,60 @@ public class PlaylistItemDB {
         
         return false;
     }
+
+    /**
+     * Reads the items of a playlist in sortIndex order, a page at a time.
+     * <p>
+     * The position is kept as the sortIndex and id stored in the database, the
+     * items may have the track number as sort index once loaded.
+     */
+    public static final class ItemCursor {
+
+        private final LibraryDatabase db;
+        private final Playlist playlist;
+        private final LibraryDatabase.RowMapper<PlaylistItem> mapper;
+
+        private boolean started;
+        private boolean done;
+        private int lastSortIndex;
+        private int lastId;
+
+        public ItemCursor(LibraryDatabase db, Playlist playlist) {
+            this.db = db;
+            this.playlist = playlist;
+            this.mapper = new LibraryDatabase.RowMapper<PlaylistItem>() {
+                @Override
+                public PlaylistItem map(ResultSet resultSet) throws SQLException {
+                    PlaylistItem item = new PlaylistItem(ItemCursor.this.playlist);
+                    fill(resultSet, item);
+                    lastSortIndex = resultSet.getInt(17);
+                    lastId = item.getId();
+                    return item;
+                }
+            };
+        }
+
+        public boolean hasNext() {
+            return !done;
+        }
+
+        public List<PlaylistItem> next(int limit) {
+            if (done) {
+                return new ArrayList<>();
+            }
+
+            List<PlaylistItem> page;
+            if (!started) {
+                page = db.query(mapper, SELECT_ITEMS + "WHERE playlistId = ? ORDER BY playlistId, sortIndex, playlistItemId LIMIT ?", playlist.getId(), limit);
+                started = true;
+            } else {
+                // the items with the same sortIndex are ordered by id
+                page = db.query(mapper, SELECT_ITEMS + "WHERE playlistId = ? AND sortIndex >= ? AND (sortIndex > ? OR playlistItemId > ?) ORDER BY playlistId, sortIndex, playlistItemId LIMIT ?",
+                        playlist.getId(), lastSortIndex, lastSortIndex, lastId, limit);
+            }
+
+            done = page.size() < limit;
+            return page;
+        }
+    }
 }
@@ -79,6 +79,7 @@ final class BTDownloadDataLine extends AbstractDataLine<BTDownload> {
     private String seedToPeerRatio;
     private Date dateCreated;
     private String license;
+    private String displayName;
     private boolean notificationShown;
     private PaymentOptions paymentOptions;
     private static final List<LimeTableColumn> columns;
@@ -367,6 +368,7 @@ final class BTDownloadDataLine extends AbstractDataLine<BTDownload> {
         seedToPeerRatio = initializer.getSeedToPeerRatio();
         size = initializer.getSize();
         dateCreated = initializer.getDateCreated();
+        displayName = initializer.getDisplayName();
         
         if (initializer.getCopyrightLicenseBroker() != null && 
             initializer.getCopyrightLicenseBroker().license != null) {
@@ -384,6 +386,49 @@ final class BTDownloadDataLine extends AbstractDataLine<BTDownload> {
         }
     }
 
+    /**
+     * Updates and compares with the values shown so far, most paused
+     * or finished transfers have nothing new to draw.
+     */
+    @Override
+    public boolean updateChanged() {
+        TransferState oldTransferState = transferState;
+        int oldProgress = progress;
+        long oldDownload = download;
+        long oldUpload = upload;
+        double oldDownloadSpeed = downloadSpeed;
+        double oldUploadSpeed = uploadSpeed;
+        long oldTimeLeft = timeLeft;
+        long oldSize = size;
+        String oldSeeds = seeds;
+        String oldPeers = peers;
+        String oldShareRatio = shareRatio;
+        String oldSeedToPeerRatio = seedToPeerRatio;
+        Date oldDateCreated = dateCreated;
+        String oldLicense = license;
+        String oldDisplayName = displayName;
+        PaymentOptions oldPaymentOptions = paymentOptions;
+
+        update();
+
+        return transferState != oldTransferState ||
+               progress != oldProgress ||
+               download != oldDownload ||
+               upload != oldUpload ||
+               downloadSpeed != oldDownloadSpeed ||
+               uploadSpeed != oldUploadSpeed ||
+               timeLeft != oldTimeLeft ||
+               size != oldSize ||
+               !Objects.equals(seeds, oldSeeds) ||
+               !Objects.equals(peers, oldPeers) ||
+               !Objects.equals(shareRatio, oldShareRatio) ||
+               !Objects.equals(seedToPeerRatio, oldSeedToPeerRatio) ||
+               !Objects.equals(dateCreated, oldDateCreated) ||
+               !Objects.equals(license, oldLicense) ||
+               !Objects.equals(displayName, oldDisplayName) ||
+               paymentOptions != oldPaymentOptions;
+    }
+
     private void showNotification() {
         if (!notificationShown) {
             notificationShown = true;
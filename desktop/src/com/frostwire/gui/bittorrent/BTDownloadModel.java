@@ -35,6 +35,7 @@ public class BTDownloadModel extends BasicDataLineModel<BTDownloadDataLine, BTDo
     BTDownloadModel() {
         super(BTDownloadDataLine.class);
         _hashDownloads = new HashSet<>();
+        setTrackChanges(true);
     }
 
     /**
@@ -80,14 +81,8 @@ public class BTDownloadModel extends BasicDataLineModel<BTDownloadDataLine, BTDo
      */
     public Object refresh() {
         try {
-            int size = getRowCount();
-
-            for (int i = 0; i < size; i++) {
-                BTDownloadDataLine ud = get(i);
-                ud.update();
-            }
-
-            fireTableRowsUpdated(0, size);
+            // only the transfers that changed are redrawn
+            super.refresh();
         } catch (Exception e) {
             System.out.println("ATTENTION: Send the following output to the FrostWire Development team.");
             System.out.println("===============================START COPY & PASTE=======================================");
@@ -0,0 +1,844 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.library;
+
+import com.frostwire.util.Logger;
+import com.limegroup.gnutella.settings.LibrarySettings;
+import org.limewire.concurrent.ThreadExecutor;
+import org.limewire.util.CommonUtils;
+import org.limewire.util.StringUtils;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Index of the files in the library folders
+ * ({@link LibrarySettings#DIRECTORIES_TO_INCLUDE}), so that a library search
+ * is a query in memory instead of a walk of the folders.
+ * <p>
+ * The index is saved in the settings folder and loaded at startup. A
+ * background thread walks the folders again every {@link #RECONCILE_INTERVAL},
+ * or when the library folders change, and in between the index is kept
+ * current with a {@link WatchService} over the indexed folders.
+ * <p>
+ * Only that thread touches the index. The searches run without locks over
+ * a {@link Snapshot} of it, taken again {@link #PUBLISH_DELAY} after the
+ * folders change, and the changes are saved {@link #SAVE_DELAY} after.
+ * <p>
+ * Like the walk did, a file matches when every token of the query is
+ * in its normalized absolute path.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class LibraryIndex {
+
+    private static final Logger LOG = Logger.getLogger(LibraryIndex.class);
+
+    private static final int VERSION = 1;
+
+    private static final long RECONCILE_INTERVAL = TimeUnit.MINUTES.toMillis(15);
+    // when there is a saved index, don't compete with the startup for the disk
+    private static final long STARTUP_RECONCILE_DELAY = TimeUnit.MINUTES.toMillis(1);
+    private static final long POLL_INTERVAL = 2000; // milliseconds
+    private static final long PUBLISH_DELAY = 1000; // milliseconds
+    private static final long SAVE_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final LibraryIndex INSTANCE = new LibraryIndex(new File(CommonUtils.getUserSettingsDir(), "library.idx"));
+
+    private final File indexFile;
+    private final AtomicBoolean started;
+
+    private volatile Snapshot snapshot;
+    private volatile Thread thread;
+    private volatile boolean stopped;
+
+    // only used by the index thread
+    private Index index;
+    private final Map<WatchKey, Path> watched;
+    private boolean watchLimitReached;
+    private long publishTime; // 0 if the snapshot has all the changes
+    private long saveTime; // 0 if the saved index has all the changes
+
+    LibraryIndex(File indexFile) {
+        this.indexFile = indexFile;
+        this.started = new AtomicBoolean(false);
+        this.watched = new HashMap<>();
+    }
+
+    static LibraryIndex instance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts the background thread that loads and maintains the index,
+     * only the first call has any effect.
+     */
+    void start() {
+        if (started.compareAndSet(false, true)) {
+            ThreadExecutor.startThread(new Runnable() {
+                @Override
+                public void run() {
+                    maintain();
+                }
+            }, "LibraryIndex");
+        }
+    }
+
+    /**
+     * Stops the background thread, saving the pending changes.
+     */
+    void stop() {
+        stopped = true;
+        Thread t = thread;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    /**
+     * Returns the files under the given folders matching the query, or
+     * null if those folders are not indexed, or not yet.
+     */
+    List<File> search(String query, Collection<File> folders) {
+        Snapshot s = snapshot;
+        if (s == null || !s.isCurrent() || !s.covers(folders)) {
+            return null;
+        }
+        String[] tokens = StringUtils.removeDoubleSpaces(normalize(query)).split(" ");
+        return s.search(tokens, folders);
+    }
+
+    static String normalize(String s) {
+        String norm = Normalizer.normalize(s, Normalizer.Form.NFKD);
+        norm = COMBINING_MARKS.matcher(norm).replaceAll("");
+        return norm.toLowerCase(Locale.US);
+    }
+
+    private void maintain() {
+        thread = Thread.currentThread();
+
+        WatchService watcher = null;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+        } catch (Throwable e) {
+            LOG.warn("Unable to watch the library folders, relying on periodic walks", e);
+        }
+
+        try {
+            long nextReconcile = 0;
+            Index saved = load();
+            if (saved != null && saved.isCurrent()) {
+                index = saved;
+                publish();
+                for (String dir : saved.dirPaths()) {
+                    register(watcher, Paths.get(dir));
+                }
+                nextReconcile = System.currentTimeMillis() + STARTUP_RECONCILE_DELAY;
+            }
+
+            while (!stopped) {
+                try {
+                    if (System.currentTimeMillis() >= nextReconcile || index == null || !index.isCurrent()) {
+                        reconcile(watcher);
+                        nextReconcile = System.currentTimeMillis() + RECONCILE_INTERVAL;
+                    }
+
+                    long now = System.currentTimeMillis();
+                    if (publishTime != 0 && now >= publishTime) {
+                        publish();
+                    }
+                    if (saveTime != 0 && now >= saveTime) {
+                        save(index);
+                    }
+
+                    long timeout = publishTime != 0 ? Math.max(publishTime - now, 1) : POLL_INTERVAL;
+                    if (watcher == null) {
+                        Thread.sleep(timeout);
+                        continue;
+                    }
+
+                    WatchKey key = watcher.poll(timeout, TimeUnit.MILLISECONDS);
+                    while (key != null) {
+                        if (!processEvents(watcher, key)) {
+                            nextReconcile = 0;
+                        }
+                        key = watcher.poll();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Throwable e) {
+                    LOG.error("Error maintaining the library index", e);
+                    nextReconcile = System.currentTimeMillis() + RECONCILE_INTERVAL;
+                }
+            }
+        } finally {
+            if (saveTime != 0) {
+                save(index);
+            }
+            if (watcher != null) {
+                try {
+                    watcher.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks all the library folders into a new index and replaces
+     * the current one with it.
+     */
+    private void reconcile(WatchService watcher) {
+        long start = System.currentTimeMillis();
+
+        for (Iterator<WatchKey> it = watched.keySet().iterator(); it.hasNext(); ) {
+            if (!it.next().isValid()) {
+                it.remove();
+            }
+        }
+
+        Index fresh = new Index(includedFolders(), excludedFolders());
+        for (File folder : fresh.roots) {
+            walk(fresh, folder.toPath(), watcher);
+        }
+
+        index = fresh;
+        publish();
+
+        LOG.info("Library index of " + fresh.size() + " files built in " + (System.currentTimeMillis() - start) + "ms");
+
+        save(fresh);
+    }
+
+    /**
+     * Walks a folder into the index, watching each folder before listing
+     * it so that no file created meanwhile is missed.
+     */
+    private void walk(final Index target, Path folder, final WatchService watcher) {
+        try {
+            Files.walkFileTree(folder, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (!target.roots.contains(dir.toFile()) && (isHidden(dir) || target.excluded.contains(dir.toFile()))) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    // a folder already indexed under another path, walkFileTree
+                    // only detects the links to the folders above
+                    if (target.addDir(dir.toString(), attrs.fileKey()) == null) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    register(watcher, dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile() && !isHidden(file)) {
+                        target.addFile(file.getParent().toString(), file.getFileName().toString());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                    // unreadable folders, broken links and link cycles are left out
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOG.warn("Error walking library folder " + folder, e);
+        }
+    }
+
+    /**
+     * Applies the changes of a watched folder to the index, returns
+     * false if events were lost and the folders need a walk.
+     */
+    private boolean processEvents(WatchService watcher, WatchKey key) {
+        Path dir = watched.get(key);
+        if (dir == null) {
+            key.cancel();
+            return true;
+        }
+
+        boolean complete = true;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                complete = false;
+                continue;
+            }
+
+            Path child = dir.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE) {
+                if (Files.isDirectory(child)) {
+                    walk(index, child, watcher);
+                } else if (Files.isRegularFile(child) && !isHidden(child)) {
+                    index.addFile(dir.toString(), child.getFileName().toString());
+                }
+            } else if (event.kind() == ENTRY_DELETE) {
+                index.remove(dir.toString(), child.getFileName().toString());
+            }
+            changed();
+        }
+
+        if (!key.reset()) {
+            watched.remove(key);
+        }
+        return complete;
+    }
+
+    private void changed() {
+        long now = System.currentTimeMillis();
+        if (publishTime == 0) {
+            publishTime = now + PUBLISH_DELAY;
+        }
+        if (saveTime == 0) {
+            saveTime = now + SAVE_DELAY;
+        }
+    }
+
+    private void publish() {
+        snapshot = index.snapshot();
+        publishTime = 0;
+    }
+
+    private void register(WatchService watcher, Path dir) {
+        if (watcher == null || watchLimitReached) {
+            return;
+        }
+        try {
+            watched.put(dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE), dir);
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            // gone since the walk
+        } catch (IOException e) {
+            // usually the limit of inotify watches in linux, the periodic walk covers the rest
+            watchLimitReached = true;
+            LOG.warn("Unable to watch more library folders (" + watched.size() + " watched), relying on periodic walks", e);
+        }
+    }
+
+    private Index load() {
+        if (!indexFile.exists()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(indexFile))))) {
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            Index saved = new Index(readFiles(in), readFiles(in));
+            int dirCount = in.readInt();
+            for (int i = 0; i < dirCount; i++) {
+                String dir = in.readUTF();
+                saved.addDir(dir, null);
+                int fileCount = in.readInt();
+                for (int j = 0; j < fileCount; j++) {
+                    saved.addFile(dir, in.readUTF());
+                }
+            }
+            return saved;
+        } catch (Throwable e) {
+            LOG.warn("Unable to load the library index, it will be built again", e);
+            return null;
+        }
+    }
+
+    private void save(Index target) {
+        saveTime = 0;
+
+        File temp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))))) {
+            out.writeInt(VERSION);
+            writeFiles(out, target.roots);
+            writeFiles(out, target.excluded);
+            target.write(out);
+        } catch (Throwable e) {
+            LOG.warn("Unable to save the library index", e);
+            temp.delete();
+            return;
+        }
+
+        if (!temp.renameTo(indexFile)) {
+            indexFile.delete();
+            if (!temp.renameTo(indexFile)) {
+                LOG.warn("Unable to save the library index to " + indexFile);
+                temp.delete();
+            }
+        }
+    }
+
+    private static Set<File> readFiles(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        Set<File> files = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            files.add(new File(in.readUTF()));
+        }
+        return files;
+    }
+
+    private static void writeFiles(DataOutputStream out, Set<File> files) throws IOException {
+        out.writeInt(files.size());
+        for (File f : files) {
+            out.writeUTF(f.getPath());
+        }
+    }
+
+    private static Set<File> includedFolders() {
+        Set<File> folders = new HashSet<>();
+        for (File f : LibrarySettings.DIRECTORIES_TO_INCLUDE.getValueAsArray()) {
+            if (f != null) {
+                folders.add(f);
+            }
+        }
+        folders.removeAll(excludedFolders());
+        return folders;
+    }
+
+    private static Set<File> excludedFolders() {
+        return new HashSet<>(Arrays.asList(LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValueAsArray()));
+    }
+
+    /**
+     * If an index of these folders is for the library folders in the settings.
+     */
+    private static boolean isCurrent(Set<File> roots, Set<File> excluded) {
+        return roots.equals(includedFolders()) && excluded.equals(excludedFolders());
+    }
+
+    private static boolean isHidden(Path path) {
+        try {
+            return Files.isHidden(path);
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static boolean isUnder(String path, String folder) {
+        return path.startsWith(folder) &&
+                (path.length() == folder.length() || path.charAt(folder.length()) == File.separatorChar || folder.endsWith(File.separator));
+    }
+
+    private static void setAll(int[] ids, BitSet bits) {
+        for (int id : ids) {
+            bits.set(id);
+        }
+    }
+
+    /**
+     * The indexed folders and files. File names are split in words, and
+     * each word points to the files having it, a query token is looked up
+     * in the words instead of in every file name.
+     * <p>
+     * Removed files leave a hole until the next walk builds a new index.
+     * Not thread safe, the searches use a {@link #snapshot()}.
+     */
+    private static final class Index {
+
+        final Set<File> roots;
+        final Set<File> excluded;
+
+        private final List<Dir> dirs;
+        // only the folders not removed, sorted so that the ones under a folder are together
+        private final TreeMap<String, Dir> dirsByPath;
+        private final Map<Object, Dir> dirsByKey;
+        private final Map<String, IntArray> words;
+        // names with a separator after the normalization
+        private final IntArray separatorNames;
+
+        // files by id
+        private String[] names;
+        private String[] normalizedNames;
+        private int[] fileDirs;
+        private int fileCount;
+        private int removedCount;
+
+        Index(Set<File> roots, Set<File> excluded) {
+            this.roots = roots;
+            this.excluded = excluded;
+            this.dirs = new ArrayList<>();
+            this.dirsByPath = new TreeMap<>();
+            this.dirsByKey = new HashMap<>();
+            this.words = new HashMap<>();
+            this.separatorNames = new IntArray();
+            this.names = new String[1024];
+            this.normalizedNames = new String[1024];
+            this.fileDirs = new int[1024];
+        }
+
+        int size() {
+            return fileCount - removedCount;
+        }
+
+        boolean isCurrent() {
+            return LibraryIndex.isCurrent(roots, excluded);
+        }
+
+        /**
+         * Returns null if the folder, by its file key, is already in the
+         * index under another path.
+         */
+        Dir addDir(String path, Object key) {
+            Dir dir = dirsByPath.get(path);
+            if (dir == null) {
+                if (key != null && dirsByKey.containsKey(key)) {
+                    return null;
+                }
+                dir = new Dir(dirs.size(), path, key);
+                dirs.add(dir);
+                dirsByPath.put(path, dir);
+                if (key != null) {
+                    dirsByKey.put(key, dir);
+                }
+            }
+            return dir;
+        }
+
+        void addFile(String dirPath, String name) {
+            Dir dir = dirsByPath.get(dirPath);
+            if (dir == null || dir.files.containsKey(name)) {
+                return;
+            }
+
+            if (fileCount == names.length) {
+                int capacity = names.length * 2;
+                names = Arrays.copyOf(names, capacity);
+                normalizedNames = Arrays.copyOf(normalizedNames, capacity);
+                fileDirs = Arrays.copyOf(fileDirs, capacity);
+            }
+
+            int id = fileCount++;
+            String normalized = normalize(name);
+            names[id] = name;
+            normalizedNames[id] = normalized;
+            fileDirs[id] = dir.id;
+            dir.files.put(name, id);
+
+            if (normalized.indexOf(File.separatorChar) != -1) {
+                separatorNames.add(id);
+            }
+            for (String word : WORD_SEPARATOR.split(normalized)) {
+                if (word.length() > 0) {
+                    IntArray ids = words.get(word);
+                    if (ids == null) {
+                        ids = new IntArray();
+                        words.put(word, ids);
+                    }
+                    ids.add(id);
+                }
+            }
+        }
+
+        /**
+         * Removes a file, or a folder with everything under it.
+         */
+        void remove(String dirPath, String name) {
+            Dir dir = dirsByPath.get(dirPath);
+            if (dir != null) {
+                Integer id = dir.files.remove(name);
+                if (id != null) {
+                    removeFile(id);
+                    return;
+                }
+            }
+
+            for (Dir d : dirsUnder(new File(dirPath, name).getPath())) {
+                for (int id : d.files.values()) {
+                    removeFile(id);
+                }
+                d.files.clear();
+                dirsByPath.remove(d.path);
+                if (d.key != null && dirsByKey.get(d.key) == d) {
+                    dirsByKey.remove(d.key);
+                }
+            }
+        }
+
+        private void removeFile(int id) {
+            names[id] = null;
+            normalizedNames[id] = null;
+            removedCount++;
+        }
+
+        List<String> dirPaths() {
+            return new ArrayList<>(dirsByPath.keySet());
+        }
+
+        private List<Dir> dirsUnder(String path) {
+            List<Dir> under = new ArrayList<>();
+            Dir dir = dirsByPath.get(path);
+            if (dir != null) {
+                under.add(dir);
+            }
+
+            String prefix = path.endsWith(File.separator) ? path : path + File.separator;
+            for (Map.Entry<String, Dir> e : dirsByPath.tailMap(prefix).entrySet()) {
+                if (!e.getKey().startsWith(prefix)) {
+                    break;
+                }
+                under.add(e.getValue());
+            }
+            return under;
+        }
+
+        Snapshot snapshot() {
+            int dirCount = dirs.size();
+            String[] dirPaths = new String[dirCount];
+            String[] normalizedDirPaths = new String[dirCount];
+            int[][] dirFiles = new int[dirCount][];
+            for (Dir d : dirsByPath.values()) {
+                dirPaths[d.id] = d.path;
+                normalizedDirPaths[d.id] = d.normalizedPath;
+                int[] ids = new int[d.files.size()];
+                int i = 0;
+                for (int id : d.files.values()) {
+                    ids[i++] = id;
+                }
+                dirFiles[d.id] = ids;
+            }
+
+            String[] wordKeys = new String[words.size()];
+            int[][] wordFiles = new int[words.size()][];
+            int i = 0;
+            for (Map.Entry<String, IntArray> e : words.entrySet()) {
+                wordKeys[i] = e.getKey();
+                wordFiles[i] = e.getValue().toArray();
+                i++;
+            }
+
+            return new Snapshot(roots, excluded, dirPaths, normalizedDirPaths, dirFiles,
+                    Arrays.copyOf(names, fileCount), Arrays.copyOf(normalizedNames, fileCount), Arrays.copyOf(fileDirs, fileCount),
+                    wordKeys, wordFiles, separatorNames.toArray());
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(dirsByPath.size());
+            for (Dir d : dirsByPath.values()) {
+                out.writeUTF(d.path);
+                out.writeInt(d.files.size());
+                for (String name : d.files.keySet()) {
+                    out.writeUTF(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * A copy of the index, never changed, for the searches.
+     */
+    private static final class Snapshot {
+
+        final Set<File> roots;
+        final Set<File> excluded;
+
+        // by folder id, null for the removed folders
+        private final String[] dirPaths;
+        private final String[] normalizedDirPaths;
+        private final int[][] dirFiles;
+
+        // by file id, null for the removed files
+        private final String[] names;
+        private final String[] normalizedNames;
+        private final int[] fileDirs;
+
+        private final String[] words;
+        private final int[][] wordFiles;
+        private final int[] separatorNames;
+
+        Snapshot(Set<File> roots, Set<File> excluded,
+                 String[] dirPaths, String[] normalizedDirPaths, int[][] dirFiles,
+                 String[] names, String[] normalizedNames, int[] fileDirs,
+                 String[] words, int[][] wordFiles, int[] separatorNames) {
+            this.roots = roots;
+            this.excluded = excluded;
+            this.dirPaths = dirPaths;
+            this.normalizedDirPaths = normalizedDirPaths;
+            this.dirFiles = dirFiles;
+            this.names = names;
+            this.normalizedNames = normalizedNames;
+            this.fileDirs = fileDirs;
+            this.words = words;
+            this.wordFiles = wordFiles;
+            this.separatorNames = separatorNames;
+        }
+
+        boolean isCurrent() {
+            return LibraryIndex.isCurrent(roots, excluded);
+        }
+
+        boolean covers(Collection<File> folders) {
+            for (File folder : folders) {
+                boolean covered = false;
+                for (File root : roots) {
+                    if (isUnder(folder.getPath(), root.getPath())) {
+                        covered = true;
+                        break;
+                    }
+                }
+                for (File e : excluded) {
+                    if (isUnder(folder.getPath(), e.getPath())) {
+                        covered = false;
+                        break;
+                    }
+                }
+                if (!covered) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        List<File> search(String[] tokens, Collection<File> folders) {
+            BitSet inFolders = new BitSet(dirPaths.length);
+            for (int d = 0; d < dirPaths.length; d++) {
+                if (dirPaths[d] != null) {
+                    for (File folder : folders) {
+                        if (isUnder(dirPaths[d], folder.getPath())) {
+                            inFolders.set(d);
+                            break;
+                        }
+                    }
+                }
+            }
+
+            BitSet matches = null;
+            for (String token : tokens) {
+                if (token.length() == 0) {
+                    continue;
+                }
+
+                BitSet tokenMatches = new BitSet(names.length);
+                matchNames(token, inFolders, tokenMatches);
+                for (int d = inFolders.nextSetBit(0); d >= 0; d = inFolders.nextSetBit(d + 1)) {
+                    if (normalizedDirPaths[d].contains(token)) {
+                        setAll(dirFiles[d], tokenMatches);
+                    }
+                }
+
+                if (matches == null) {
+                    matches = tokenMatches;
+                } else {
+                    matches.and(tokenMatches);
+                }
+                if (matches.isEmpty()) {
+                    break;
+                }
+            }
+
+            List<File> results = new ArrayList<>();
+            if (matches != null) {
+                for (int id = matches.nextSetBit(0); id >= 0; id = matches.nextSetBit(id + 1)) {
+                    if (names[id] != null && inFolders.get(fileDirs[id])) {
+                        results.add(new File(dirPaths[fileDirs[id]], names[id]));
+                    }
+                }
+            }
+            return results;
+        }
+
+        /**
+         * Files with the token in the name, or in the path for tokens
+         * with a separator, not counting the folder-only matches.
+         */
+        private void matchNames(String token, BitSet inFolders, BitSet ids) {
+            if (token.indexOf(File.separatorChar) != -1) {
+                // the end of the folder and the start of the name, at each separator of the token
+                for (int k = token.indexOf(File.separatorChar); k != -1; k = token.indexOf(File.separatorChar, k + 1)) {
+                    String head = token.substring(0, k);
+                    String tail = token.substring(k + 1);
+                    for (int d = inFolders.nextSetBit(0); d >= 0; d = inFolders.nextSetBit(d + 1)) {
+                        if (normalizedDirPaths[d].endsWith(head)) {
+                            for (int id : dirFiles[d]) {
+                                if (normalizedNames[id].startsWith(tail)) {
+                                    ids.set(id);
+                                }
+                            }
+                        }
+                    }
+                }
+                for (int id : separatorNames) {
+                    if (normalizedNames[id] != null && normalizedNames[id].contains(token)) {
+                        ids.set(id);
+                    }
+                }
+            } else if (!WORD_SEPARATOR.matcher(token).find()) {
+                // a token without separators can only be inside a word
+                for (int i = 0; i < words.length; i++) {
+                    if (words[i].contains(token)) {
+                        setAll(wordFiles[i], ids);
+                    }
+                }
+            } else {
+                for (int id = 0; id < names.length; id++) {
+                    if (normalizedNames[id] != null && normalizedNames[id].contains(token)) {
+                        ids.set(id);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Dir {
+
+        final int id;
+        final String path;
+        final String normalizedPath;
+        final Object key;
+        final Map<String, Integer> files;
+
+        Dir(int id, String path, Object key) {
+            this.id = id;
+            this.path = path;
+            this.normalizedPath = normalize(path);
+            this.key = key;
+            this.files = new HashMap<>();
+        }
+    }
+
+    private static final class IntArray {
+
+        private int[] values = new int[2];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -246,6 +246,12 @@ public class LibraryMediator {
         LibraryPlaylistsTableMediator.instance().updateTableItems(playlist);
     }
 
+    void loadTableItems(Playlist playlist) {
+        clearLibraryTable();
+        showView(PLAYLISTS_TABLE_KEY);
+        LibraryPlaylistsTableMediator.instance().loadTableItems(playlist);
+    }
+
     void clearLibraryTable() {
         LibraryFilesTableMediator.instance().clearTable();
         LibraryPlaylistsTableMediator.instance().clearTable();
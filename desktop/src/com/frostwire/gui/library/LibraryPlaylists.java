@@ -324,11 +324,13 @@ public class LibraryPlaylists extends AbstractLibraryListPanel {
         }
         Playlist playlist = cell.getPlaylist();
         if (playlist != null) {
-            if (playlist.getId() == LibraryDatabase.STARRED_PLAYLIST_ID){
-                playlist = LibraryMediator.getLibrary().getStarredPlaylist();
-            } else {
-                playlist.refresh();
+            if (playlist.getId() != LibraryDatabase.STARRED_PLAYLIST_ID) {
+                LibraryMediator.instance().loadTableItems(playlist);
+                LibraryMediator.instance().getLibrarySearch().setStatus("");
+                // the pending runnables run once the playlist is loaded
+                return;
             }
+            playlist = LibraryMediator.getLibrary().getStarredPlaylist();
             LibraryMediator.instance().updateTableItems(playlist);
             LibraryMediator.instance().getLibrarySearch().setStatus("");
         }
@@ -37,6 +37,7 @@ import com.limegroup.gnutella.gui.actions.LimeAction;
 import com.limegroup.gnutella.gui.actions.SearchAction;
 import com.limegroup.gnutella.gui.search.GenericCellEditor;
 import com.limegroup.gnutella.gui.tables.LimeJTable;
+import com.limegroup.gnutella.gui.util.BackgroundExecutorService;
 import com.limegroup.gnutella.gui.util.GUILauncher;
 import com.limegroup.gnutella.gui.util.GUILauncher.LaunchableProvider;
 import com.limegroup.gnutella.util.QueryUtils;
@@ -64,8 +65,14 @@ import java.util.List;
  */
 final class LibraryPlaylistsTableMediator extends AbstractLibraryTableMediator<LibraryPlaylistsTableModel, LibraryPlaylistsTableDataLine, PlaylistItem> {
 
+    // rows read first when a playlist is loaded, more than the table shows at once
+    private static final int FIRST_PAGE_SIZE = 100;
+
     private Playlist currentPlaylist;
 
+    // changes every time the table is cleared, to drop the pages of a previous load
+    private volatile int loadToken;
+
     /**
      * Variables so the PopupMenu & ButtonRow can have the same listeners
      */
@@ -355,6 +362,59 @@ final class LibraryPlaylistsTableMediator extends AbstractLibraryTableMediator<L
         forceResort();
     }
 
+    /**
+     * Reloads the playlist from the database and shows its items, the rows
+     * of the first page are added before the rest of the playlist is read.
+     * The pending runnables of the playlists panel run after the last page.
+     */
+    void loadTableItems(final Playlist playlist) {
+        if (playlist == null) {
+            return;
+        }
+
+        currentPlaylist = playlist;
+        clearTable();
+        final int token = loadToken;
+
+        BackgroundExecutorService.schedule(new Runnable() {
+            @Override
+            public void run() {
+                playlist.refresh(FIRST_PAGE_SIZE, new Playlist.PageListener() {
+                    @Override
+                    public void onPage(final List<PlaylistItem> items) {
+                        GUIMediator.safeInvokeLater(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (token == loadToken) {
+                                    for (PlaylistItem item : items) {
+                                        addUnsorted(item);
+                                    }
+                                }
+                            }
+                        });
+                    }
+                });
+
+                GUIMediator.safeInvokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (token == loadToken) {
+                            updatePlaylistComponentHeader(null);
+                            forceResort();
+                        }
+                        LibraryMediator.instance().getLibraryPlaylists().executePendingRunnables();
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void clearTable() {
+        loadToken++;
+        super.clearTable();
+    }
+
     @Override
     public JComponent getComponent() {
         mainContainer = new JPanel(new MigLayout("fillx, wrap 1","[]", "[][fill, grow]"));
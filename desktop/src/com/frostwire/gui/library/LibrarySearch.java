@@ -64,6 +64,7 @@ public class LibrarySearch extends JPanel {
 
     public LibrarySearch() {
         setupUI();
+        LibraryIndex.instance().start();
     }
 
     public void searchFor(final String query, final boolean displayTextOnSearchBox) {
@@ -309,18 +310,17 @@ public class LibrarySearch extends JPanel {
 
                 Set<File> ignore = TorrentUtil.getIgnorableFiles();
 
-                if (directoryHolder instanceof TorrentDirectoryHolder) {
-                    search(((TorrentDirectoryHolder) directoryHolder).getDirectory(), ignore, LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
-                    return;
-                }
-
-                if (directoryHolder instanceof SavedFilesDirectoryHolder) {
-                    search(((SavedFilesDirectoryHolder) directoryHolder).getDirectory(), ignore, LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
+                if (directoryHolder instanceof TorrentDirectoryHolder || directoryHolder instanceof SavedFilesDirectoryHolder) {
+                    File dir = ((FileSettingDirectoryHolder) directoryHolder).getDirectory();
+                    if (dir == null || !searchIndex(Collections.singletonList(dir), ignore)) {
+                        search(dir, ignore, LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
+                    }
                     return;
                 }
 
                 Set<File> directories = new HashSet<File>(LibrarySettings.DIRECTORIES_TO_INCLUDE.getValue());
                 directories.removeAll(LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
+                List<File> folders = new ArrayList<File>();
                 for (File dir : directories) {
                     if (dir == null) {
                         continue;
@@ -329,6 +329,12 @@ public class LibrarySearch extends JPanel {
                     if (dir.equals(LibrarySettings.USER_MUSIC_FOLDER.getValue()) && directoryHolder instanceof MediaTypeSavedFilesDirectoryHolder && !((MediaTypeSavedFilesDirectoryHolder) directoryHolder).getMediaType().equals(MediaType.getAudioMediaType())) {
                         continue;
                     } else {
+                        folders.add(dir);
+                    }
+                }
+
+                if (!searchIndex(folders, Collections.<File>emptySet())) {
+                    for (File dir : folders) {
                         search(dir, new HashSet<File>(), LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
                     }
                 }
@@ -338,6 +344,50 @@ public class LibrarySearch extends JPanel {
             }
         }
 
+        /**
+         * Searches _query in the library index, returns false if
+         * the folders are not indexed yet and need to be walked.
+         */
+        private boolean searchIndex(Collection<File> folders, Set<File> excludeFiles) {
+            List<File> files = LibraryIndex.instance().search(_query, folders);
+            if (files == null) {
+                return false;
+            }
+
+            final List<File> results = new ArrayList<File>();
+            for (File file : files) {
+                if (canceled) {
+                    return true;
+                }
+
+                if (excludeFiles.contains(file)) {
+                    continue;
+                }
+
+                // the index already matched the query
+                if (directoryHolder instanceof SavedFilesDirectoryHolder || directoryHolder.accept(file)) {
+                    results.add(file);
+                }
+            }
+
+            //Stop search if the user selected another item in the library tree
+            DirectoryHolder currentDirectoryHolder = LibraryMediator.instance().getLibraryExplorer().getSelectedDirectoryHolder();
+            if (canceled || !directoryHolder.equals(currentDirectoryHolder)) {
+                return true;
+            }
+
+            GUIMediator.safeInvokeLater(new Runnable() {
+                public void run() {
+                    LibraryMediator.instance().addFilesToLibraryTable(results);
+
+                    if (directoryHolder instanceof SavedFilesDirectoryHolder) {
+                        LibraryFilesTableMediator.instance().resetAudioPlayerFileView();
+                    }
+                }
+            });
+            return true;
+        }
+
         /**
          * It searches _query in haystackDir.
          * 
@@ -43,6 +43,7 @@ import java.awt.event.KeyEvent;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
@@ -66,54 +67,6 @@ public class LibraryUtils {
         return executor;
     }
 
-    private static void addPlaylistItem(Playlist playlist, File file) {
-        addPlaylistItem(playlist, file, playlist.isStarred(), -1);
-    }
-
-    private static void addPlaylistItem(Playlist playlist, File file, boolean starred, int index) {
-        try {
-            LibraryMediator.instance().getLibrarySearch().pushStatus(I18n.tr("Importing") + " " + file.getName());
-            TagsData mt = new TagsReader(file).parse();
-            PlaylistItem item = playlist.newItem(
-                    file.getAbsolutePath(),
-                    file.getName(),
-                    file.length(),
-                    FilenameUtils.getExtension(file.getName()),
-                    mt.getTitle(),
-                    mt.getDuration(),
-                    mt.getArtist(),
-                    mt.getAlbum(),
-                    "",// TODO: cover art path
-                    mt.getBitrate(),
-                    mt.getComment(),
-                    mt.getGenre(),
-                    mt.getTrack(),
-                    mt.getYear(),
-                    starred || playlist.isStarred());
-            List<PlaylistItem> items = playlist.getItems();
-            if (index != -1 && index < items.size()) {
-                // insert item
-                items.add(index, item);
-                // update all sort indexes from insertion point onwards
-                for (int i = index; i < items.size(); i++) {
-                    PlaylistItem curItem = items.get(i);
-                    curItem.setSortIndexByTrackNumber(i+1);
-                    curItem.save();
-                }
-            } else {
-                items.add(item);
-                item.setSortIndexByTrackNumber(items.size()); // fall back index would be it being the last track.
-                item.save(item.isStarred());
-            }
-            if (isPlaylistSelected(playlist)) {
-                // refresh UI
-                LibraryMediator.instance().getLibraryPlaylists().refreshSelection();
-            }
-        } finally {
-            LibraryMediator.instance().getLibrarySearch().revertStatus();
-        }
-    }
-
     public static String getSecondsInDDHHMMSS(int s) {
         if (s < 0) {
             s = 0;
@@ -169,7 +122,6 @@ public class LibraryUtils {
                     Thread t = new Thread(new Runnable() {
                         public void run() {
                             addToPlaylist(playlist, lines);
-                            playlist.save();
                             asyncAddToPlaylistFinalizer(playlist);
                         }
                     }, "createNewPlaylist");
@@ -218,7 +170,6 @@ public class LibraryUtils {
                             try {
                                 Set<File> ignore = TorrentUtil.getIgnorableFiles();
                                 addToPlaylist(playlist, files, starred, ignore);
-                                playlist.save();
                             } finally {
                                 asyncAddToPlaylistFinalizer(playlist);
                             }
@@ -355,8 +306,8 @@ public class LibraryUtils {
                     addToPlaylist(playlist, files, playlist.isStarred(), index, ignore);
                     if (playlist.isStarred()) {
                         playlist.refresh();
+                        playlist.save();
                     }
-                    playlist.save();
                 } finally {
                     asyncAddToPlaylistFinalizer(playlist);
                 }
@@ -458,26 +409,35 @@ public class LibraryUtils {
     }
 
     private static void addToPlaylist(Playlist playlist, List<? extends AbstractLibraryTableDataLine<?>> lines) {
+        PlaylistImport playlistImport = new PlaylistImport(playlist);
         for (int i = 0; i < lines.size() && !playlist.isDeleted(); i++) {
             AbstractLibraryTableDataLine<?> line = lines.get(i);
             if (MediaPlayer.isPlayableFile(line.getFile())) {
-                LibraryUtils.addPlaylistItem(playlist, line.getFile());
+                playlistImport.add(line.getFile(), playlist.isStarred(), -1);
             }
         }
+        playlistImport.save();
     }
 
     private static void addToPlaylist(Playlist playlist, File[] files, boolean starred, Set<File> ignore) {
         addToPlaylist(playlist, files, starred || playlist.isStarred(), -1, ignore);
     }
 
-    private static int addToPlaylist(Playlist playlist, File[] files, boolean starred, int index, Set<File> ignore) {
+    private static void addToPlaylist(Playlist playlist, File[] files, boolean starred, int index, Set<File> ignore) {
+        PlaylistImport playlistImport = new PlaylistImport(playlist);
+        addToPlaylist(playlistImport, files, starred, index, ignore);
+        playlistImport.save();
+    }
+
+    private static int addToPlaylist(PlaylistImport playlistImport, File[] files, boolean starred, int index, Set<File> ignore) {
+        Playlist playlist = playlistImport.playlist;
         int count = 0;
         for (int i = 0; i < files.length && !playlist.isDeleted(); i++) {
             if (MediaPlayer.isPlayableFile(files[i]) && !ignore.contains(files[i])) {
-                LibraryUtils.addPlaylistItem(playlist, files[i], playlist.isStarred() || starred, index + count);
+                playlistImport.add(files[i], playlist.isStarred() || starred, index + count);
                 count++;
             } else if (files[i].isDirectory()) {
-                count += addToPlaylist(playlist, files[i].listFiles(), playlist.isStarred() || starred, index + count, ignore);
+                count += addToPlaylist(playlistImport, files[i].listFiles(), playlist.isStarred() || starred, index + count, ignore);
             }
         }
         return count;
@@ -497,7 +457,6 @@ public class LibraryUtils {
                 playlistItems[i].setPlaylist(playlist);
                 items.add(index + i, playlistItems[i]);
                 playlistItems[i].setStarred(starred || playlist.isStarred());
-                playlistItems[i].save();
             }
             for (int i = 0; i < toRemove.size() && !playlist.isDeleted(); i++) {
                 int id = toRemove.get(i);
@@ -510,19 +469,25 @@ public class LibraryUtils {
             }
             // update sort indexes now that the ordering in the list is correct
             items = playlist.getItems();
-            for (int i = 0; i < items.size(); i++) {
-                PlaylistItem item = items.get(i);
-                item.setSortIndexByTrackNumber(i + 1); // set index 1-based
-                item.save();
+            List<PlaylistItem> toSave = new ArrayList<>(items.size());
+            synchronized (items) {
+                int sortIndex = 1;
+                for (PlaylistItem item : items) {
+                    item.setSortIndexByTrackNumber(sortIndex++); // set index 1-based
+                    toSave.add(item);
+                }
             }
+            playlist.saveItems(toSave, false);
         } else {
+            List<PlaylistItem> toSave = new ArrayList<>(playlistItems.length);
             for (int i = 0; i < playlistItems.length && !playlist.isDeleted(); i++) {
                 items.add(playlistItems[i]);
                 playlistItems[i].setSortIndexByTrackNumber(items.size()); // set sort index to be at the end (1-based)
                 playlistItems[i].setStarred(playlistItems[i].isStarred() || starred || playlist.isStarred());
                 playlistItems[i].setPlaylist(playlist);
-                playlistItems[i].save();
+                toSave.add(playlistItems[i]);
             }
+            playlist.saveItems(toSave, false);
         }
     }
 
@@ -730,11 +695,15 @@ public class LibraryUtils {
             }
         }
         // second, generate new indexes based list order
-        for (int i = 0; i < items.size(); i++) {
-            PlaylistItem item = items.get(i);
-            item.setSortIndexByTrackNumber(i + 1); // set index (1-based)
-            item.save();
+        List<PlaylistItem> toSave = new ArrayList<>(items.size());
+        synchronized (items) {
+            int sortIndex = 1;
+            for (PlaylistItem item : items) {
+                item.setSortIndexByTrackNumber(sortIndex++); // set index (1-based)
+                toSave.add(item);
+            }
         }
+        playlist.saveItems(toSave, false);
         // initiate UI refresh
         GUIMediator.safeInvokeLater(new Runnable() {
             public void run() {
@@ -774,4 +743,94 @@ public class LibraryUtils {
         }
         public abstract void run();
     }
+
+    /**
+     * Adds files to a playlist, the new items are saved in batches of
+     * {@link #BATCH_SIZE} and the UI is refreshed once per batch.
+     */
+    private static final class PlaylistImport {
+
+        private static final int BATCH_SIZE = 500;
+
+        final Playlist playlist;
+        private final List<PlaylistItem> pending;
+        // lowest position where an item was inserted since the last save, -1 if only appended
+        private int firstIndex;
+
+        PlaylistImport(Playlist playlist) {
+            this.playlist = playlist;
+            this.pending = new ArrayList<>(BATCH_SIZE);
+            this.firstIndex = -1;
+        }
+
+        void add(File file, boolean starred, int index) {
+            try {
+                LibraryMediator.instance().getLibrarySearch().pushStatus(I18n.tr("Importing") + " " + file.getName());
+                TagsData mt = new TagsReader(file).parse();
+                PlaylistItem item = playlist.newItem(
+                        file.getAbsolutePath(),
+                        file.getName(),
+                        file.length(),
+                        FilenameUtils.getExtension(file.getName()),
+                        mt.getTitle(),
+                        mt.getDuration(),
+                        mt.getArtist(),
+                        mt.getAlbum(),
+                        "",// TODO: cover art path
+                        mt.getBitrate(),
+                        mt.getComment(),
+                        mt.getGenre(),
+                        mt.getTrack(),
+                        mt.getYear(),
+                        starred || playlist.isStarred());
+                List<PlaylistItem> items = playlist.getItems();
+                if (index != -1 && index < items.size()) {
+                    // insert item, the sort indexes are updated when saving
+                    items.add(index, item);
+                    firstIndex = firstIndex == -1 ? index : Math.min(firstIndex, index);
+                } else {
+                    items.add(item);
+                    item.setSortIndexByTrackNumber(items.size()); // fall back index would be it being the last track.
+                }
+                pending.add(item);
+            } finally {
+                LibraryMediator.instance().getLibrarySearch().revertStatus();
+            }
+
+            if (pending.size() >= BATCH_SIZE) {
+                save();
+            }
+        }
+
+        void save() {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            List<PlaylistItem> toSave = new ArrayList<>(pending);
+            if (firstIndex != -1) {
+                // update all sort indexes from insertion point onwards
+                List<PlaylistItem> items = playlist.getItems();
+                synchronized (items) {
+                    ListIterator<PlaylistItem> it = items.listIterator(firstIndex);
+                    while (it.hasNext()) {
+                        PlaylistItem curItem = it.next();
+                        curItem.setSortIndexByTrackNumber(it.nextIndex());
+                        if (curItem.getId() != LibraryDatabase.OBJECT_NOT_SAVED_ID) {
+                            toSave.add(curItem);
+                        }
+                    }
+                }
+            }
+            playlist.saveItems(toSave, true);
+
+            pending.clear();
+            firstIndex = -1;
+
+            if (isPlaylistSelected(playlist)) {
+                // refresh UI from memory, reloading the playlist would drop the items not saved yet
+                LibraryMediator.instance().updateTableItems(playlist);
+            }
+        }
+    }
 }
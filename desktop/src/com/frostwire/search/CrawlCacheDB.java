@@ -18,6 +18,7 @@
 
 package com.frostwire.search;
 
+import java.io.File;
 import java.io.IOException;
 
 import com.frostwire.util.Logger;
@@ -51,9 +52,22 @@ public final class CrawlCacheDB {
 
     private static final String DATABASE_NAME = "crawldb";
 
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 4;
 
-    private static final String TABLE_NAME = "CacheData";
+    /**
+     * One row per distinct blob, addressed by the SHA-1 of its content.
+     */
+    public static final String DATA_TABLE = "CacheData";
+
+    /**
+     * Keys (urls, info hashes) pointing to the blob they were stored with.
+     */
+    public static final String KEYS_TABLE = "CacheKeys";
+
+    /**
+     * Keys that failed to be fetched, with the time the failure expires.
+     */
+    public static final String FAILURES_TABLE = "CacheFailures";
 
     public static final String DEFAULT_SORT_ORDER = Columns.DATE_ADDED + " DESC";
 
@@ -66,19 +80,30 @@ public final class CrawlCacheDB {
     }
 
     private CrawlCacheDB() {
-        databaseHelper = new DatabaseHelper(new Context());
+        this(new Context());
+    }
+
+    /**
+     * A database in the location given by the context, for tests and benchmarks.
+     */
+    CrawlCacheDB(Context context) {
+        databaseHelper = new DatabaseHelper(context);
     }
 
-    public Cursor query(String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+    public Cursor query(String table, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        return query(table, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    public Cursor query(String table, String[] projection, String selection, String[] selectionArgs, String sortOrder, String limit) {
         SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
 
-        qb.setTables(TABLE_NAME);
+        qb.setTables(table);
 
         // If no sort order is specified use the default
         String orderBy;
 
         if (StringUtils.isEmpty(sortOrder)) {
-            orderBy = DEFAULT_SORT_ORDER;
+            orderBy = DATA_TABLE.equals(table) ? DEFAULT_SORT_ORDER : null;
         } else {
             orderBy = sortOrder;
         }
@@ -86,12 +111,42 @@ public final class CrawlCacheDB {
         // Get the database and run the query
         SQLiteDatabase db = databaseHelper.getReadableDatabase();
 
-        Cursor c = qb.query(db, projection, selection, selectionArgs, null, null, orderBy);
+        Cursor c = qb.query(db, projection, selection, selectionArgs, null, null, orderBy, limit);
 
         return c;
     }
 
-    public long insert(ContentValues initialValues) {
+    /**
+     * Runs an aggregate query (COUNT, SUM, ...) over the whole table, without
+     * the default sort order that {@link #query} would add.
+     */
+    public Cursor aggregate(String table, String[] projection) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        SQLiteQueryBuilder.appendColumns(sql, projection);
+        sql.append("FROM ").append(table);
+
+        SQLiteDatabase db = databaseHelper.getReadableDatabase();
+
+        return db.rawQueryWithFactory(null, sql.toString(), null, table);
+    }
+
+    /**
+     * Returns the columns of the blob the key points to.
+     */
+    public Cursor queryByKey(String[] projection, String key) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < projection.length; i++) {
+            sql.append(i > 0 ? ", d." : "d.").append(projection[i]);
+        }
+        sql.append(" FROM ").append(KEYS_TABLE).append(" k JOIN ").append(DATA_TABLE).append(" d ON k.").append(Columns.HASH).append(" = d.").append(Columns.HASH);
+        sql.append(" WHERE k.").append(Columns.KEY).append(" = ?");
+
+        SQLiteDatabase db = databaseHelper.getReadableDatabase();
+
+        return db.rawQueryWithFactory(null, sql.toString(), new String[] { key }, DATA_TABLE);
+    }
+
+    public long insert(String table, ContentValues initialValues) {
         ContentValues values;
 
         if (initialValues != null) {
@@ -102,32 +157,45 @@ public final class CrawlCacheDB {
 
         Long now = Long.valueOf(System.currentTimeMillis() / 1000);
 
-        if (values.containsKey(Columns.DATE_ADDED) == false) {
-            values.put(Columns.DATE_ADDED, now);
+        if (DATA_TABLE.equals(table)) {
+            if (values.containsKey(Columns.DATE_ADDED) == false) {
+                values.put(Columns.DATE_ADDED, now);
+            }
+
+            if (values.containsKey(Columns.DATE_ACCESSED) == false) {
+                values.put(Columns.DATE_ACCESSED, now);
+            }
         }
 
         SQLiteDatabase db = databaseHelper.getWritableDatabase();
 
-        return db.insert(TABLE_NAME, "", values);
+        return db.insert(table, "", values);
     }
 
-    public int delete(String where, String[] whereArgs) {
+    public int delete(String table, String where, String[] whereArgs) {
         SQLiteDatabase db = databaseHelper.getWritableDatabase();
 
-        int count = db.delete(TABLE_NAME, where, whereArgs);
+        int count = db.delete(table, where, whereArgs);
 
         return count;
     }
 
-    public int update(ContentValues values, String where, String[] whereArgs) {
+    public int update(String table, ContentValues values, String where, String[] whereArgs) {
 
         SQLiteDatabase db = databaseHelper.getWritableDatabase();
 
-        int count = db.update(TABLE_NAME, values, where, whereArgs);
+        int count = db.update(table, values, where, whereArgs);
 
         return count;
     }
 
+    /**
+     * Closes the connection, only databases created for tests and benchmarks are closed.
+     */
+    void close() {
+        databaseHelper.getWritableDatabase().close();
+    }
+
     public static final class Columns {
 
         private Columns() {
@@ -135,8 +203,12 @@ public final class CrawlCacheDB {
 
         public static final String ID = "id";
         public static final String KEY = "key";
+        public static final String HASH = "hash";
         public static final String DATA = "data";
+        public static final String SIZE = "size";
         public static final String DATE_ADDED = "dateAdded";
+        public static final String DATE_ACCESSED = "dateAccessed";
+        public static final String EXPIRES = "expires";
     }
 
     /**
@@ -159,18 +231,56 @@ public final class CrawlCacheDB {
                 }
             }
 
+            deletePreviousVersions(db);
+
             db.execSQL("SET IGNORECASE TRUE");
 
-            db.execSQL("CREATE TABLE " + TABLE_NAME + " (" + Columns.ID + " INTEGER IDENTITY," + Columns.KEY + " VARCHAR," + Columns.DATA + " BINARY," + Columns.DATE_ADDED + " BIGINT" + ");");
+            // the hashes are lower case hex, they don't need the case insensitive compare of every index lookup
+            db.execSQL("CREATE TABLE " + DATA_TABLE + " (" + Columns.ID + " INTEGER IDENTITY," + Columns.HASH + " VARCHAR_CASESENSITIVE," + Columns.DATA + " BINARY," + Columns.SIZE + " INTEGER," + Columns.DATE_ADDED + " BIGINT," + Columns.DATE_ACCESSED + " BIGINT" + ");");
+
+            db.execSQL("CREATE INDEX idx_" + DATA_TABLE + "_" + Columns.ID + " ON " + DATA_TABLE + " (" + Columns.ID + ")");
+            db.execSQL("CREATE UNIQUE INDEX idx_" + DATA_TABLE + "_" + Columns.HASH + " ON " + DATA_TABLE + " (" + Columns.HASH + ")");
+            db.execSQL("CREATE INDEX idx_" + DATA_TABLE + "_" + Columns.DATE_ADDED + " ON " + DATA_TABLE + " (" + Columns.DATE_ADDED + ")");
+            db.execSQL("CREATE INDEX idx_" + DATA_TABLE + "_" + Columns.DATE_ACCESSED + " ON " + DATA_TABLE + " (" + Columns.DATE_ACCESSED + ")");
+
+            db.execSQL("CREATE TABLE " + KEYS_TABLE + " (" + Columns.KEY + " VARCHAR," + Columns.HASH + " VARCHAR_CASESENSITIVE" + ");");
+
+            db.execSQL("CREATE UNIQUE INDEX idx_" + KEYS_TABLE + "_" + Columns.KEY + " ON " + KEYS_TABLE + " (" + Columns.KEY + ")");
+            db.execSQL("CREATE INDEX idx_" + KEYS_TABLE + "_" + Columns.HASH + " ON " + KEYS_TABLE + " (" + Columns.HASH + ")");
 
-            db.execSQL("CREATE INDEX idx_" + TABLE_NAME + "_" + Columns.ID + " ON " + TABLE_NAME + " (" + Columns.ID + ")");
-            db.execSQL("CREATE INDEX idx_" + TABLE_NAME + "_" + Columns.KEY + " ON " + TABLE_NAME + " (" + Columns.KEY + ")");
+            db.execSQL("CREATE TABLE " + FAILURES_TABLE + " (" + Columns.KEY + " VARCHAR," + Columns.EXPIRES + " BIGINT" + ");");
+
+            db.execSQL("CREATE UNIQUE INDEX idx_" + FAILURES_TABLE + "_" + Columns.KEY + " ON " + FAILURES_TABLE + " (" + Columns.KEY + ")");
+            db.execSQL("CREATE INDEX idx_" + FAILURES_TABLE + "_" + Columns.EXPIRES + " ON " + FAILURES_TABLE + " (" + Columns.EXPIRES + ")");
+        }
+
+        /**
+         * Version 1 had no unique key and no size/access columns, version 2 stored
+         * a copy of the data per key and version 3 compared the hashes ignoring case.
+         * It's only a cache, so we just drop the old folders.
+         */
+        private void deletePreviousVersions(SQLiteDatabase db) {
+            // the database lives in <dbpath>.<version>/<name>
+            String folderpath = new File(db.getPath()).getParent();
+            String dbpath = folderpath.substring(0, folderpath.lastIndexOf('.'));
+            for (int version = 1; version < DATABASE_VERSION; version++) {
+                File folder = new File(dbpath + "." + version);
+                if (folder.exists()) {
+                    try {
+                        FileUtils.deleteDirectory(folder);
+                    } catch (IOException e) {
+                        LOG.warn("Unable to delete old crawl cache database version: " + version);
+                    }
+                }
+            }
         }
 
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
             LOG.warn("Upgrading documents database from version " + oldVersion + " to " + newVersion + ", which will destroy all old data");
-            db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
+            db.execSQL("DROP TABLE IF EXISTS " + DATA_TABLE);
+            db.execSQL("DROP TABLE IF EXISTS " + KEYS_TABLE);
+            db.execSQL("DROP TABLE IF EXISTS " + FAILURES_TABLE);
             onCreate(db);
         }
     }
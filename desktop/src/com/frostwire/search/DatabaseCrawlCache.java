@@ -1,7 +1,7 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
  * Copyright (c) 2011-2014, FrostWire(R). All rights reserved.
- 
+
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
@@ -22,21 +22,90 @@ import com.frostwire.database.Cursor;
 import com.frostwire.util.Logger;
 import com.frostwire.search.CrawlCacheDB.Columns;
 import com.limegroup.gnutella.settings.SearchSettings;
+import org.limewire.concurrent.ThreadExecutor;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.frostwire.search.CrawlCacheDB.DATA_TABLE;
+import static com.frostwire.search.CrawlCacheDB.FAILURES_TABLE;
+import static com.frostwire.search.CrawlCacheDB.KEYS_TABLE;
 
 /**
- * 
+ * Crawl cache backed by the H2 {@link CrawlCacheDB}.
+ * <p>
+ * The data is content addressed, every distinct blob is stored once under the
+ * SHA-1 of its content and the keys (the crawl url and the info hash of a torrent)
+ * are small aliases pointing to it. Fetch failures are kept in their own table
+ * with an expiration time, apart from the data.
+ * <p>
+ * The number of blobs and their total size in bytes are kept in memory, so
+ * {@link #size()} does not touch the database. They are counted in the background
+ * when the cache is created, until then {@link #size()} may report less.
+ * Once the limits configured in {@link SearchSettings} are exceeded, the least
+ * recently used blobs are evicted, and blobs older than the configured max age
+ * are purged periodically.
+ * <p>
+ * Reads don't write, the access dates are kept in memory and written by the
+ * next puts, before evicting. Access dates not written when the application
+ * exits are lost, which only makes the eviction order less precise.
+ *
  * @author gubatron
  * @author aldenml
- *
  */
 public class DatabaseCrawlCache implements CrawlCache {
 
     private static final Logger LOG = Logger.getLogger(DatabaseCrawlCache.class);
 
-    private CrawlCacheDB db;
+    // dates are stored in seconds, we don't update the access date more often than this
+    private static final long ACCESS_DATE_RESOLUTION = 60; // 1 minute
+    private static final long AGE_PURGE_INTERVAL = 3600; // 1 hour
+
+    private static final int MIN_EVICTION_BATCH = 32;
+
+    private static final int ACCESS_WRITE_BATCH = 256;
+    private static final int MAX_PENDING_ACCESSES = 4096;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final CrawlCacheDB db;
+
+    private final AtomicLong entries;
+    private final AtomicLong bytes;
+
+    // access dates not written yet, hash -> date
+    private final Map<String, Long> accessed;
+
+    private final AtomicBoolean evicting;
+    private volatile long lastAgePurge;
 
     public DatabaseCrawlCache() {
-        db = CrawlCacheDB.instance();
+        this(CrawlCacheDB.instance());
+    }
+
+    DatabaseCrawlCache(CrawlCacheDB db) {
+        this.db = db;
+
+        entries = new AtomicLong();
+        bytes = new AtomicLong();
+        accessed = new ConcurrentHashMap<>();
+        evicting = new AtomicBoolean(false);
+
+        // both scan the whole table, the writes wait for them
+        ThreadExecutor.startThread(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (DatabaseCrawlCache.this) {
+                    recount();
+                    purgeExpired(now());
+                }
+            }
+        }, "DatabaseCrawlCache-init");
     }
 
     @Override
@@ -46,14 +115,27 @@ public class DatabaseCrawlCache implements CrawlCache {
         Cursor c = null;
 
         try {
-            String[] columns = new String[] { Columns.DATA };
-            String where = Columns.KEY + " = ?";
-            String[] whereArgs = new String[] { key };
+            String[] columns = new String[] { Columns.HASH, Columns.DATA, Columns.DATE_ADDED, Columns.DATE_ACCESSED };
 
-            c = db.query(columns, where, whereArgs, null);
+            c = db.queryByKey(columns, key);
 
-            if (c.moveToNext()) {
-                data = c.getBytes(c.getColumnIndex(Columns.DATA));
+            if (c != null && c.moveToNext()) {
+                long now = now();
+                String hash = c.getString(c.getColumnIndex(Columns.HASH));
+                long dateAdded = c.getLong(c.getColumnIndex(Columns.DATE_ADDED));
+                long dateAccessed = c.getLong(c.getColumnIndex(Columns.DATE_ACCESSED));
+
+                if (now - dateAdded > maxAge()) {
+                    c.close();
+                    c = null;
+                    removeBlob(hash);
+                } else {
+                    data = c.getBytes(c.getColumnIndex(Columns.DATA));
+
+                    if (now - dateAccessed > ACCESS_DATE_RESOLUTION) {
+                        accessed(hash, now);
+                    }
+                }
             }
 
         } catch (Throwable e) {
@@ -68,15 +150,58 @@ public class DatabaseCrawlCache implements CrawlCache {
     }
 
     @Override
-    public void put(String key, byte[] data) {
+    public synchronized void put(String key, byte[] data) {
         if (SearchSettings.SMART_SEARCH_ENABLED.getValue()) {
             try {
-                ContentValues values = new ContentValues();
+                long now = now();
+                String hash = hash(data);
+                String oldHash = hashOf(key);
+                long dateAccessed = dateAccessedOf(hash);
 
-                values.put(Columns.KEY, key);
-                values.put(Columns.DATA, data);
+                if (dateAccessed >= 0) {
+                    // same content already stored, usually a torrent stored by its url and now by its info hash
+                    if (now - dateAccessed > ACCESS_DATE_RESOLUTION) {
+                        accessed(hash, now);
+                    }
+
+                    if (hash.equals(oldHash)) {
+                        return;
+                    }
+                } else {
+                    ContentValues values = new ContentValues();
+
+                    values.put(Columns.HASH, hash);
+                    values.put(Columns.DATA, data);
+                    values.put(Columns.SIZE, data.length);
+                    values.put(Columns.DATE_ADDED, now);
+                    values.put(Columns.DATE_ACCESSED, now);
+
+                    if (db.insert(DATA_TABLE, values) > 0) {
+                        entries.incrementAndGet();
+                        bytes.addAndGet(data.length);
+                    }
+                }
 
-                db.insert(values);
+                if (oldHash == null) {
+                    ContentValues values = new ContentValues();
+                    values.put(Columns.KEY, key);
+                    values.put(Columns.HASH, hash);
+
+                    db.insert(KEYS_TABLE, values);
+                } else if (!oldHash.equals(hash)) {
+                    ContentValues values = new ContentValues();
+                    values.put(Columns.HASH, hash);
+
+                    db.update(KEYS_TABLE, values, Columns.KEY + " = ?", new String[] { key });
+
+                    removeIfUnreferenced(oldHash);
+                }
+
+                if (accessed.size() >= ACCESS_WRITE_BATCH) {
+                    writeAccessed();
+                }
+
+                evict(now);
             } catch (Throwable e) {
                 LOG.warn("Error putting value to crawl cache: " + e.getMessage());
             }
@@ -84,52 +209,385 @@ public class DatabaseCrawlCache implements CrawlCache {
     }
 
     @Override
-    public void remove(String key) {
+    public synchronized void remove(String key) {
         try {
-            String where = Columns.KEY + " = ?";
-            String[] whereArgs = new String[] { key };
+            String hash = hashOf(key);
 
-            db.delete(where, whereArgs);
+            if (hash != null) {
+                db.delete(KEYS_TABLE, Columns.KEY + " = ?", new String[] { key });
+
+                removeIfUnreferenced(hash);
+            }
         } catch (Throwable e) {
             LOG.warn("Error deleting value from crawl cache: " + e.getMessage());
         }
     }
 
+    @Override
+    public synchronized void putFailure(String key, long ttl) {
+        try {
+            ContentValues values = new ContentValues();
+            values.put(Columns.EXPIRES, System.currentTimeMillis() + ttl);
+
+            if (db.update(FAILURES_TABLE, values, Columns.KEY + " = ?", new String[] { key }) <= 0) {
+                values.put(Columns.KEY, key);
+                db.insert(FAILURES_TABLE, values);
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error putting failure to crawl cache: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean hasFailure(String key) {
+        boolean failed = false;
+
+        Cursor c = null;
+
+        try {
+            String[] columns = new String[] { Columns.KEY };
+            String where = Columns.KEY + " = ? AND " + Columns.EXPIRES + " > ?";
+            String[] whereArgs = new String[] { key, String.valueOf(System.currentTimeMillis()) };
+
+            c = db.query(FAILURES_TABLE, columns, where, whereArgs, null);
+
+            failed = c != null && c.moveToNext();
+        } catch (Throwable e) {
+            LOG.warn("General failure getting cache failure with key: " + key, e);
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+
+        return failed;
+    }
+
     @Override
     public synchronized void clear() {
+        accessed.clear();
+
         try {
-            db.delete("", new String[] {});
+            db.delete(KEYS_TABLE, "", new String[] {});
+            db.delete(DATA_TABLE, "", new String[] {});
+            db.delete(FAILURES_TABLE, "", new String[] {});
         } catch (Throwable e) {
             LOG.warn("Error deleting crawl cache: " + e.getMessage());
+        } finally {
+            recount();
         }
     }
 
+    /**
+     * Number of distinct blobs, no matter how many keys point to them.
+     */
     @Override
     public long size() {
+        return entries.get();
+    }
+
+    /**
+     * Total size in bytes of the cached data.
+     *
+     * @return the number of bytes
+     */
+    public long bytes() {
+        return bytes.get();
+    }
+
+    private void accessed(String hash, long now) {
+        // if puts don't keep up, newer access dates are dropped
+        if (accessed.size() < MAX_PENDING_ACCESSES || accessed.containsKey(hash)) {
+            accessed.put(hash, now);
+        }
+    }
+
+    private void writeAccessed() {
+        for (Map.Entry<String, Long> e : accessed.entrySet()) {
+            if (accessed.remove(e.getKey(), e.getValue())) {
+                touch(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    private void touch(String hash, long now) {
+        ContentValues values = new ContentValues();
+        values.put(Columns.DATE_ACCESSED, now);
+
+        String where = Columns.HASH + " = ?";
+        String[] whereArgs = new String[] { hash };
+
+        db.update(DATA_TABLE, values, where, whereArgs);
+    }
+
+    /**
+     * Returns the hash of the blob the key points to, or null if there is no such key.
+     */
+    private String hashOf(String key) {
+        String hash = null;
+
+        Cursor c = null;
+
+        try {
+            String[] columns = new String[] { Columns.HASH };
+            String where = Columns.KEY + " = ?";
+            String[] whereArgs = new String[] { key };
+
+            c = db.query(KEYS_TABLE, columns, where, whereArgs, null);
+
+            if (c != null && c.moveToNext()) {
+                hash = c.getString(c.getColumnIndex(Columns.HASH));
+            }
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * Returns the size of the blob with the given hash, or -1 if there is no such blob.
+     */
+    private long sizeOf(String hash) {
+        long size = -1;
+
+        Cursor c = null;
+
+        try {
+            String[] columns = new String[] { Columns.SIZE };
+            String where = Columns.HASH + " = ?";
+            String[] whereArgs = new String[] { hash };
+
+            c = db.query(DATA_TABLE, columns, where, whereArgs, null);
+
+            if (c != null && c.moveToNext()) {
+                size = c.getLong(c.getColumnIndex(Columns.SIZE));
+            }
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns the access date of the blob with the given hash, or -1 if there is no such blob.
+     */
+    private long dateAccessedOf(String hash) {
+        long dateAccessed = -1;
+
+        Cursor c = null;
+
+        try {
+            String[] columns = new String[] { Columns.DATE_ACCESSED };
+            String where = Columns.HASH + " = ?";
+            String[] whereArgs = new String[] { hash };
+
+            c = db.query(DATA_TABLE, columns, where, whereArgs, null);
+
+            if (c != null && c.moveToNext()) {
+                dateAccessed = c.getLong(c.getColumnIndex(Columns.DATE_ACCESSED));
+            }
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+
+        return dateAccessed;
+    }
+
+    private void removeIfUnreferenced(String hash) {
+        Cursor c = null;
+
+        try {
+            String[] columns = new String[] { Columns.KEY };
+            String where = Columns.HASH + " = ?";
+            String[] whereArgs = new String[] { hash };
+
+            c = db.query(KEYS_TABLE, columns, where, whereArgs, null, "1");
+
+            if (c != null && c.moveToNext()) {
+                return;
+            }
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+
+        removeBlob(hash);
+    }
+
+    /**
+     * Removes the blob and all the keys pointing to it.
+     */
+    private synchronized void removeBlob(String hash) {
+        accessed.remove(hash);
+
+        long size = sizeOf(hash);
+
+        String where = Columns.HASH + " = ?";
+        String[] whereArgs = new String[] { hash };
+
+        db.delete(KEYS_TABLE, where, whereArgs);
+
+        if (size >= 0 && db.delete(DATA_TABLE, where, whereArgs) > 0) {
+            entries.decrementAndGet();
+            bytes.addAndGet(-size);
+        }
+    }
+
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            if (now - lastAgePurge > AGE_PURGE_INTERVAL) {
+                purgeExpired(now);
+            }
+
+            long maxEntries = SearchSettings.SMART_SEARCH_DATABASE_MAX_ENTRIES.getValue();
+            long maxBytes = SearchSettings.SMART_SEARCH_DATABASE_MAX_SIZE_MB.getValue() * 1024L * 1024L;
+
+            if (entries.get() > maxEntries || bytes.get() > maxBytes) {
+                // the least recently used are picked by the access dates
+                writeAccessed();
+            }
+
+            while (entries.get() > maxEntries || bytes.get() > maxBytes) {
+                // evict a bit more than needed to avoid doing it on every put
+                int batch = (int) Math.max(MIN_EVICTION_BATCH, Math.max(entries.get() - maxEntries, maxEntries / 100));
+                if (evictLeastRecentlyUsed(batch) == 0) {
+                    break;
+                }
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error evicting entries from crawl cache: " + e.getMessage());
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private int evictLeastRecentlyUsed(int batch) {
+        List<String> hashes = new ArrayList<>(batch);
         long size = 0;
 
         Cursor c = null;
 
         try {
+            String[] columns = new String[] { Columns.HASH, Columns.SIZE };
 
-            String[] columns = new String[] { Columns.ID };
-            String where = "";
-            String[] whereArgs = new String[] {};
+            c = db.query(DATA_TABLE, columns, "", new String[] {}, Columns.DATE_ACCESSED + " ASC", String.valueOf(batch));
 
-            c = db.query(columns, where, whereArgs, null);
+            if (c != null) {
+                int hashIndex = c.getColumnIndex(Columns.HASH);
+                int sizeIndex = c.getColumnIndex(Columns.SIZE);
 
+                while (c.moveToNext()) {
+                    hashes.add(c.getString(hashIndex));
+                    size += c.getLong(sizeIndex);
+                }
+            }
+        } finally {
             if (c != null) {
-                size = c.getCount();
+                c.close();
+            }
+        }
+
+        if (hashes.isEmpty()) {
+            return 0;
+        }
+
+        StringBuilder where = new StringBuilder(Columns.HASH).append(" IN (");
+        String[] whereArgs = hashes.toArray(new String[hashes.size()]);
+        for (int i = 0; i < whereArgs.length; i++) {
+            where.append(i > 0 ? ",?" : "?");
+        }
+        where.append(")");
+
+        db.delete(KEYS_TABLE, where.toString(), whereArgs);
+        int deleted = db.delete(DATA_TABLE, where.toString(), whereArgs);
+
+        for (String hash : hashes) {
+            accessed.remove(hash);
+        }
+
+        if (deleted == hashes.size()) {
+            entries.addAndGet(-deleted);
+            bytes.addAndGet(-size);
+        } else {
+            // concurrent modification, the counters are no longer reliable
+            recount();
+        }
+
+        return Math.max(deleted, 0);
+    }
+
+    private void purgeExpired(long now) {
+        lastAgePurge = now;
+
+        try {
+            String where = Columns.DATE_ADDED + " < ?";
+            String[] whereArgs = new String[] { String.valueOf(now - maxAge()) };
+
+            String keysWhere = Columns.HASH + " IN (SELECT " + Columns.HASH + " FROM " + DATA_TABLE + " WHERE " + where + ")";
+            db.delete(KEYS_TABLE, keysWhere, whereArgs);
+
+            if (db.delete(DATA_TABLE, where, whereArgs) > 0) {
+                recount();
             }
 
-        } catch (Exception e) {
-            LOG.warn("Failed to get num of shared files", e);
+            String failuresWhere = Columns.EXPIRES + " < ?";
+            String[] failuresWhereArgs = new String[] { String.valueOf(now * 1000) };
+
+            db.delete(FAILURES_TABLE, failuresWhere, failuresWhereArgs);
+        } catch (Throwable e) {
+            LOG.warn("Error purging expired entries from crawl cache: " + e.getMessage());
+        }
+    }
+
+    private void recount() {
+        Cursor c = null;
+
+        try {
+            String[] columns = new String[] { "COUNT(" + Columns.ID + ")", "SUM(" + Columns.SIZE + ")" };
+
+            c = db.aggregate(DATA_TABLE, columns);
+
+            if (c != null && c.moveToNext()) {
+                entries.set(c.getLong(1));
+                bytes.set(c.getLong(2));
+            }
+        } catch (Throwable e) {
+            LOG.warn("Failed to count the crawl cache entries", e);
         } finally {
             if (c != null) {
                 c.close();
             }
         }
+    }
+
+    private static String hash(byte[] data) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+        char[] chars = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            chars[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            chars[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+        return new String(chars);
+    }
 
-        return size;
+    private static long maxAge() {
+        return SearchSettings.SMART_SEARCH_DATABASE_MAX_AGE_DAYS.getValue() * 24L * 3600L;
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000;
     }
 }
@@ -15,6 +15,7 @@
 
 package com.limegroup.gnutella.gui.search;
 
+import com.frostwire.util.IndexedTreeList;
 import com.limegroup.gnutella.gui.tables.AbstractTableMediator;
 import com.limegroup.gnutella.gui.tables.BasicDataLineModel;
 import com.limegroup.gnutella.gui.tables.LimeTableColumn;
@@ -42,9 +43,10 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
     protected final SearchTableColumns COLUMNS = new SearchTableColumns();
 
     /**
-     * HashMap for quick access to indexes based on SHA1 info.
+     * HashMap for quick access to lines based on SHA1 info, the row
+     * of a line is found in O(log n) by the indexed list.
      */
-    private final Map<String, Integer> _indexes = new HashMap<>();
+    private final Map<String, SearchResultDataLine> _lines = new HashMap<>();
 
     private int _numResults;
 
@@ -52,7 +54,8 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
      * Constructs a new ResultPanelModel with the given MetadataModel.
      */
     ResultPanelModel() {
-        super(SearchResultDataLine.class);
+        super(SearchResultDataLine.class, new IndexedTreeList<SearchResultDataLine>());
+        setTrackChanges(true);
     }
 
     /**
@@ -100,12 +103,12 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
      * @param row  the index of the row to remove.
      */
     public void remove(int row) {
-        String sha1 = getHash(row);
-        if (sha1 != null)
-            _indexes.remove(sha1);
+        SearchResultDataLine tl = get(row);
+        String sha1 = tl != null ? tl.getHash() : null;
+        if (sha1 != null && _lines.get(sha1) == tl)
+            _lines.remove(sha1);
         super.remove(row);
         _numResults -= 1;
-        remapIndexes(row);
     }
 
     /**
@@ -122,14 +125,6 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
         return super.add(dl);
     }
 
-    /**
-     * Override to not iterate through each result.
-     */
-    public Object refresh() {
-        fireTableRowsUpdated(0, getRowCount());
-        return null;
-    }
-
     /**
      * Maintains the indexes HashMap & MetadataModel.
      */
@@ -137,10 +132,8 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
         _numResults += 1;
         String sha1 = tl.getHash();
         if (sha1 != null)
-            _indexes.put(sha1, row);
-        int addedAt = super.add(tl, row);
-        remapIndexes(addedAt + 1);
-        return addedAt;
+            _lines.put(sha1, tl);
+        return super.add(tl, row);
     }
 
     /**
@@ -154,16 +147,6 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
             return super.getRow(tl);
     }
 
-    /** 
-     * Overrides the default sort to maintain the indexes HashMap,
-     * according to the current sort column and order.
-     */
-    protected void doResort() {
-        super.doResort();
-        _indexes.clear(); // it's easier & quicker to just clear & re-input
-        remapIndexes(0);
-    }
-
     /**
      * Does nothing -- lines need no cleanup.
      */
@@ -176,40 +159,10 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
      */
     protected void simpleClear() {
         _numResults = 0;
-        _indexes.clear();
+        _lines.clear();
         super.clear();
     }
 
-    /**
-     * Remaps the indexes, starting at 'start' and going to the end of
-     * the list.  This is needed for when rows are added to the middle of
-     * the list to maintain the correct rows per objects.
-     */
-    private void remapIndexes(int start) {
-        remapIndexes(start, getRowCount());
-    }
-
-    /**
-     * Remaps the indexes, starting at 'start' and going to 'end'.
-     * This is useful for when we move a row from end to start or vice versa.
-     */
-    private void remapIndexes(int start, int end) {
-        for (int i = start; i < end; i++) {
-            String sha1 = getHash(i);
-            if (sha1 != null)
-                _indexes.put(sha1, i);
-        }
-    }
-
-    /**
-     * Gets the SHA1 URN for a row.
-     */
-    private String getHash(int idx) {
-        if (idx >= getRowCount())
-            return null;
-        return get(idx).getHash();
-    }
-
     /**
      * Compares the count between two rows.
      */
@@ -223,11 +176,11 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
      * Fast match -- lookup in the table.
      */
     private int fastMatch(String sha1) {
-        Integer idx = _indexes.get(sha1);
-        if (idx == null)
+        SearchResultDataLine tl = _lines.get(sha1);
+        if (tl == null)
             return -1;
         else
-            return idx.intValue();
+            return _list.indexOf(tl);
     }
 
     public int getTotalResults() {
@@ -15,7 +15,6 @@
 
 package com.limegroup.gnutella.gui.search;
 
-import com.frostwire.gui.filters.SearchFilter;
 import com.frostwire.gui.filters.SearchFilterFactory;
 import com.frostwire.gui.filters.SearchFilterFactoryImpl;
 import com.frostwire.gui.tabs.TransfersTab;
@@ -94,7 +93,10 @@ public final class SearchMediator {
 
     static final String CLOSE_TABS_TO_THE_RIGHT = I18n.tr("Close Tabs to the Right");
 
+    private static final long CRAWL_CACHE_MEMORY_SIZE = 16 * 1024 * 1024; // 16MB
+
     private final SearchManager manager;
+    private final SearchResultPipeline pipeline;
 
     /**
      * This instance handles the display of all search results.
@@ -131,13 +133,14 @@ public final class SearchMediator {
         });
 
         try {
-            CrawlPagedWebSearchPerformer.setCache(new DatabaseCrawlCache());
+            CrawlPagedWebSearchPerformer.setCache(new TieredCrawlCache(new DatabaseCrawlCache(), CRAWL_CACHE_MEMORY_SIZE));
         } catch (Throwable t) {
             LOG.error("could not set database crawl cache", t);
         }
 
         CrawlPagedWebSearchPerformer.setMagnetDownloader(new LibTorrentMagnetDownloader());
 
+        this.pipeline = new SearchResultPipeline();
         this.manager = SearchManager.getInstance();
         this.manager.setListener(new SearchListener() {
             @Override
@@ -155,6 +158,12 @@ public final class SearchMediator {
                 SearchMediator.this.onFinished(token);
             }
         });
+        this.manager.setTimeoutListener(new SearchTimeoutListener() {
+            @Override
+            public void onTimeout(long token, List<String> engines) {
+                LOG.info("Search deadline expired, engines timed out: " + engines);
+            }
+        });
     }
 
     /**
@@ -256,6 +265,7 @@ public final class SearchMediator {
         }
 
         manager.stop(token);
+        manager.setDeadline(token, SearchManager.SEARCH_DEADLINE);
 
         for (SearchEngine se : SearchEngine.getEngines()) {
             if (se.isEnabled()) {
@@ -493,6 +503,12 @@ public final class SearchMediator {
 
     public void shutdown() {
         manager.stop();
+
+        // writes the crawl data still queued for the database
+        CrawlCache cache = CrawlPagedWebSearchPerformer.getCache();
+        if (cache instanceof TieredCrawlCache) {
+            ((TieredCrawlCache) cache).shutdown();
+        }
     }
 
     /**
@@ -548,21 +564,7 @@ public final class SearchMediator {
 
                 final List<UISearchResult> uiResults = convertResults(filtered, se, rp.getQuery());
 
-                GUIMediator.safeInvokeAndWait(new Runnable() {
-                    public void run() {
-                        try {
-                            SearchFilter filter = getSearchFilterFactory().createFilter();
-                            for (UISearchResult sr : uiResults) {
-                                if (filter.allow(sr)) {
-                                    getSearchResultDisplayer().addQueryResult(token, sr, rp);
-                                }
-                            }
-                        } catch (Exception e) {
-                            LOG.error("Error adding search result to UI", e);
-                        }
-                    }
-
-                });
+                pipeline.add(token, rp, uiResults);
             }
         }
     }
@@ -570,8 +572,7 @@ public final class SearchMediator {
     private void onFinished(long token) {
         SearchResultMediator rp = getResultPanelForGUID(token);
         if (rp != null) {
-            updateSearchIcon(token, false);
-            rp.setToken(0); // to identify that the search is stopped (needs refactor)
+            pipeline.finish(token, rp);
         }
     }
 
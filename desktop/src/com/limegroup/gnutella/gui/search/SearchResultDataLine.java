@@ -60,6 +60,7 @@ public final class SearchResultDataLine extends AbstractDataLine<UISearchResult>
     private SearchResultNameHolder name;
     private String seeds;
     private Icon icon;
+    private boolean downloading;
     private SizeHolder size;
     private SourceHolder source;
 
@@ -78,7 +79,8 @@ public final class SearchResultDataLine extends AbstractDataLine<UISearchResult>
         addedOn = sr.getCreationTime() > 0 ? new Date(sr.getCreationTime()) : null;
         actionsHolder = new SearchResultActionsHolder(sr);
         name = new SearchResultNameHolder(sr);
-        seeds = RESULT.getSeeds() <= 0 || !(RESULT instanceof TorrentUISearchResult) ? "" : String.valueOf(RESULT.getSeeds());
+        seeds = getSeedsText();
+        downloading = isDownloading();
         icon = getIcon();
         size = new SizeHolder(getSize());
         source = new SourceHolder(RESULT);
@@ -88,7 +90,36 @@ public final class SearchResultDataLine extends AbstractDataLine<UISearchResult>
      * Updates cached data about this line.
      */
     public void update() {
+        updateChanged();
+    }
+
+    /**
+     * The type icon changes when the result starts or stops downloading,
+     * the seeds and the source when other engines find the same torrent.
+     */
+    @Override
+    public boolean updateChanged() {
+        boolean changed = false;
+
+        boolean downloading = isDownloading();
+        if (downloading != this.downloading) {
+            this.downloading = downloading;
+            icon = getIcon();
+            changed = true;
+        }
+
+        if (RESULT instanceof TorrentUISearchResult &&
+                ((TorrentUISearchResult) RESULT).getSources().size() != source.getSources().size()) {
+            seeds = getSeedsText();
+            source = new SourceHolder(RESULT);
+            changed = true;
+        }
+
+        return changed;
+    }
 
+    private String getSeedsText() {
+        return RESULT.getSeeds() <= 0 || !(RESULT instanceof TorrentUISearchResult) ? "" : String.valueOf(RESULT.getSeeds());
     }
 
     public String toString() {
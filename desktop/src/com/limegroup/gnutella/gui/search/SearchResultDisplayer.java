@@ -324,6 +324,29 @@ public final class SearchResultDisplayer implements RefreshListener {
         tabbedPane.setTitleAt(resultPanelIndex, titleOf(rp));
     }
 
+    /**
+     * Adds a batch of lines of the same search, updating the tab title once.
+     */
+    void addQueryResults(long token, List<UISearchResult> lines, SearchResultMediator rp) {
+        if (rp.isStopped()) {
+            return;
+        }
+
+        if (!rp.matches(token))
+            throw new IllegalArgumentException("guids don't match");
+
+        for (UISearchResult line : lines) {
+            rp.add(line);
+        }
+
+        int resultPanelIndex = entries.indexOf(rp);
+        if (resultPanelIndex == -1) {
+            return;
+        }
+
+        tabbedPane.setTitleAt(resultPanelIndex, titleOf(rp));
+    }
+
     void updateSearchIcon(SearchResultMediator rp, boolean active) {
         int resultPanelIndex;
         // Search for the ResultPanel to verify it exists.
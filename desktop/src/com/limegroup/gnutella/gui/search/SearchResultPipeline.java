@@ -0,0 +1,245 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.limegroup.gnutella.gui.search;
+
+import com.frostwire.gui.filters.SearchFilter;
+import com.frostwire.util.Logger;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves the search results from the search threads to the result panels.
+ * <p>
+ * The search threads only queue the converted results and never wait for
+ * the event dispatch thread. The results of a search are coalesced in one
+ * entry, so the queue holds at most one entry per running search however
+ * slow the EDT is. The first results wait {@link #DRAIN_INTERVAL}
+ * milliseconds to be drained with the ones coming after. A drain runs in
+ * the EDT for {@link #MAX_DRAIN_TIME} milliseconds, taking up to
+ * {@link #MAX_LINES_PER_ADD} results of each search in turn, and the rest
+ * is drained after the events queued meanwhile, so a burst of results is
+ * added in a few big batches instead of one EDT round trip per engine page.
+ * <p>
+ * The table work of the EDT is in {@link #createFilter()},
+ * {@link #addResults(long, SearchResultMediator, List)} and
+ * {@link #finished(long, SearchResultMediator)}, for the benchmark.
+ * <p>
+ * The end of a search is handled once all its queued results are added.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+class SearchResultPipeline {
+
+    private static final Logger LOG = Logger.getLogger(SearchResultPipeline.class);
+
+    private static final int DRAIN_INTERVAL = 100; // milliseconds
+    private static final long MAX_DRAIN_TIME = TimeUnit.MILLISECONDS.toNanos(30);
+    private static final int MAX_LINES_PER_ADD = 100;
+
+    // by token, in the order to drain them
+    private final Map<Long, Pending> queue;
+    private final AtomicBoolean scheduled;
+    private final Timer timer;
+    private final Runnable drainTask;
+
+    SearchResultPipeline() {
+        this.queue = new LinkedHashMap<>();
+        this.scheduled = new AtomicBoolean(false);
+        this.timer = new Timer(DRAIN_INTERVAL, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                drain();
+            }
+        });
+        this.timer.setRepeats(false);
+        // a restart while draining is not dropped
+        this.timer.setCoalesce(false);
+        this.drainTask = new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        };
+    }
+
+    /**
+     * Queues the results for the panel, can be called from any thread.
+     */
+    void add(long token, SearchResultMediator rp, List<UISearchResult> results) {
+        synchronized (queue) {
+            pending(token, rp).results.addAll(results);
+        }
+        schedule();
+    }
+
+    /**
+     * Marks the search as finished once all its queued results are added.
+     */
+    void finish(long token, SearchResultMediator rp) {
+        synchronized (queue) {
+            pending(token, rp).finished = true;
+        }
+        schedule();
+    }
+
+    /**
+     * The filter for a drain, called in the EDT.
+     */
+    SearchFilter createFilter() {
+        return SearchMediator.getSearchFilterFactory().createFilter();
+    }
+
+    /**
+     * Adds the results to the panel, called in the EDT.
+     */
+    void addResults(long token, SearchResultMediator rp, List<UISearchResult> lines) {
+        // the panel may be running a new search already
+        if (rp.matches(token)) {
+            SearchMediator.getSearchResultDisplayer().addQueryResults(token, lines, rp);
+        }
+    }
+
+    /**
+     * Marks the search of the panel as finished, called in the EDT.
+     */
+    void finished(long token, SearchResultMediator rp) {
+        if (rp.matches(token)) {
+            rp.updateSearchIcon(false);
+            rp.setToken(0); // to identify that the search is stopped (needs refactor)
+        }
+    }
+
+    // guarded by queue
+    private Pending pending(long token, SearchResultMediator rp) {
+        Pending p = queue.get(token);
+        if (p == null) {
+            p = new Pending(token, rp);
+            queue.put(token, p);
+        }
+        return p;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            timer.restart();
+        }
+    }
+
+    private void drain() {
+        long start = System.nanoTime();
+        SearchFilter filter = createFilter();
+        List<UISearchResult> lines = new ArrayList<>();
+
+        boolean more = true;
+        while (more && System.nanoTime() - start < MAX_DRAIN_TIME) {
+            Pending p;
+            List<UISearchResult> slice;
+            boolean finished;
+            synchronized (queue) {
+                Iterator<Pending> it = queue.values().iterator();
+                if (!it.hasNext()) {
+                    more = false;
+                    break;
+                }
+                p = it.next();
+                it.remove();
+
+                List<UISearchResult> head = p.results.subList(0, Math.min(p.results.size(), MAX_LINES_PER_ADD));
+                slice = new ArrayList<>(head);
+                head.clear();
+
+                finished = p.finished && p.results.isEmpty();
+                if (!p.results.isEmpty()) {
+                    // the other searches go first
+                    queue.put(p.token, p);
+                }
+                more = !queue.isEmpty();
+            }
+
+            for (UISearchResult sr : slice) {
+                if (filter.allow(sr)) {
+                    lines.add(sr);
+                }
+            }
+            addLines(p, lines);
+            if (finished) {
+                finished(p);
+            }
+        }
+
+        if (more) {
+            // the rest goes after the events queued meanwhile, like painting
+            SwingUtilities.invokeLater(drainTask);
+        } else {
+            scheduled.set(false);
+            // results queued after the last check need another drain
+            synchronized (queue) {
+                more = !queue.isEmpty();
+            }
+            if (more) {
+                schedule();
+            }
+        }
+    }
+
+    private void addLines(Pending p, List<UISearchResult> lines) {
+        try {
+            if (!lines.isEmpty()) {
+                addResults(p.token, p.rp, lines);
+            }
+        } catch (Exception e) {
+            LOG.error("Error adding search results to UI", e);
+        } finally {
+            lines.clear();
+        }
+    }
+
+    private void finished(Pending p) {
+        try {
+            finished(p.token, p.rp);
+        } catch (Exception e) {
+            LOG.error("Error finishing search in UI", e);
+        }
+    }
+
+    private static final class Pending {
+
+        final long token;
+        final SearchResultMediator rp;
+        final List<UISearchResult> results;
+        boolean finished;
+
+        Pending(long token, SearchResultMediator rp) {
+            this.token = token;
+            this.rp = rp;
+            this.results = new ArrayList<>();
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.limegroup.gnutella.gui.search;
 
 import com.limegroup.gnutella.gui.tables.AbstractTableMediator;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Holds the data for a search result's Source.
  * @author gubatron
@@ -13,11 +16,15 @@ public class SourceHolder implements Comparable<SourceHolder> {
     private final String sourceNameHTML;
     private final String sourceName;
     private final String sourceURL;
+    private final List<String> sources;
     
     public SourceHolder(UISearchResult uiSearchResult) {
         this.uiSearchResult = uiSearchResult;
         this.sourceName = uiSearchResult.getSource();
-        this.sourceNameHTML = "<html><div width=\"1000000px\"><nobr><a href=\"#\">" + sourceName + "</a></nobr></div></html>";
+        this.sources = uiSearchResult instanceof TorrentUISearchResult ? ((TorrentUISearchResult) uiSearchResult).getSources() : Collections.singletonList(sourceName);
+        // the same torrent found by other engines
+        String others = sources.size() > 1 ? " +" + (sources.size() - 1) : "";
+        this.sourceNameHTML = "<html><div width=\"1000000px\"><nobr><a href=\"#\">" + sourceName + "</a>" + others + "</nobr></div></html>";
         this.sourceURL  = uiSearchResult.getSearchResult().getDetailsUrl();
     }
 
@@ -34,6 +41,13 @@ public class SourceHolder implements Comparable<SourceHolder> {
         return sourceNameHTML;
     }
     
+    /**
+     * Names of all the engines that found the result, this source first.
+     */
+    public List<String> getSources() {
+        return sources;
+    }
+
     public String getSourceURL() {
         return sourceURL;
     }
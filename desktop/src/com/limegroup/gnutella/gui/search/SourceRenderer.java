@@ -23,6 +23,7 @@ import com.frostwire.uxstats.UXAction;
 import com.frostwire.uxstats.UXStats;
 import com.limegroup.gnutella.gui.GUIMediator;
 import com.limegroup.gnutella.gui.tables.DefaultTableBevelledCellRenderer;
+import org.limewire.util.StringUtils;
 
 import javax.swing.*;
 import javax.swing.table.TableCellRenderer;
@@ -30,6 +31,7 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -120,6 +122,8 @@ public class SourceRenderer extends DefaultTableBevelledCellRenderer implements
     private void updateLinkLabel(JTable table) {
         if (sourceHolder != null) {
             setText(sourceHolder.getSourceNameHTML());
+            List<String> sources = sourceHolder.getSources();
+            setToolTipText(sources.size() > 1 ? StringUtils.explode(sources, ", ") : null);
             syncFont(table, this);
         }
     }
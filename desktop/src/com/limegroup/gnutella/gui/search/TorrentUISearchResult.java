@@ -18,6 +18,7 @@
 
 package com.limegroup.gnutella.gui.search;
 
+import com.frostwire.search.torrent.AbstractTorrentSearchResult;
 import com.frostwire.search.torrent.TorrentCrawledSearchResult;
 import com.frostwire.search.torrent.TorrentSearchResult;
 import com.frostwire.uxstats.UXAction;
@@ -28,6 +29,8 @@ import com.limegroup.gnutella.gui.util.PopupUtils;
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * 
@@ -74,8 +77,18 @@ public class TorrentUISearchResult extends AbstractUISearchResult {
         return popupMenu;
     }
 
+    /**
+     * The most seeds reported by the engines that found this torrent.
+     */
     @Override
     public int getSeeds() {
-        return sr.getSeeds();
+        return sr instanceof AbstractTorrentSearchResult ? ((AbstractTorrentSearchResult) sr).getMaxSeeds() : sr.getSeeds();
+    }
+
+    /**
+     * Names of the engines that found this torrent, the source of this result first.
+     */
+    public List<String> getSources() {
+        return sr instanceof AbstractTorrentSearchResult ? ((AbstractTorrentSearchResult) sr).getSources() : Collections.singletonList(sr.getSource());
     }
 }
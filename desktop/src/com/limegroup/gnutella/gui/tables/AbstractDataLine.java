@@ -63,6 +63,16 @@ public abstract class AbstractDataLine<T> implements DataLine<T> {
      */
     public void update() { ; }
 
+    /**
+     * Updates and assumes everything changed, lines that know
+     * better should override this.
+     * @implements DataLine interface
+     */
+    public boolean updateChanged() {
+        update();
+        return true;
+    }
+
     /**
      * By default, DataLines will have no tooltip.
      */
@@ -41,7 +41,7 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
     /**
      * Internally used list object storing the DataLines.
      */
-    protected List<T> _list = new ArrayList<T>();
+    protected final List<T> _list;
 
     private static final int ASCENDING = 1;
     private static final int DESCENDING = -1;
@@ -75,15 +75,53 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
      */
     protected boolean _isSorted = false;
 
+    /**
+     * Resorts with up to this many lines out of place are done
+     * by moving those lines, instead of sorting the whole list.
+     */
+    private static final int MAX_INCREMENTAL_RESORT = 16;
+
+    /**
+     * Variable for whether or not refresh only updates the rows
+     * whose DataLines report a change.
+     */
+    private boolean _trackChanges = false;
+
+    /**
+     * Lines that a change-tracking refresh found out of place
+     * in the current sort.
+     */
+    private final List<T> _unsortedLines = new ArrayList<T>();
+
     /*
      * Constructor -- creates the model, tying it to
      * a specific DataLine class.
      */
     public BasicDataLineModel(Class<? extends T> dataLineClass) {
+        this(dataLineClass, new ArrayList<T>());
+    }
+
+    /*
+     * Constructor -- creates the model storing the DataLines in the
+     * given list, for models that need a different list implementation.
+     */
+    protected BasicDataLineModel(Class<? extends T> dataLineClass, List<T> list) {
+        _list = list;
         _dataLineClass = dataLineClass;
         _internalDataLine = createDataLine();
     }
 
+    /**
+     * Turns on the change-tracking refresh, where the DataLines tell
+     * if they changed and only the changed rows are redrawn.
+     * A table sorted by a dynamic column is then only resorted when
+     * a change left a line out of place.
+     */
+    protected void setTrackChanges(boolean trackChanges) {
+        _trackChanges = trackChanges;
+        _unsortedLines.clear();
+    }
+
     //Implements DataLineModel interface
     public String[] getToolTipArray(int row, int col) {
         return _list.get(row).getToolTipArray(col);
@@ -122,6 +160,7 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
             _activeColumn = col;
         }
         _isSorted = true;
+        _unsortedLines.clear();
         resort();
     }
     
@@ -139,29 +178,69 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
     public void unsort() {
         _isSorted = false;
         _activeColumn = -1;
+        _unsortedLines.clear();
     }
     
     
     /**
      * Implementation of resorting.
+     * If only a few lines are known to be out of place, they
+     * are moved to their sorted position instead.
      */
     protected void doResort() {
-        Collections.sort(_list, this);
+        if (_unsortedLines.isEmpty() ||
+            _unsortedLines.size() > MAX_INCREMENTAL_RESORT ||
+            !moveUnsortedLines()) {
+            Collections.sort(_list, this);
+        }
+        _unsortedLines.clear();
+    }
+
+    /**
+     * Takes out the lines found out of place and inserts them back
+     * in their sorted position. Returns false, leaving the lines at
+     * the end, if the rest of the list is not sorted.
+     */
+    private boolean moveUnsortedLines() {
+        List<T> moved = new ArrayList<T>(_unsortedLines.size());
+        for (T line : _unsortedLines) {
+            int row = _list.indexOf(line);
+            // it may have been removed since
+            if (row != -1) {
+                _list.remove(row);
+                moved.add(line);
+            }
+        }
+
+        for (int i = 1; i < _list.size(); i++) {
+            if (compare(_list.get(i - 1), _list.get(i)) > 0) {
+                _list.addAll(moved);
+                return false;
+            }
+        }
+
+        for (T line : moved) {
+            _list.add(getSortedPosition(line), line);
+        }
+        return true;
     }
 
     /*
      * Determines whether or not the active column is dynamic
      * and needs resorting.
+     * With change tracking, it's only when a line is out of place.
      */
     public boolean needsResort() {
         return _isSorted &&
-               _internalDataLine.isDynamic(_activeColumn);
+               _internalDataLine.isDynamic(_activeColumn) &&
+               (!_trackChanges || !_unsortedLines.isEmpty());
     }
 
     //Implements DataLineModel interface
     public void clear() {
         cleanup();
         _list.clear();
+        _unsortedLines.clear();
         fireTableDataChanged();
     }
     
@@ -182,6 +261,10 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
      * @return null
      */
     public Object refresh() {
+        if (_trackChanges) {
+            refreshChanged();
+            return null;
+        }
         int end = _list.size();
         for (int i = 0; i < end; i++)
             _list.get(i).update();
@@ -189,12 +272,62 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
         return null;
     }
 
+    /**
+     * Change-tracking refresh, fires an update for each run of
+     * consecutive changed rows and looks for lines that the
+     * changes left out of place.
+     */
+    private void refreshChanged() {
+        boolean checkOrder = _isSorted && _internalDataLine.isDynamic(_activeColumn);
+        int end = _list.size();
+        int first = -1;
+        for (int i = 0; i < end; i++) {
+            T line = _list.get(i);
+            if (line.updateChanged()) {
+                if (first == -1)
+                    first = i;
+                if (checkOrder)
+                    checkOrder(i - 1, line);
+            } else if (first != -1) {
+                // the previous line is the last changed one of the run
+                if (checkOrder)
+                    checkOrder(i - 1, _list.get(i - 1));
+                fireTableRowsUpdated(first, i - 1);
+                first = -1;
+            }
+        }
+        if (first != -1)
+            fireTableRowsUpdated(first, end - 1);
+    }
+
+    /**
+     * Checks the lines at row and row + 1, once both are updated,
+     * and remembers the changed one if they are not sorted.
+     */
+    private void checkOrder(int row, T changed) {
+        if (row < 0 || row + 1 >= _list.size())
+            return;
+        if (compare(_list.get(row), _list.get(row + 1)) > 0 &&
+            !_unsortedLines.contains(changed))
+            _unsortedLines.add(changed);
+    }
+
     /**
      * Update a specific DataLine
      * The DataLine updated is the one that was initialized by Object o
      */
     public int update(E o) {
         int row = getRow(o);
+        if (_trackChanges) {
+            if (_list.get(row).updateChanged()) {
+                fireTableRowsUpdated(row, row);
+                if (_isSorted && _internalDataLine.isDynamic(_activeColumn)) {
+                    checkOrder(row - 1, _list.get(row));
+                    checkOrder(row, _list.get(row));
+                }
+            }
+            return row;
+        }
         _list.get(row).update();
         fireTableRowsUpdated(row, row);
         return row;
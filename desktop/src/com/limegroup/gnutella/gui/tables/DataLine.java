@@ -70,6 +70,12 @@ public interface DataLine<E> {
      */
     public void update();
 
+    /**
+     * Update the cached info in the DataLine and tell if any of the
+     * values it shows changed since the last update.
+     */
+    public boolean updateChanged();
+
     /**
      * Gets the tooltip for this line
      */
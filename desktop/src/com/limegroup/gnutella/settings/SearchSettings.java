@@ -312,6 +312,19 @@ public final class SearchSettings extends LimeProps {
 	public static final StringSetting LAST_MEDIA_TYPE_USED = FACTORY.createStringSetting("LAST_MEDIA_TYPE_USED", MediaType.getAudioMediaType().getMimeType());
 	
 	public static final BooleanSetting SMART_SEARCH_ENABLED = FACTORY.createBooleanSetting("SMART_SEARCH_ENABLED", true);
+
+	/**
+	 * Upper bounds of the smart search (crawl cache) database, least recently
+	 * used entries are evicted once the size or the number of entries is exceeded.
+	 */
+	public static final IntSetting SMART_SEARCH_DATABASE_MAX_SIZE_MB = FACTORY.createIntSetting("SMART_SEARCH_DATABASE_MAX_SIZE_MB", 256);
+
+	public static final IntSetting SMART_SEARCH_DATABASE_MAX_ENTRIES = FACTORY.createIntSetting("SMART_SEARCH_DATABASE_MAX_ENTRIES", 100000);
+
+	/**
+	 * Entries older than this number of days are dropped from the smart search database.
+	 */
+	public static final IntSetting SMART_SEARCH_DATABASE_MAX_AGE_DAYS = FACTORY.createIntSetting("SMART_SEARCH_DATABASE_MAX_AGE_DAYS", 30);
 	
     public static final BooleanSetting SHOW_DETAIL_PAGE_AFTER_DOWNLOAD_START = FACTORY.createBooleanSetting("SHOW_DETAIL_PAGE_AFTER_DOWNLOAD_START", false);
 }
@@ -0,0 +1,168 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.library;
+
+import com.limegroup.gnutella.settings.LibrarySettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.limewire.util.CommonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class LibraryIndexTest {
+
+    private static final long TIMEOUT = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Set<File> included;
+    private Set<File> excluded;
+
+    private File root;
+    private LibraryIndex index;
+
+    @BeforeClass
+    public static void setUpSettings() throws IOException {
+        try {
+            File settings = new File(System.getProperty("java.io.tmpdir"), "frostwire-test-settings");
+            settings.mkdirs();
+            CommonUtils.setUserSettingsDir(settings);
+        } catch (IllegalStateException e) {
+            // already set by another test
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        included = LibrarySettings.DIRECTORIES_TO_INCLUDE.getValue();
+        excluded = LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue();
+
+        root = folder.newFolder("library");
+        File music = new File(root, "Music");
+        music.mkdir();
+        new File(music, "Beyonc\u00e9 - Halo.mp3").createNewFile();
+        new File(music, "Adele - Hello.mp3").createNewFile();
+        File docs = new File(root, "Docs");
+        docs.mkdir();
+        new File(docs, "halo report.pdf").createNewFile();
+
+        LibrarySettings.DIRECTORIES_TO_INCLUDE.setValue(Collections.singleton(root));
+        LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.setValue(Collections.<File>emptySet());
+
+        index = new LibraryIndex(new File(folder.getRoot(), "library.idx"));
+        index.start();
+        awaitSearch("halo", 2);
+    }
+
+    @After
+    public void tearDown() {
+        index.stop();
+        LibrarySettings.DIRECTORIES_TO_INCLUDE.setValue(included);
+        LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.setValue(excluded);
+    }
+
+    @Test
+    public void testSearch() {
+        assertEquals(Collections.singletonList(new File(root, "Music/Beyonc\u00e9 - Halo.mp3")), search("beyonce"));
+        assertEquals(2, search("halo").size());
+        assertEquals(1, search("halo music").size());
+        assertEquals(2, search("mp3").size());
+        assertEquals(1, search("music" + File.separator + "bey").size());
+        assertEquals(2, search("library" + File.separator + "music" + File.separator).size());
+        assertEquals(1, search("- hello").size());
+        assertEquals(0, search("halo hello").size());
+
+        File docs = new File(root, "Docs");
+        assertEquals(Collections.singletonList(new File(docs, "halo report.pdf")), index.search("halo", Collections.singleton(docs)));
+        assertNull(index.search("halo", Collections.singleton(folder.getRoot())));
+    }
+
+    @Test
+    public void testCreate() throws IOException, InterruptedException {
+        new File(root, "Music/Halo (live).mp3").createNewFile();
+        awaitSearch("halo", 3);
+
+        File album = new File(root, "Music/Album");
+        File disc = new File(album, "Disc 1");
+        assertTrue(disc.mkdirs());
+        new File(disc, "01 Halo.flac").createNewFile();
+        awaitSearch("halo", 4);
+        assertEquals(1, search("disc 1 flac").size());
+
+        // the folders created with the new folder are watched too
+        new File(disc, "02 Halo.flac").createNewFile();
+        awaitSearch("halo", 5);
+    }
+
+    @Test
+    public void testDelete() throws InterruptedException {
+        assertTrue(new File(root, "Music/Beyonc\u00e9 - Halo.mp3").delete());
+        awaitSearch("halo", 1);
+
+        File docs = new File(root, "Docs");
+        assertTrue(new File(docs, "halo report.pdf").delete());
+        assertTrue(docs.delete());
+        awaitSearch("halo", 0);
+        assertEquals(0, search("docs").size());
+        assertEquals(1, search("mp3").size());
+    }
+
+    @Test
+    public void testRename() throws InterruptedException {
+        assertTrue(new File(root, "Docs/halo report.pdf").renameTo(new File(root, "Docs/summary.pdf")));
+        awaitSearch("summary", 1);
+        assertEquals(1, search("halo").size());
+
+        assertTrue(new File(root, "Music").renameTo(new File(root, "Songs")));
+        awaitSearch("songs", 2);
+        assertEquals(0, search("music").size());
+        assertEquals(Collections.singletonList(new File(root, "Songs/Adele - Hello.mp3")), search("hello"));
+    }
+
+    private List<File> search(String query) {
+        return index.search(query, Collections.singleton(root));
+    }
+
+    private List<File> awaitSearch(String query, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        List<File> results = search(query);
+        while ((results == null || results.size() != expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            results = search(query);
+        }
+        assertNotNull(results);
+        assertEquals(expected, results.size());
+        return results;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.content.ContentValues;
+import com.frostwire.database.Cursor;
+import com.frostwire.database.sqlite.SQLiteDatabase;
+import com.frostwire.database.sqlite.SQLiteQueryBuilder;
+import com.limegroup.gnutella.settings.SearchSettings;
+import org.apache.commons.io.FileUtils;
+import org.limewire.util.CommonUtils;
+
+import java.io.File;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Random;
+
+/**
+ * Get and put latency of {@link DatabaseCrawlCache} against the version 1
+ * table it replaced (one row per key, a non unique key index and a size()
+ * that counts the rows), at the table sizes given as arguments.
+ * <p>
+ * Not a unit test, run it by hand with the test classpath:
+ * <pre>
+ * java com.frostwire.search.DatabaseCrawlCacheBenchmark 10000 100000 1000000
+ * </pre>
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class DatabaseCrawlCacheBenchmark {
+
+    private static final int OPS = 2000;
+    private static final int BLOB_SIZE = 1024;
+
+    public static void main(String[] args) throws Exception {
+        File root = new File(System.getProperty("java.io.tmpdir"), "crawl-cache-benchmark");
+        FileUtils.deleteDirectory(root);
+        File settings = new File(root, "settings");
+        settings.mkdirs();
+        CommonUtils.setUserSettingsDir(settings);
+
+        SearchSettings.SMART_SEARCH_DATABASE_MAX_ENTRIES.setValue(Integer.MAX_VALUE);
+        SearchSettings.SMART_SEARCH_DATABASE_MAX_SIZE_MB.setValue(Integer.MAX_VALUE / 1024 / 1024);
+
+        if (args.length == 0) {
+            args = new String[]{"10000", "100000", "1000000"};
+        }
+
+        for (String arg : args) {
+            int n = Integer.parseInt(arg);
+            run(new OldTable(new File(root, "old-" + n)), n);
+            run(new CurrentCache(new File(root, "current-" + n)), n);
+        }
+
+        FileUtils.deleteDirectory(root);
+    }
+
+    private static void run(Store store, int n) throws Exception {
+        for (int i = 0; i < n; i++) {
+            store.put(key(i), data(i));
+        }
+
+        long start = System.nanoTime();
+        store.reopen();
+        long size = store.size();
+        long openTime = System.nanoTime() - start;
+
+        if (size != n) {
+            throw new IllegalStateException("Wrong size: " + size);
+        }
+
+        Random random = new Random(n);
+
+        // every measure runs once before, with other keys, to warm up the caches and the jit
+        long getTime = 0;
+        long missTime = 0;
+        long putTime = 0;
+        long aliasTime = 0;
+
+        for (int round = 0; round < 2; round++) {
+            int offset = n + round * OPS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < OPS; i++) {
+                int k = random.nextInt(n);
+                if (store.get(key(k)) == null) {
+                    throw new IllegalStateException("Missing key: " + key(k));
+                }
+            }
+            getTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < OPS; i++) {
+                if (store.get(key(offset + i)) != null) {
+                    throw new IllegalStateException("Unexpected key: " + key(offset + i));
+                }
+            }
+            missTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < OPS; i++) {
+                store.put(key(offset + i), data(offset + i));
+            }
+            putTime = System.nanoTime() - start;
+
+            // a crawled torrent is stored under its url and then under its info hash
+            start = System.nanoTime();
+            for (int i = 0; i < OPS; i++) {
+                store.put(alias(offset + i), data(offset + i));
+            }
+            aliasTime = System.nanoTime() - start;
+        }
+
+        start = System.nanoTime();
+        store.size();
+        long sizeTime = System.nanoTime() - start;
+
+        store.close();
+
+        System.out.printf("%-8s %8d entries: get %6.1f us, miss %5.1f us, put %6.1f us, put same data %6.1f us, size() %9.3f ms, open and count %8.1f ms%n",
+                store.name(), n, us(getTime), us(missTime), us(putTime), us(aliasTime), sizeTime / 1e6, openTime / 1e6);
+    }
+
+    private static double us(long nanos) {
+        return nanos / 1e3 / OPS;
+    }
+
+    private static String key(int i) {
+        return "http://www.example.com/torrent/" + i + "/details";
+    }
+
+    private static String alias(int i) {
+        return Integer.toHexString(i) + "0123456789abcdef0123456789abcdef";
+    }
+
+    private static byte[] data(int i) {
+        byte[] arr = new byte[BLOB_SIZE];
+        new Random(i).nextBytes(arr);
+        return arr;
+    }
+
+    private interface Store {
+
+        String name();
+
+        byte[] get(String key) throws Exception;
+
+        void put(String key, byte[] data) throws Exception;
+
+        long size() throws Exception;
+
+        void reopen() throws Exception;
+
+        void close() throws Exception;
+    }
+
+    private static final class CurrentCache implements Store {
+
+        private final File dir;
+        private CrawlCacheDB db;
+        private DatabaseCrawlCache cache;
+
+        CurrentCache(File dir) {
+            this.dir = dir;
+            reopen();
+        }
+
+        @Override
+        public String name() {
+            return "current";
+        }
+
+        @Override
+        public byte[] get(String key) {
+            return cache.get(key);
+        }
+
+        @Override
+        public void put(String key, byte[] data) {
+            cache.put(key, data);
+        }
+
+        @Override
+        public long size() {
+            return cache.size();
+        }
+
+        @Override
+        public void reopen() {
+            close();
+            db = DatabaseCrawlCacheTest.newDatabase(dir);
+            long entries = cache != null ? cache.size() : 0;
+            cache = new DatabaseCrawlCache(db);
+            // wait for the background count
+            while (cache.size() < entries) {
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (db != null) {
+                db.close();
+            }
+        }
+    }
+
+    /**
+     * The table and queries of the crawl cache before the entries were bounded.
+     */
+    private static final class OldTable implements Store {
+
+        private static final String TABLE = "CacheData";
+
+        private final File dir;
+        private SQLiteDatabase db;
+
+        OldTable(File dir) throws SQLException {
+            this.dir = dir;
+            db = open();
+            db.execSQL("SET IGNORECASE TRUE");
+            db.execSQL("CREATE TABLE " + TABLE + " (id INTEGER IDENTITY, key VARCHAR, data BINARY, dateAdded BIGINT)");
+            db.execSQL("CREATE INDEX idx_" + TABLE + "_id ON " + TABLE + " (id)");
+            db.execSQL("CREATE INDEX idx_" + TABLE + "_key ON " + TABLE + " (key)");
+        }
+
+        @Override
+        public String name() {
+            return "old";
+        }
+
+        @Override
+        public byte[] get(String key) {
+            Cursor c = query(new String[] { "data" }, "key = ?", new String[] { key });
+            try {
+                return c.moveToNext() ? c.getBytes(c.getColumnIndex("data")) : null;
+            } finally {
+                c.close();
+            }
+        }
+
+        @Override
+        public void put(String key, byte[] data) {
+            ContentValues values = new ContentValues();
+            values.put("key", key);
+            values.put("data", data);
+            values.put("dateAdded", System.currentTimeMillis() / 1000);
+            db.insert(TABLE, "", values);
+        }
+
+        @Override
+        public long size() {
+            Cursor c = query(new String[] { "id" }, "", new String[] {});
+            try {
+                return c.getCount();
+            } finally {
+                c.close();
+            }
+        }
+
+        @Override
+        public void reopen() throws SQLException {
+            db.close();
+            db = open();
+        }
+
+        @Override
+        public void close() {
+            db.close();
+        }
+
+        private Cursor query(String[] columns, String where, String[] whereArgs) {
+            SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
+            qb.setTables(TABLE);
+            return qb.query(db, columns, where, whereArgs, null, null, "dateAdded DESC", null);
+        }
+
+        private SQLiteDatabase open() throws SQLException {
+            String path = new File(dir, "crawldb").getAbsolutePath();
+            return new SQLiteDatabase(path, DriverManager.getConnection("jdbc:h2:" + path + ";CACHE_SIZE=4096;CACHE_TYPE=SOFT_TQ", "SA", ""));
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.content.Context;
+import com.limegroup.gnutella.settings.SearchSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.limewire.util.CommonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class DatabaseCrawlCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CrawlCacheDB db;
+
+    @BeforeClass
+    public static void setUpSettings() throws IOException {
+        try {
+            File settings = new File(System.getProperty("java.io.tmpdir"), "frostwire-test-settings");
+            settings.mkdirs();
+            CommonUtils.setUserSettingsDir(settings);
+        } catch (IllegalStateException e) {
+            // already set by another test
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        db = newDatabase(folder.newFolder("crawldb"));
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testPutGet() {
+        DatabaseCrawlCache cache = new DatabaseCrawlCache(db);
+
+        cache.put("a", data(1));
+        cache.put("b", data(2));
+        cache.put("c", data(1)); // same content as a
+
+        assertArrayEquals(data(1), cache.get("a"));
+        assertArrayEquals(data(2), cache.get("b"));
+        assertArrayEquals(data(1), cache.get("c"));
+        assertNull(cache.get("d"));
+        assertEquals(2, cache.size());
+        assertEquals(data(1).length + data(2).length, cache.bytes());
+
+        cache.put("a", data(3));
+        assertArrayEquals(data(3), cache.get("a"));
+        assertArrayEquals(data(1), cache.get("c"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testRemove() {
+        DatabaseCrawlCache cache = new DatabaseCrawlCache(db);
+
+        cache.put("a", data(1));
+        cache.put("b", data(1));
+        cache.remove("a");
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.size());
+
+        cache.remove("b");
+        assertNull(cache.get("b"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test
+    public void testEviction() {
+        int maxEntries = SearchSettings.SMART_SEARCH_DATABASE_MAX_ENTRIES.getValue();
+        SearchSettings.SMART_SEARCH_DATABASE_MAX_ENTRIES.setValue(100);
+        try {
+            DatabaseCrawlCache cache = new DatabaseCrawlCache(db);
+            for (int i = 0; i < 300; i++) {
+                cache.put("k" + i, data(i + 1));
+            }
+
+            assertTrue(cache.size() <= 100);
+            assertNotNull(cache.get("k299"));
+        } finally {
+            SearchSettings.SMART_SEARCH_DATABASE_MAX_ENTRIES.setValue(maxEntries);
+        }
+    }
+
+    @Test
+    public void testCountedInBackground() throws InterruptedException {
+        DatabaseCrawlCache cache = new DatabaseCrawlCache(db);
+        for (int i = 0; i < 10; i++) {
+            cache.put("k" + i, data(i + 1));
+        }
+
+        cache = new DatabaseCrawlCache(db);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.size() < 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void testConcurrentFailures() throws InterruptedException {
+        final DatabaseCrawlCache cache = new DatabaseCrawlCache(db);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(4);
+
+        for (int t = 0; t < 4; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 100; i++) {
+                            cache.putFailure("f" + i, 60000);
+                        }
+                    } catch (InterruptedException e) {
+                        // ignore
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(cache.hasFailure("f" + i));
+        }
+        assertFalse(cache.hasFailure("f100"));
+    }
+
+    static CrawlCacheDB newDatabase(final File dir) {
+        return new CrawlCacheDB(new Context() {
+            @Override
+            public File getDatabasePath(String name) {
+                return new File(dir, name);
+            }
+        });
+    }
+
+    private static byte[] data(int n) {
+        byte[] arr = new byte[100 + n % 100];
+        new Random(n).nextBytes(arr);
+        return arr;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.limegroup.gnutella.gui.search;
+
+import com.frostwire.gui.filters.SearchFilter;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableRowSorter;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Search thread time and EDT frame time when 5,000 results arrive from
+ * several engines at once, adding them one EDT round trip per engine page,
+ * as {@link SearchMediator} did, against adding them through
+ * {@link SearchResultPipeline}.
+ * <p>
+ * The rows go to a sorted table model, and a 16 ms Swing timer measures
+ * the frames, the time between its ticks.
+ * <p>
+ * Not a unit test, run it by hand with the test classpath:
+ * <pre>
+ * java -Djava.awt.headless=true com.limegroup.gnutella.gui.search.SearchResultPipelineBenchmark 5000
+ * </pre>
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SearchResultPipelineBenchmark {
+
+    private static final int ENGINES = 10;
+    private static final int PAGE_SIZE = 25;
+    private static final int FRAME = 16; // milliseconds
+
+    public static void main(String[] args) throws Exception {
+        int results = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+
+        // warm up the jit with the same work
+        run(new InvokeAndWait(), results);
+        run(new Pipeline(), results);
+
+        report("invokeAndWait", run(new InvokeAndWait(), results));
+        report("pipeline", run(new Pipeline(), results));
+    }
+
+    private static long[] run(final Delivery delivery, final int results) throws Exception {
+        final Table table = new Table();
+        delivery.table = table;
+
+        final List<Long> frames = Collections.synchronizedList(new ArrayList<Long>());
+        final Timer probe = new Timer(FRAME, new ActionListener() {
+            private long last = System.nanoTime();
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                long now = System.nanoTime();
+                frames.add(now - last);
+                last = now;
+            }
+        });
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                probe.start();
+            }
+        });
+
+        long start = System.nanoTime();
+
+        final CountDownLatch searched = new CountDownLatch(ENGINES);
+        for (int e = 0; e < ENGINES; e++) {
+            final int engine = e;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        int count = results / ENGINES;
+                        for (int i = 0; i < count; i += PAGE_SIZE) {
+                            List<UISearchResult> page = new ArrayList<>();
+                            for (int j = i; j < Math.min(i + PAGE_SIZE, count); j++) {
+                                page.add(result("engine " + engine + " result " + j));
+                            }
+                            delivery.deliver(page);
+                        }
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                    } finally {
+                        searched.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        searched.await();
+        long searchTime = System.nanoTime() - start;
+        delivery.finish();
+        table.added.await();
+        long totalTime = System.nanoTime() - start;
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                probe.stop();
+            }
+        });
+
+        if (table.model.getRowCount() != results) {
+            throw new IllegalStateException("Wrong row count: " + table.model.getRowCount());
+        }
+
+        long[] sorted;
+        synchronized (frames) {
+            sorted = new long[frames.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = frames.get(i);
+            }
+        }
+        Arrays.sort(sorted);
+        long p99 = sorted.length > 0 ? sorted[(int) (sorted.length * 0.99)] : 0;
+        long max = sorted.length > 0 ? sorted[sorted.length - 1] : 0;
+        return new long[]{searchTime, totalTime, p99, max};
+    }
+
+    private static void report(String name, long[] times) {
+        System.out.printf("%-14s search threads %7.1f ms, all rows %7.1f ms, frame p99 %6.1f ms, frame max %6.1f ms%n",
+                name, times[0] / 1e6, times[1] / 1e6, times[2] / 1e6, times[3] / 1e6);
+    }
+
+    private static UISearchResult result(final String name) {
+        return (UISearchResult) Proxy.newProxyInstance(UISearchResult.class.getClassLoader(), new Class<?>[]{UISearchResult.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getFilename":
+                    case "getDisplayName":
+                        return name;
+                    case "getSize":
+                    case "getCreationTime":
+                        return 0L;
+                    case "getSeeds":
+                        return 0;
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * A sorted table, the rows are added one at a time as the result panel does.
+     */
+    private static final class Table {
+
+        final DefaultTableModel model;
+        final JTable table;
+        final CountDownLatch added;
+
+        Table() {
+            model = new DefaultTableModel(new Object[]{"Name", "Size"}, 0);
+            table = new JTable(model);
+            TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(model);
+            sorter.setSortKeys(Collections.singletonList(new RowSorter.SortKey(0, SortOrder.ASCENDING)));
+            sorter.setSortsOnUpdates(true);
+            table.setRowSorter(sorter);
+            added = new CountDownLatch(1);
+        }
+
+        void add(List<UISearchResult> lines) {
+            for (UISearchResult sr : lines) {
+                model.addRow(new Object[]{sr.getFilename(), sr.getSize()});
+            }
+        }
+    }
+
+    private static abstract class Delivery {
+
+        Table table;
+
+        abstract void deliver(List<UISearchResult> page) throws Exception;
+
+        abstract void finish() throws Exception;
+    }
+
+    private static final class InvokeAndWait extends Delivery {
+
+        @Override
+        void deliver(final List<UISearchResult> page) throws Exception {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    table.add(page);
+                }
+            });
+        }
+
+        @Override
+        void finish() throws Exception {
+            table.added.countDown();
+        }
+    }
+
+    private static final class Pipeline extends Delivery {
+
+        private final SearchResultPipeline pipeline;
+
+        Pipeline() {
+            pipeline = new SearchResultPipeline() {
+                @Override
+                SearchFilter createFilter() {
+                    return new SearchFilter() {
+                        @Override
+                        public boolean allow(UISearchResult result) {
+                            return true;
+                        }
+                    };
+                }
+
+                @Override
+                void addResults(long token, SearchResultMediator rp, List<UISearchResult> lines) {
+                    table.add(lines);
+                }
+
+                @Override
+                void finished(long token, SearchResultMediator rp) {
+                    table.added.countDown();
+                }
+            };
+        }
+
+        @Override
+        void deliver(List<UISearchResult> page) {
+            pipeline.add(1, null, page);
+        }
+
+        @Override
+        void finish() {
+            pipeline.finish(1, null);
+        }
+    }
+}